@@ -29,6 +29,7 @@ public class Constants {
 	 * 화면에 보여질 목록 갯수
 	 */
 	public final static Integer BOARD_MAX_LIMIT = 20;
+	public final static Integer BOARD_MAX_SIZE = 100; // 게시판 글 목록 한번에 가져오는 최대 글 수
 	public final static Integer HOME_SIZE_LINE_NUMBER = 5;
 	public final static Integer HOME_SIZE_POST = 7;
 	public final static Integer HOME_SIZE_GALLERY = 10;
@@ -102,6 +103,24 @@ public class Constants {
 	public final static String ES_TYPE_GALLERY = "gallery";
 	public final static String ES_TYPE_SEARCH_WORD = "search_word";
 
+	/**
+	 * 엘라스틱서치 재색인 대상.
+	 */
+	public enum REINDEX_SOURCE_TYPE {
+		ARTICLE,
+		ARTICLE_COMMENT,
+		GALLERY
+	}
+
+	/**
+	 * 엘라스틱서치 재색인 상태.
+	 */
+	public enum REINDEX_STATUS_TYPE {
+		RUNNING,
+		COMPLETED,
+		FAILED
+	}
+
 
 	// 이름 타입.
 	public enum NAME_TYPE {
@@ -155,6 +174,13 @@ public class Constants {
 		GALLERY    // 사진첩
 	}
 
+	public enum SEARCH_SUGGEST_TYPE {
+		SEARCH_WORD,	// 인기 검색어
+		FOOTBALL_CLUB,	// 축구단 이름
+		ARTICLE,		// 게시물 제목
+		GALLERY			// 사진 이름
+	}
+
 	public enum IMAGE_SIZE_TYPE {
 		LARGE,
 		SMALL
@@ -0,0 +1,25 @@
+package com.jakduk.api.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 글, 댓글, 사진, 회원, 알림판이 바뀌었을 때 발행한다.
+ * 홈 최근 데이터처럼 여러 콘텐츠를 모아 미리 만들어 두는 곳에서 받아 다시 만든다.
+ */
+
+@AllArgsConstructor
+@Getter
+public class ContentChangedEvent {
+
+    public enum CONTENT_TYPE {
+        ARTICLE,
+        ARTICLE_COMMENT,
+        GALLERY,
+        USER,
+        HOME_DESCRIPTION
+    }
+
+    private CONTENT_TYPE contentType;
+
+}
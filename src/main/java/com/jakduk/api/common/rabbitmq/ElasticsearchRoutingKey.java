@@ -19,7 +19,8 @@ public enum ElasticsearchRoutingKey  {
     ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT("elasticsearch-delete-document-article-comment"),
     ELASTICSEARCH_INDEX_DOCUMENT_GALLERY("elasticsearch-index-document-gallery"),
     ELASTICSEARCH_DELETE_DOCUMENT_GALLERY("elasticsearch-delete-document-gallery"),
-    ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD("elasticsearch-index-document-search-word");
+    ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD("elasticsearch-index-document-search-word"),
+    ELASTICSEARCH_INDEX_DOCUMENTS("elasticsearch-index-documents"); // 모아서 보낸 글, 댓글, 사진 색인, 삭제
 
     private String routingKey;
 
@@ -0,0 +1,133 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * in-process 전송의 디스크 저널. 받은 메시지를 한 줄씩 덧붙이고, 처리가 끝나면 ack 줄을 덧붙인다.
+ * 다시 시작하면 ack 가 없는 메시지를 돌려주고, 끝나지 않은 메시지만 남기도록 파일을 다시 쓴다.
+ * 줄마다 flush 하므로 프로세스가 죽어도 남지만, 서버가 꺼지면 OS 가 쓰지 못한 줄은 잃는다.
+ */
+class InProcessJournal implements Closeable {
+
+    private final Path path;
+
+    // 순번 -> 아직 끝나지 않은 메시지
+    private final Map<Long, Entry> pendings = new LinkedHashMap<>();
+
+    private BufferedWriter writer;
+
+    InProcessJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * 저널을 연다.
+     *
+     * @return 지난번에 끝나지 않은 메시지. 받은 순서대로
+     */
+    synchronized List<Entry> open() throws IOException {
+        if (Objects.nonNull(path.getParent()))
+            Files.createDirectories(path.getParent());
+
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                // 죽기 직전에 쓰다 만 마지막 줄은 버린다
+                Entry entry;
+
+                try {
+                    entry = ObjectMapperUtils.readValue(line, Entry.class);
+                } catch (IOException e) {
+                    continue;
+                }
+
+                if (Objects.nonNull(entry.getAck())) {
+                    pendings.remove(entry.getAck());
+                } else {
+                    pendings.put(entry.getSeq(), entry);
+                }
+            }
+        }
+
+        this.compact();
+
+        return new ArrayList<>(pendings.values());
+    }
+
+    synchronized void append(Entry entry) throws IOException {
+        this.write(entry);
+        pendings.put(entry.getSeq(), entry);
+    }
+
+    synchronized void ack(Long seq) throws IOException {
+        if (Objects.isNull(pendings.remove(seq)))
+            return;
+
+        this.write(new Entry(null, null, null, null, seq));
+    }
+
+    /**
+     * 끝나지 않은 메시지만 새 파일에 쓰고 바꿔 넣는다.
+     */
+    synchronized void compact() throws IOException {
+        if (Objects.nonNull(writer))
+            writer.close();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (BufferedWriter tempWriter = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Entry entry : pendings.values()) {
+                tempWriter.write(ObjectMapperUtils.writeValueAsString(entry));
+                tempWriter.newLine();
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    synchronized Integer size() {
+        return pendings.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(writer))
+            writer.close();
+    }
+
+    private void write(Entry entry) throws IOException {
+        writer.write(ObjectMapperUtils.writeValueAsString(entry));
+        writer.newLine();
+        writer.flush();
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    static class Entry {
+        private Long seq;
+        private String queue;
+        private String routingKey;
+        private byte[] body;
+        private Long ack; // ack 줄이면 끝난 메시지의 순번
+    }
+
+}
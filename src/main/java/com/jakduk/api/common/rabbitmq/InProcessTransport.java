@@ -0,0 +1,364 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.amqp.AmqpException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 브로커 없이 같은 JVM 안에서 메시지를 전한다. 노드 하나로 돌리거나 테스트할 때 쓴다.
+ *
+ * 라우팅 키를 jakduk.rabbitmq.queues.*.binding-routing-key 와 RabbitMQ topic 규칙(*, #)으로 맞춰서 큐를 고른다.
+ * 메시지는 in-process-capacity 크기의 고정 버퍼에 넣고, in-process-workers 개의 스레드가 꺼내서 큐의 처리기에 넘긴다.
+ * 버퍼와 처리 중인 메시지를 합쳐 in-process-capacity 가 차면, 자리가 날 때까지 보내는 쪽이 기다린다.
+ * 처리기가 되돌리라고 하면 한번은 다시 넣는다.
+ *
+ * in-process-journal-path 가 있으면 받은 메시지를 디스크에 남기고, 다시 시작하면 끝나지 않은 메시지부터 처리한다.
+ * 저널이 없으면 버퍼에 든 메시지는 서버가 꺼질 때 잃으므로, 처리기가 끝난 뒤에 보내기를 완료한다.
+ * 그래서 outbox 는 처리가 끝난 이벤트만 지운다. 엘라스틱서치 처리기는 bulk 가 나가야 끝나므로,
+ * 이때는 bulk-flush-interval-seconds 가 publisher-confirm-timeout-millis 의 두배보다 짧아야 outbox 가 기다리다 포기하지 않는다.
+ */
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jakduk.rabbitmq", name = "transport", havingValue = "in-process")
+public class InProcessTransport implements MessageTransport {
+
+    @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
+
+    private BlockingQueue<Delivery> buffer;
+    private Semaphore permits;
+    private ThreadPoolTaskExecutor workers;
+    private InProcessJournal journal;
+
+    // 큐 -> 처리기
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+
+    // 큐 -> 바인딩 라우팅 키 패턴
+    private final Map<String, Pattern> bindings = new LinkedHashMap<>();
+
+    // 라우팅 키 -> 받는 큐
+    private final Map<String, List<String>> routes = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean running = true;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder requeued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unroutable = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        rabbitmqProperties.getQueues().forEach((queue, rabbitMQ) ->
+                bindings.put(queue, toPattern(rabbitMQ.getBindingRoutingKey())));
+
+        Integer capacity = rabbitmqProperties.getInProcessCapacity();
+        List<InProcessJournal.Entry> replays = Collections.emptyList();
+
+        if (StringUtils.isNotBlank(rabbitmqProperties.getInProcessJournalPath())) {
+            journal = new InProcessJournal(Paths.get(rabbitmqProperties.getInProcessJournalPath()));
+            replays = journal.open();
+        }
+
+        // 지난번에 끝나지 않은 메시지가 버퍼보다 많아도 모두 넣는다. 그만큼 새 메시지는 자리가 날 때까지 기다린다
+        buffer = new ArrayBlockingQueue<>(Math.max(capacity, replays.size()));
+        permits = new Semaphore(capacity - replays.size());
+
+        for (InProcessJournal.Entry entry : replays) {
+            buffer.add(new Delivery(entry.getSeq(), entry.getQueue(), entry.getRoutingKey(), entry.getBody(), true, null));
+            sequence.accumulateAndGet(entry.getSeq(), Math::max);
+        }
+
+        if (! replays.isEmpty())
+            log.info("in-process messages were restored from journal. messages={}", replays.size());
+
+        workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(rabbitmqProperties.getInProcessWorkers());
+        workers.setMaxPoolSize(rabbitmqProperties.getInProcessWorkers());
+        workers.setQueueCapacity(0);
+        workers.setThreadNamePrefix("in-process-");
+        workers.initialize();
+    }
+
+    /**
+     * 처리기는 리스너가 뜨면서 등록하므로, 다 뜬 뒤에 꺼내기 시작한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (int i = 0; i < rabbitmqProperties.getInProcessWorkers(); i++)
+            workers.execute(this::workLoop);
+    }
+
+    /**
+     * 버퍼에 남은 메시지를 처리하고, 처리 중인 메시지를 잠깐 기다린다. 끝나지 않은 메시지는 저널에 남는다.
+     */
+    @PreDestroy
+    public void destroy() throws IOException, InterruptedException {
+        running = false;
+
+        long deadline = System.currentTimeMillis() + rabbitmqProperties.getPublisherConfirmTimeoutMillis();
+
+        while (permits.availablePermits() < rabbitmqProperties.getInProcessCapacity() && System.currentTimeMillis() < deadline)
+            Thread.sleep(100);
+
+        workers.shutdown();
+
+        if (Objects.nonNull(journal))
+            journal.close();
+    }
+
+    /**
+     * 맞는 큐마다 하나씩 버퍼에 넣는다. 저널이 있으면 저널에 쓴 뒤에, 없으면 모든 큐의 처리기가 끝난 뒤에 완료한다.
+     */
+    @Override
+    public CompletableFuture<Void> send(String routingKey, Object message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        List<String> queues = routes.computeIfAbsent(routingKey, this::route);
+
+        if (queues.isEmpty()) {
+            unroutable.increment();
+            future.completeExceptionally(new AmqpException("no queue is bound to routing key. routingKey=" + routingKey));
+            return future;
+        }
+
+        // 저널이 없을 때 큐마다 처리가 끝나면 완료된다
+        List<CompletableFuture<Void>> completions = new ArrayList<>();
+
+        try {
+            byte[] body = ObjectMapperUtils.getObjectMapper().writeValueAsBytes(message);
+
+            for (String queue : queues) {
+                if (! permits.tryAcquire(rabbitmqProperties.getSendBufferOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    future.completeExceptionally(new AmqpException("in-process buffer is full"));
+                    return future;
+                }
+
+                CompletableFuture<Void> completion = Objects.isNull(journal) ? new CompletableFuture<>() : null;
+                Delivery delivery = new Delivery(sequence.incrementAndGet(), queue, routingKey, body, false, completion);
+
+                try {
+                    if (Objects.nonNull(journal))
+                        journal.append(new InProcessJournal.Entry(delivery.getSeq(), queue, routingKey, body, null));
+                } catch (IOException e) {
+                    permits.release();
+                    throw e;
+                }
+
+                buffer.add(delivery);
+                published.increment();
+
+                if (Objects.nonNull(completion))
+                    completions.add(completion);
+            }
+
+            if (completions.isEmpty())
+                return CompletableFuture.completedFuture(null);
+
+            return CompletableFuture.allOf(completions.toArray(new CompletableFuture[0]));
+
+        } catch (JsonProcessingException e) {
+            future.completeExceptionally(e);
+        } catch (IOException e) {
+            log.warn("failed to write in-process journal. routingKey={}", routingKey, e);
+            future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    @Override
+    public void subscribe(String queue, MessageHandler handler) {
+        handlers.put(queue, handler);
+    }
+
+    /**
+     * 저널을 끝나지 않은 메시지만 남게 다시 쓴다.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void compactJournal() {
+        if (Objects.isNull(journal))
+            return;
+
+        try {
+            journal.compact();
+        } catch (IOException e) {
+            log.warn("failed to compact in-process journal.", e);
+        }
+    }
+
+    /**
+     * in-process 통계. 넣은 메시지(published), 처리한 메시지(delivered), 되돌린 메시지(requeued),
+     * 처리기가 없거나 되돌린 뒤에도 실패해서 버린 메시지(dropped), 받을 큐가 없음(unroutable), 버퍼가 차서 받지 못함(rejected),
+     * 버퍼(buffered), 처리 중인 메시지(inFlight), 저널에 남은 메시지(journaled)
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("published", published.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("requeued", requeued.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("unroutable", unroutable.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("buffered", (long) buffer.size());
+        stats.put("inFlight", (long) (rabbitmqProperties.getInProcessCapacity() - permits.availablePermits() - buffer.size()));
+        stats.put("journaled", Objects.nonNull(journal) ? (long) journal.size() : 0L);
+
+        return stats;
+    }
+
+    /**
+     * RabbitMQ topic 교환기의 바인딩 키를 정규식으로 바꾼다. * 는 단어 하나, # 는 단어 0개 이상이다.
+     */
+    static Pattern toPattern(String bindingKey) {
+        String[] words = bindingKey.split("\\.");
+        StringBuilder regex = new StringBuilder();
+
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+
+            if ("#".equals(word)) {
+                if (words.length == 1) {
+                    regex.append(".*");
+                } else if (i == 0) {
+                    regex.append("(.+\\.)?");
+                } else {
+                    regex.append("(\\..+)?");
+                }
+                continue;
+            }
+
+            // 맨 앞의 # 뒤에는 구분자를 # 쪽에서 이미 붙였다
+            if (i > 0 && ! (i == 1 && "#".equals(words[0])))
+                regex.append("\\.");
+
+            regex.append("*".equals(word) ? "[^.]+" : Pattern.quote(word));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    private List<String> route(String routingKey) {
+        return bindings.entrySet().stream()
+                .filter(binding -> binding.getValue().matcher(routingKey).matches())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private void workLoop() {
+        while (running || ! buffer.isEmpty()) {
+            Delivery delivery;
+
+            try {
+                delivery = buffer.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (Objects.nonNull(delivery))
+                this.deliver(delivery);
+        }
+    }
+
+    /**
+     * 처리기의 결과를 기다리지 않고 다음 메시지를 꺼낸다. 엘라스틱서치 처리기는 bulk 가 나갈 때까지 완료되지 않는다.
+     */
+    private void deliver(Delivery delivery) {
+        MessageHandler handler = handlers.get(delivery.getQueue());
+
+        if (Objects.isNull(handler)) {
+            log.warn("in-process message was dropped. no handler for queue. queue={}, routingKey={}",
+                    delivery.getQueue(), delivery.getRoutingKey());
+            this.finish(delivery, false);
+            return;
+        }
+
+        CompletableFuture<Boolean> result;
+
+        try {
+            result = handler.handle(new TransportMessage(delivery.getRoutingKey(), delivery.getBody(), delivery.getRedelivered()));
+        } catch (Exception e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+
+        result.whenComplete((requeue, throwable) -> {
+            if (Objects.nonNull(throwable)) {
+                log.warn("in-process message handler failed. queue={}, routingKey={}", delivery.getQueue(), delivery.getRoutingKey(), throwable);
+                this.finish(delivery, false);
+            } else if (Boolean.TRUE.equals(requeue) && ! delivery.getRedelivered()) {
+                // 자리는 이 메시지가 계속 차지하고 있으므로 버퍼에 바로 들어간다
+                requeued.increment();
+                buffer.add(new Delivery(delivery.getSeq(), delivery.getQueue(), delivery.getRoutingKey(), delivery.getBody(), true,
+                        delivery.getCompletion()));
+            } else {
+                this.finish(delivery, ! Boolean.TRUE.equals(requeue));
+            }
+        });
+    }
+
+    private void finish(Delivery delivery, Boolean succeeded) {
+        if (succeeded) {
+            delivered.increment();
+        } else {
+            dropped.increment();
+        }
+
+        try {
+            if (Objects.nonNull(journal))
+                journal.ack(delivery.getSeq());
+        } catch (IOException e) {
+            // 다시 시작하면 한번 더 처리된다
+            log.warn("failed to write in-process journal ack. seq={}", delivery.getSeq(), e);
+        }
+
+        permits.release();
+
+        // RabbitMQ 에서 리스너가 버린 메시지처럼, 처리기가 실패해도 받은 것으로 친다
+        if (Objects.nonNull(delivery.getCompletion()))
+            delivery.getCompletion().complete(null);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class Delivery {
+        private final Long seq;
+        private final String queue;
+        private final String routingKey;
+        private final byte[] body;
+        private final Boolean redelivered;
+        private final CompletableFuture<Void> completion; // 저널이 없을 때 보낸 쪽에 처리가 끝났다고 알린다. 저널이 있으면 null
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.jakduk.api.common.rabbitmq;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * in-process 전송으로 받은 메시지를 처리한다.
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+    /**
+     * @return 처리가 끝나면 완료된다. 완료 값이 true 면 큐로 되돌린다
+     */
+    CompletableFuture<Boolean> handle(TransportMessage message);
+
+}
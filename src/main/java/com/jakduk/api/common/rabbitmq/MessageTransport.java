@@ -0,0 +1,29 @@
+package com.jakduk.api.common.rabbitmq;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 메시지를 라우팅 키로 큐에 보내는 방법. jakduk.rabbitmq.transport 로 고른다.
+ *
+ * rabbitmq : RabbitMQ 브로커로 보내고 @RabbitListener 가 받는다.
+ * in-process : 브로커 없이 같은 JVM 안의 큐에 넣고, subscribe 한 처리기가 받는다. 노드 하나로 돌릴 때 쓴다.
+ */
+public interface MessageTransport {
+
+    /**
+     * @param routingKey 브로커 라우팅 키. 큐는 jakduk.rabbitmq.queues.*.binding-routing-key 와 맞는 것을 고른다
+     * @return 메시지를 큐가 받아서 잃어버리지 않게 되면 완료된다
+     */
+    CompletableFuture<Void> send(String routingKey, Object message);
+
+    /**
+     * 큐의 메시지를 받을 처리기를 등록한다. rabbitmq 는 @RabbitListener 가 받으므로 아무것도 하지 않는다.
+     *
+     * @param queue jakduk.rabbitmq.queues 의 키. email, elasticsearch
+     */
+    void subscribe(String queue, MessageHandler handler);
+
+    Map<String, Long> getStats();
+
+}
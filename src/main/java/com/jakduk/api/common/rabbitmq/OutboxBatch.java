@@ -0,0 +1,67 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.model.db.OutboxEvent;
+import com.jakduk.api.model.rabbitmq.EmailPayload;
+import com.jakduk.api.model.rabbitmq.EsDocumentEvent;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * outbox 에서 꺼낸 한 묶음. 검색 문서 이벤트는 같은 문서(타입#ID)마다 버전이 가장 큰 것만 남기고, 나머지 이벤트는 하나씩 보낸다.
+ * outbox 에 남아 있는 동안 들어온 이벤트끼리 합쳐지므로, 보내지 못한 묶음을 다시 꺼내도 합친 이벤트를 잃지 않는다.
+ * 본문을 읽을 수 없는 이벤트는 failures 에 담고, 나머지는 그대로 보낸다.
+ */
+
+@Getter
+public class OutboxBatch {
+
+    // 하나씩 보낼 이벤트 -> 메시지. 메일은 EmailPayload, 검색어는 JSON 트리
+    private final Map<OutboxEvent, Object> messages = new LinkedHashMap<>();
+
+    // (타입#ID) -> 보낼 문서 이벤트. outbox 순서대로 읽으므로 같은 문서는 나중 것이 새 것이지만, 버전으로 한번 더 가린다
+    private final Map<String, EsDocumentEvent> documentEvents = new LinkedHashMap<>();
+
+    // 본문을 읽을 수 없는 이벤트 -> 까닭
+    private final Map<OutboxEvent, IOException> failures = new LinkedHashMap<>();
+
+    // 더 새 이벤트에 밀려 보내지 않는 문서 이벤트 수
+    private Integer coalesced = 0;
+
+    public OutboxBatch(Iterable<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            try {
+                if (Objects.isNull(event.getDocumentKey())) {
+                    messages.put(event, this.readMessage(event));
+                } else {
+                    this.putDocumentEvent(event.getDocumentKey(), ObjectMapperUtils.readValue(event.getPayload(), EsDocumentEvent.class));
+                }
+            } catch (IOException e) {
+                failures.put(event, e);
+            }
+        }
+    }
+
+    private void putDocumentEvent(String documentKey, EsDocumentEvent documentEvent) {
+        EsDocumentEvent before = documentEvents.get(documentKey);
+
+        if (Objects.nonNull(before))
+            coalesced++;
+
+        if (Objects.isNull(before) || documentEvent.getVersion() > before.getVersion())
+            documentEvents.put(documentKey, documentEvent);
+    }
+
+    private Object readMessage(OutboxEvent event) throws IOException {
+        if (RabbitMQPublisher.QUEUE_EMAIL.equals(event.getQueue()))
+            return ObjectMapperUtils.readValue(event.getPayload(), EmailPayload.class);
+
+        // 엘라스틱서치 리스너는 본문 JSON 을 직접 읽는다
+        return ObjectMapperUtils.getObjectMapper().readTree(event.getPayload());
+    }
+
+}
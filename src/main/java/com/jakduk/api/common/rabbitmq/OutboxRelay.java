@@ -0,0 +1,165 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.OutboxEvent;
+import com.jakduk.api.model.rabbitmq.EsDocumentEvent;
+import com.jakduk.api.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * outbox 에 쌓인 메시지를 outbox-batch-size 개씩 맡아서 RabbitMQ 로 보낸다.
+ * 맡을 때 이벤트마다 owner 와 leaseUntil 을 남기므로, 여러 서버가 같이 돌아도 한 이벤트는 한 서버만 보낸다.
+ * 한 묶음을 MessageTransport 로 보내고 모두 받았다고(RabbitMQ 는 publisher confirm) 완료된 뒤에 outbox 에서 지운다.
+ * 받지 못하면 내려놓고 다음에 다시 보내고, 서버가 죽으면 outbox-lease-millis 가 지난 뒤 다른 서버가 맡는다.
+ * 그래서 같은 메시지가 두번 갈 수 있다. 검색 문서는 버전이 있어서 두번째 것은 버려진다.
+ * 본문을 읽을 수 없는 이벤트는 보내지 않기로 표시하고(failedAt) 나머지를 보낸다.
+ */
+
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
+
+    @Autowired private MessageTransport messageTransport;
+    @Autowired private OutboxEventRepository outboxEventRepository;
+
+    private final LongAdder relayedEvents = new LongAdder();
+    private final LongAdder coalescedEvents = new LongAdder();
+    private final LongAdder publishedMessages = new LongAdder();
+    private final LongAdder relayedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final AtomicLong lastRelayLagMillis = new AtomicLong();
+
+    /**
+     * outbox 가 빌 때까지 보낸다. 한 묶음이라도 실패하면 내려놓고 멈춘다. 다음 주기에 그 묶음부터 다시 맡는다.
+     */
+    @Scheduled(fixedDelayString = "${jakduk.rabbitmq.outbox-relay-delay-millis:1000}")
+    public synchronized void relay() {
+        Integer batchSize = rabbitmqProperties.getOutboxBatchSize();
+
+        while (true) {
+            String owner = UUID.randomUUID().toString();
+            LocalDateTime leaseUntil = LocalDateTime.now().plus(Duration.ofMillis(rabbitmqProperties.getOutboxLeaseMillis()));
+            List<OutboxEvent> events = outboxEventRepository.claim(owner, leaseUntil, batchSize);
+
+            if (events.isEmpty())
+                return;
+
+            OutboxBatch batch = new OutboxBatch(events);
+
+            batch.getFailures().forEach((event, e) -> {
+                log.error("outbox event can not be read. so it will not be sent. id={}, routingKey={}", event.getId(), event.getRoutingKey(), e);
+                outboxEventRepository.markFailed(event.getId(), e.getMessage());
+                failedEvents.increment();
+            });
+
+            try {
+                publishedMessages.add(this.publish(batch));
+            } catch (RuntimeException e) {
+                failedBatches.increment();
+                log.warn("failed to relay outbox events. events={}", events.size(), e);
+                outboxEventRepository.release(owner);
+                return;
+            }
+
+            outboxEventRepository.deleteByOwner(owner);
+
+            relayedEvents.add(events.size() - batch.getFailures().size());
+            relayedBatches.increment();
+            lastRelayLagMillis.set(Duration.between(events.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+
+            if (events.size() < batchSize)
+                return;
+        }
+    }
+
+    /**
+     * outbox 통계. 보낸 이벤트(events), 더 새 이벤트에 밀려 보내지 않은 검색 문서 이벤트(coalesced), 보낸 메시지(messages),
+     * 보낸 묶음(batches), 실패한 묶음(failures), 본문을 읽을 수 없어서 보내지 않기로 한 이벤트(deadEvents, 쌓인 수 deadPendings),
+     * 남은 이벤트(pendings), 가장 오래 남은 이벤트가 기다린 시간(lagMillis),
+     * 마지막 묶음의 가장 오래된 이벤트가 쓰이고 나서 보내지기까지 걸린 시간(lastRelayLagMillis)
+     */
+    public Map<String, Long> getStats() {
+        Long lagMillis = outboxEventRepository.findTopByFailedAtIsNullOrderByIdAsc()
+                .map(outboxEvent -> Duration.between(outboxEvent.getCreatedAt(), LocalDateTime.now()).toMillis())
+                .orElse(0L);
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("events", relayedEvents.sum());
+        stats.put("coalesced", coalescedEvents.sum());
+        stats.put("messages", publishedMessages.sum());
+        stats.put("batches", relayedBatches.sum());
+        stats.put("failures", failedBatches.sum());
+        stats.put("deadEvents", failedEvents.sum());
+        stats.put("deadPendings", outboxEventRepository.countByFailedAtIsNotNull());
+        stats.put("pendings", outboxEventRepository.countByFailedAtIsNull());
+        stats.put("lagMillis", lagMillis);
+        stats.put("lastRelayLagMillis", lastRelayLagMillis.get());
+
+        return stats;
+    }
+
+    /**
+     * 묶음을 보내고 보낸 메시지 수를 돌려준다.
+     */
+    private Integer publish(OutboxBatch batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        batch.getMessages().forEach((event, message) ->
+                futures.add(messageTransport.send(this.getRoutingKey(event.getRoutingKey()), message)));
+
+        futures.addAll(this.publishDocumentEvents(new ArrayList<>(batch.getDocumentEvents().values())));
+
+        // 모두 confirm 되어야 지운다. 하나라도 실패하면 묶음 전체를 다시 보낸다
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(rabbitmqProperties.getPublisherConfirmTimeoutMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException(e);
+        }
+
+        coalescedEvents.add(batch.getCoalesced());
+
+        return futures.size();
+    }
+
+    /**
+     * 검색 문서 이벤트는 document-batch-size 개씩 ELASTICSEARCH_INDEX_DOCUMENTS 메시지 하나에 담는다.
+     */
+    private List<CompletableFuture<Void>> publishDocumentEvents(List<EsDocumentEvent> documentEvents) {
+        String routingKey = this.getRoutingKey(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENTS.getRoutingKey());
+        Integer batchSize = rabbitmqProperties.getDocumentBatchSize();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int from = 0; from < documentEvents.size(); from += batchSize)
+            futures.add(messageTransport.send(routingKey,
+                    new ArrayList<>(documentEvents.subList(from, Math.min(from + batchSize, documentEvents.size())))));
+
+        return futures;
+    }
+
+    private String getRoutingKey(String key) {
+        return rabbitmqProperties.getRoutingKeys().get(key);
+    }
+
+}
@@ -1,18 +1,25 @@
 package com.jakduk.api.common.rabbitmq;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.DocumentVersionUtils;
 import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.OutboxEvent;
 import com.jakduk.api.model.elasticsearch.EsArticle;
 import com.jakduk.api.model.elasticsearch.EsComment;
 import com.jakduk.api.model.elasticsearch.EsGallery;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
 import com.jakduk.api.model.elasticsearch.EsSearchWord;
-import com.jakduk.api.model.embedded.ArticleItem;
 import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.model.embedded.SimpleWriter;
 import com.jakduk.api.model.rabbitmq.EmailPayload;
+import com.jakduk.api.model.rabbitmq.EsDocumentEvent;
+import com.jakduk.api.repository.OutboxEventRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -22,21 +29,29 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by pyohwanjang on 2017. 6. 17..
+ *
+ * 이메일, 검색 메시지는 바로 보내지 않고 outbox 컬렉션에 쓴다. 보내는 것은 OutboxRelay 가 한다.
+ * 글, 댓글, 사진 색인, 삭제는 OutboxRelay 가 ELASTICSEARCH_INDEX_DOCUMENTS 메시지로 모아서 보낸다.
  */
 
 @Slf4j
 @Component
 public class RabbitMQPublisher {
 
-    private final String QUEUE_EMAIL = "email";
-    private final String QUEUE_ELASTICSEARCH = "elasticsearch";
+    // 따로 보낸 검색 문서 메시지의 버전 헤더. 모아서 보내는 메시지는 이벤트마다 버전이 들어 있다.
+    public static final String HEADER_DOCUMENT_VERSION = "x-document-version";
+
+    public static final String QUEUE_EMAIL = "email";
+    public static final String QUEUE_ELASTICSEARCH = "elasticsearch";
 
     @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
 
-    @Autowired private RabbitTemplate rabbitTemplate;
+    @Autowired private MessageTransport messageTransport;
+    @Autowired private OutboxEventRepository outboxEventRepository;
 
     public void sendWelcome(Locale locale, String recipientEmail, String userName) {
         EmailPayload emailPayload = EmailPayload.builder()
@@ -54,8 +69,7 @@ public class RabbitMQPublisher {
                 )
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(EmailRoutingKey.EMAIL_WELCOME.getRoutingKey());
-        this.publishEmail(routingKey, emailPayload);
+        this.saveOutboxEvent(QUEUE_EMAIL, EmailRoutingKey.EMAIL_WELCOME.getRoutingKey(), null, emailPayload);
     }
 
     public void sendResetPassword(Locale locale, String recipientEmail, String host) {
@@ -82,8 +96,7 @@ public class RabbitMQPublisher {
                 )
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(EmailRoutingKey.EMAIL_RESET_PASSWORD.getRoutingKey());
-        this.publishEmail(routingKey, emailPayload);
+        this.saveOutboxEvent(QUEUE_EMAIL, EmailRoutingKey.EMAIL_RESET_PASSWORD.getRoutingKey(), null, emailPayload);
     }
 
     public void indexDocumentArticle(String id, Integer seq, String board, String category, CommonWriter writer, String subject,
@@ -100,32 +113,28 @@ public class RabbitMQPublisher {
                 .galleries(galleryIds)
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE.getRoutingKey());
-        this.publishElasticsearch(routingKey, esArticle);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE, Constants.ES_TYPE_ARTICLE, id, esArticle);
     }
 
     public void deleteDocumentArticle(String id) {
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE.getRoutingKey());
-        this.publishElasticsearch(routingKey, id);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE, Constants.ES_TYPE_ARTICLE, id, id);
     }
 
-    public void indexDocumentComment(String id, ArticleItem articleItem, CommonWriter writer, String content, List<String> galleryIds) {
+    public void indexDocumentComment(String id, EsParentArticle parentArticle, CommonWriter writer, String content, List<String> galleryIds) {
 
         EsComment esComment = EsComment.builder()
                 .id(id)
-                .article(articleItem)
+                .article(parentArticle)
                 .writer(writer)
                 .content(JakdukUtils.stripHtmlTag(content))
                 .galleries(galleryIds)
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT.getRoutingKey());
-        this.publishElasticsearch(routingKey, esComment);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT, Constants.ES_TYPE_COMMENT, id, esComment);
     }
 
     public void deleteDocumentComment(String id) {
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT.getRoutingKey());
-        this.publishElasticsearch(routingKey, id);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT, Constants.ES_TYPE_COMMENT, id, id);
     }
 
     public void indexDocumentGallery(String id, CommonWriter writer, String name) {
@@ -135,13 +144,11 @@ public class RabbitMQPublisher {
                 .name(name)
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_GALLERY.getRoutingKey());
-        this.publishElasticsearch(routingKey, esGallery);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_GALLERY, Constants.ES_TYPE_GALLERY, id, esGallery);
     }
 
     public void deleteDocumentGallery(String id) {
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_GALLERY.getRoutingKey());
-        this.publishElasticsearch(routingKey, id);
+        this.saveDocumentEvent(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_GALLERY, Constants.ES_TYPE_GALLERY, id, id);
     }
 
     public void indexDocumentSearchWord(String word, CommonWriter writer) {
@@ -151,23 +158,74 @@ public class RabbitMQPublisher {
                 .registerDate(LocalDateTime.now())
                 .build();
 
-        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD.getRoutingKey());
-        this.publishElasticsearch(routingKey, esSearchWord);
+        this.saveOutboxEvent(QUEUE_ELASTICSEARCH, ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD.getRoutingKey(), null, esSearchWord);
+    }
+
+    /**
+     * outbox 를 거치지 않고 바로 보낸다. 실패하면 로그를 남긴다.
+     *
+     * @return 브로커가 confirm 하면 완료된다. 기다릴지는 호출한 쪽이 정한다. 실패하면 예외로 완료된다.
+     */
+    public CompletableFuture<Void> publishEmail(String routingKey, EmailPayload message) {
+        return this.publish(QUEUE_EMAIL, routingKey, message);
     }
 
-    public void publishEmail(String routingKey, EmailPayload message) {
-        if (rabbitmqProperties.getQueues().get(QUEUE_EMAIL).getEnabled()) {
-            rabbitTemplate.convertAndSend(rabbitmqProperties.getExchangeName(), routingKey, message);
-        } else {
-            log.info("Can not publish message. {} queue is disabled.", QUEUE_EMAIL);
+    /**
+     * outbox 를 거치지 않고 바로 보낸다. 실패하면 로그를 남긴다.
+     *
+     * @return 브로커가 confirm 하면 완료된다. 기다릴지는 호출한 쪽이 정한다. 실패하면 예외로 완료된다.
+     */
+    public CompletableFuture<Void> publishElasticsearch(String routingKey, Object message) {
+        return this.publish(QUEUE_ELASTICSEARCH, routingKey, message);
+    }
+
+    private CompletableFuture<Void> publish(String queue, String routingKey, Object message) {
+        if (! rabbitmqProperties.getQueues().get(queue).getEnabled()) {
+            log.info("Can not publish message. {} queue is disabled.", queue);
+            return CompletableFuture.completedFuture(null);
         }
+
+        return messageTransport.send(routingKey, message)
+                .whenComplete((result, throwable) -> {
+                    if (Objects.nonNull(throwable))
+                        log.warn("failed to publish message. routingKey={}", routingKey, throwable);
+                });
     }
 
-    public void publishElasticsearch(String routingKey, Object message) {
-        if (rabbitmqProperties.getQueues().get(QUEUE_ELASTICSEARCH).getEnabled()) {
-            rabbitTemplate.convertAndSend(rabbitmqProperties.getExchangeName(), routingKey, message);
-        } else {
-            log.info("Can not publish message. {} queue is disabled.", QUEUE_ELASTICSEARCH);
+    /**
+     * 글, 댓글, 사진의 색인, 삭제. 버전은 지금 시각이고, 보낼 때 같은 문서(타입, ID)는 버전이 가장 큰 것만 남는다.
+     */
+    private void saveDocumentEvent(ElasticsearchRoutingKey routingKey, String type, String id, Object payload) {
+        EsDocumentEvent event = EsDocumentEvent.builder()
+                .routingKey(routingKey)
+                .version(DocumentVersionUtils.next())
+                .payload(ObjectMapperUtils.getObjectMapper().valueToTree(payload))
+                .build();
+
+        this.saveOutboxEvent(QUEUE_ELASTICSEARCH, ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENTS.getRoutingKey(), type + "#" + id, event);
+    }
+
+    /**
+     * 브로커에 보내지 않고 outbox 에만 쓴다. 엔티티를 저장한 몽고에 쓰므로 브로커가 느리거나 죽어도 요청은 기다리지 않는다.
+     */
+    private void saveOutboxEvent(String queue, String routingKey, String documentKey, Object payload) {
+        if (! rabbitmqProperties.getQueues().get(queue).getEnabled()) {
+            log.info("Can not publish message. {} queue is disabled.", queue);
+            return;
+        }
+
+        try {
+            outboxEventRepository.save(
+                    OutboxEvent.builder()
+                            .queue(queue)
+                            .routingKey(routingKey)
+                            .documentKey(documentKey)
+                            .payload(ObjectMapperUtils.writeValueAsString(payload))
+                            .createdAt(LocalDateTime.now())
+                            .build()
+            );
+        } catch (JsonProcessingException e) {
+            throw new ServiceException(ServiceError.IO_EXCEPTION, e);
         }
     }
 
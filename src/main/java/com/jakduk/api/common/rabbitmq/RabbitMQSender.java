@@ -0,0 +1,317 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RabbitMQ 로 메시지를 보내고 publisher confirm 으로 완료한다.
+ *
+ * 메시지는 send-buffer-capacity 만큼만 받는 버퍼에 넣고, 보내는 스레드가 publish-batch-size 개씩 꺼내서 한 채널로 보낸다.
+ * confirm 은 기다리지 않고 다음 묶음을 보내며, CorrelationData 로 메시지를 찾아 CompletableFuture 를 완료한다.
+ * 버퍼와 confirm 을 기다리는 메시지를 합쳐 send-buffer-capacity 가 차면, 자리가 날 때까지 보내는 쪽이 기다린다.
+ */
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jakduk.rabbitmq", name = "transport", havingValue = "rabbitmq", matchIfMissing = true)
+public class RabbitMQSender implements MessageTransport {
+
+    @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
+    @Resource private ThreadPoolTaskExecutor rabbitSendExecutor;
+
+    @Autowired private RabbitTemplate rabbitTemplate;
+
+    private Semaphore permits;
+    private final BlockingQueue<PendingMessage> sendBuffer = new LinkedBlockingQueue<>();
+
+    // correlation ID -> confirm 을 기다리는 메시지
+    private final ConcurrentHashMap<String, PendingMessage> unconfirmed = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean running = true;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final LongAccumulator maxMillis = new LongAccumulator(Long::max, 0L);
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(rabbitmqProperties.getSendBufferCapacity());
+
+        rabbitTemplate.setMandatory(true);
+        rabbitTemplate.setConfirmCallback(this::confirm);
+        rabbitTemplate.setReturnCallback((message, replyCode, replyText, exchange, routingKey) -> this.returned(message, replyText));
+
+        rabbitSendExecutor.execute(this::sendLoop);
+    }
+
+    /**
+     * 버퍼에 남은 메시지를 보내고, confirm 을 잠깐 기다린다.
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+
+        long deadline = System.currentTimeMillis() + rabbitmqProperties.getPublisherConfirmTimeoutMillis();
+
+        while ((! sendBuffer.isEmpty() || ! unconfirmed.isEmpty()) && System.currentTimeMillis() < deadline)
+            Thread.sleep(100);
+
+        if (! sendBuffer.isEmpty() || ! unconfirmed.isEmpty())
+            log.warn("rabbitmq sender was closed before all messages were confirmed. buffered={}, unconfirmed={}",
+                    sendBuffer.size(), unconfirmed.size());
+    }
+
+    /**
+     * 메시지를 버퍼에 넣는다. 버퍼가 차 있으면 send-buffer-offer-timeout-millis 까지 기다리고, 그래도 자리가 없으면 실패로 완료한다.
+     *
+     * @return 브로커가 confirm 하면 완료된다. nack, 반송, confirm 시간 초과, 보내기 실패는 예외로 완료된다.
+     */
+    @Override
+    public CompletableFuture<Void> send(String routingKey, Object message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        try {
+            if (! permits.tryAcquire(rabbitmqProperties.getSendBufferOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                future.completeExceptionally(new AmqpException("rabbitmq send buffer is full"));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        Message amqpMessage;
+
+        try {
+            amqpMessage = rabbitTemplate.getMessageConverter().toMessage(message, new MessageProperties());
+        } catch (RuntimeException e) {
+            permits.release();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        sendBuffer.add(new PendingMessage(String.valueOf(sequence.incrementAndGet()), rabbitmqProperties.getExchangeName(), routingKey, amqpMessage,
+                System.currentTimeMillis(), future));
+
+        return future;
+    }
+
+    /**
+     * RabbitMQ 는 @RabbitListener 가 받는다.
+     */
+    @Override
+    public void subscribe(String queue, MessageHandler handler) {
+    }
+
+    /**
+     * confirm 시간이 지난 메시지를 실패로 완료한다. 브로커가 늦게 confirm 하더라도 호출한 쪽은 다시 보낸다.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void expireUnconfirmed() {
+        long expiredAt = System.currentTimeMillis() - rabbitmqProperties.getPublisherConfirmTimeoutMillis();
+
+        unconfirmed.values().stream()
+                .filter(pendingMessage -> pendingMessage.getSentAt() < expiredAt)
+                .forEach(pendingMessage -> {
+                    if (this.complete(pendingMessage.getId(), new AmqpException("publisher confirm timed out")))
+                        timeouts.increment();
+                });
+    }
+
+    /**
+     * 보내기 통계. 보낸 메시지(published), confirm(confirmed), nack(nacked), 반송(returned), confirm 시간 초과(timeouts),
+     * 버퍼가 차서 받지 못함(rejected), 채널 오류로 보내지 못함(sendFailures), 보낸 묶음(batches),
+     * 받고 나서 confirm 까지 걸린 시간(totalMillis, maxMillis), 버퍼(buffered), confirm 을 기다리는 메시지(unconfirmed)
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("published", published.sum());
+        stats.put("confirmed", confirmed.sum());
+        stats.put("nacked", nacked.sum());
+        stats.put("returned", returned.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        stats.put("batches", batches.sum());
+        stats.put("totalMillis", totalMillis.sum());
+        stats.put("maxMillis", maxMillis.get());
+        stats.put("buffered", (long) sendBuffer.size());
+        stats.put("unconfirmed", (long) unconfirmed.size());
+
+        return stats;
+    }
+
+    private void sendLoop() {
+        Integer batchSize = rabbitmqProperties.getPublishBatchSize();
+
+        while (running || ! sendBuffer.isEmpty()) {
+            List<PendingMessage> batch = new ArrayList<>(batchSize);
+
+            try {
+                PendingMessage first = sendBuffer.poll(100, TimeUnit.MILLISECONDS);
+
+                if (Objects.isNull(first))
+                    continue;
+
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            sendBuffer.drainTo(batch, batchSize - 1);
+
+            this.sendBatch(batch);
+        }
+    }
+
+    /**
+     * 묶음을 한 채널로 보낸다. confirm 보다 먼저 등록해야 빠른 confirm 을 놓치지 않는다.
+     */
+    private void sendBatch(List<PendingMessage> batch) {
+        batch.forEach(pendingMessage -> unconfirmed.put(pendingMessage.getId(), pendingMessage));
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingMessage pendingMessage : batch) {
+                    pendingMessage.getMessage().getMessageProperties()
+                            .setHeader(PublisherCallbackChannel.RETURN_CORRELATION_KEY, pendingMessage.getId());
+
+                    operations.send(pendingMessage.getExchange(), pendingMessage.getRoutingKey(), pendingMessage.getMessage(),
+                            new CorrelationData(pendingMessage.getId()));
+
+                    pendingMessage.setSentAt(System.currentTimeMillis());
+                    published.increment();
+                }
+
+                return null;
+            });
+
+            batches.increment();
+        } catch (RuntimeException e) {
+            log.warn("failed to send rabbitmq messages. messages={}", batch.size(), e);
+
+            // 이미 보낸 메시지도 confirm 을 받을 채널이 닫혔으므로 실패로 완료하고, 호출한 쪽에서 다시 보낸다
+            batch.forEach(pendingMessage -> {
+                if (this.complete(pendingMessage.getId(), e))
+                    sendFailures.increment();
+            });
+        }
+    }
+
+    private void confirm(CorrelationData correlationData, boolean ack, String cause) {
+        if (Objects.isNull(correlationData))
+            return;
+
+        PendingMessage pendingMessage = unconfirmed.get(correlationData.getId());
+
+        if (Objects.isNull(pendingMessage))
+            return;
+
+        if (! ack) {
+            if (this.complete(pendingMessage.getId(), new AmqpException("publisher nack. cause=" + cause)))
+                nacked.increment();
+        } else if (Objects.nonNull(pendingMessage.getReturnedReason())) {
+            // 반송된 메시지도 ack 는 온다. 받을 큐가 없었으므로 실패로 완료한다
+            this.complete(pendingMessage.getId(), new AmqpException("returned message. reason=" + pendingMessage.getReturnedReason()));
+        } else if (this.complete(pendingMessage.getId(), null)) {
+            confirmed.increment();
+        }
+    }
+
+    private void returned(Message message, String replyText) {
+        Object id = message.getMessageProperties().getHeaders().get(PublisherCallbackChannel.RETURN_CORRELATION_KEY);
+
+        if (Objects.isNull(id))
+            return;
+
+        PendingMessage pendingMessage = unconfirmed.get(id.toString());
+
+        if (Objects.nonNull(pendingMessage)) {
+            pendingMessage.setReturnedReason(replyText);
+            returned.increment();
+        }
+    }
+
+    /**
+     * 한 메시지는 한번만 완료한다. confirm, 시간 초과, 보내기 실패가 겹쳐도 먼저 꺼낸 쪽만 완료한다.
+     *
+     * @param failure 실패 이유. 성공이면 null
+     * @return 이번에 완료했으면 true
+     */
+    private boolean complete(String id, Throwable failure) {
+        PendingMessage pendingMessage = unconfirmed.remove(id);
+
+        if (Objects.isNull(pendingMessage))
+            return false;
+
+        permits.release();
+
+        long millis = System.currentTimeMillis() - pendingMessage.getReceivedAt();
+        totalMillis.add(millis);
+        maxMillis.accumulate(millis);
+
+        if (Objects.isNull(failure)) {
+            pendingMessage.getFuture().complete(null);
+        } else {
+            pendingMessage.getFuture().completeExceptionally(failure);
+        }
+
+        return true;
+    }
+
+    @Getter
+    private static class PendingMessage {
+        private final String id;
+        private final String exchange;
+        private final String routingKey;
+        private final Message message;
+        private final Long receivedAt;
+        private final CompletableFuture<Void> future;
+        @Setter private volatile long sentAt = Long.MAX_VALUE; // 보내기 전에는 시간 초과로 치지 않는다
+        @Setter private volatile String returnedReason;
+
+        PendingMessage(String id, String exchange, String routingKey, Message message, Long receivedAt, CompletableFuture<Void> future) {
+            this.id = id;
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.message = message;
+            this.receivedAt = receivedAt;
+            this.future = future;
+        }
+    }
+
+}
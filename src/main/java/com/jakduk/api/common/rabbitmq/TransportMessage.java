@@ -0,0 +1,18 @@
+package com.jakduk.api.common.rabbitmq;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * in-process 전송의 메시지. 본문은 RabbitMQ 로 보낼 때와 같은 JSON 이다.
+ */
+
+@AllArgsConstructor
+@Getter
+public class TransportMessage {
+
+    private final String routingKey;
+    private final byte[] body;
+    private final Boolean redelivered; // 한번 되돌려서 다시 받은 메시지
+
+}
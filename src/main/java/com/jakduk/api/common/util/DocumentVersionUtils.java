@@ -0,0 +1,22 @@
+package com.jakduk.api.common.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 검색 문서 버전을 만든다. 엘라스틱서치 external 버전으로 넣어서, 늦게 도착한 옛 쓰기를 버리게 한다.
+ *
+ * 버전은 만든 시각(epoch 마이크로초)이다. 한 서버 안에서는 같은 밀리초에 여러번 만들어도 늘 커진다.
+ * 서버끼리는 시계로 순서를 정하므로, 같은 문서를 서로 다른 서버에서 거의 동시에 고치면 시계가 빠른 쪽이 이긴다.
+ */
+public class DocumentVersionUtils {
+
+    private static final AtomicLong last = new AtomicLong();
+
+    public static Long next() {
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+        return last.accumulateAndGet(now, (previous, current) -> Math.max(previous + 1, current));
+    }
+
+}
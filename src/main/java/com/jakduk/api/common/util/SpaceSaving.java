@@ -0,0 +1,75 @@
+package com.jakduk.api.common.util;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving 알고리즘으로 자주 나오는 단어를 센다. 여러 스레드에서 함께 써도 된다.
+ *
+ * capacity 개의 단어만 센다. 꽉 찼을 때 새 단어가 오면 가장 적게 센 단어를 내보내고, 그 수에 1을 더해 이어서 센다.
+ * 그래서 센 수는 실제보다 크거나 같고, 실제 수가 전체의 1/capacity 보다 많은 단어는 빠지지 않는다.
+ * 단어를 센 수 순으로도 들고 있어서, 가장 적게 센 단어를 훑지 않고 O(log capacity) 로 찾는다.
+ */
+public class SpaceSaving {
+
+    private final Integer capacity;
+
+    // 단어 -> 센 수
+    private final Map<String, Counter> counters;
+
+    // 센 수가 적은 순서. 같으면 단어 순
+    private final TreeSet<Counter> ordered = new TreeSet<>(
+            Comparator.comparingLong((Counter counter) -> counter.count).thenComparing(counter -> counter.word));
+
+    public SpaceSaving(Integer capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(String word, Long amount) {
+        Counter counter = counters.get(word);
+
+        if (counter != null) {
+            // 순서가 바뀌므로 빼고 고친 뒤 다시 넣는다
+            ordered.remove(counter);
+            counter.count += amount;
+            ordered.add(counter);
+            return;
+        }
+
+        long count = amount;
+
+        if (counters.size() >= capacity) {
+            Counter min = ordered.pollFirst();
+            counters.remove(min.word);
+            count += min.count;
+        }
+
+        counter = new Counter(word, count);
+        counters.put(word, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * 단어별 센 수
+     */
+    public synchronized Map<String, Long> getCounts() {
+        Map<String, Long> counts = new HashMap<>(counters.size() * 2);
+        counters.forEach((word, counter) -> counts.put(word, counter.count));
+
+        return counts;
+    }
+
+    private static class Counter {
+        private final String word;
+        private long count;
+
+        Counter(String word, long count) {
+            this.word = word;
+            this.count = count;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.jakduk.api.common.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 한 요청 안에서 단계별 걸린 시간(ms)을 잰다. 여러 스레드에서 함께 써도 된다.
+ * Server-Timing 헤더 값으로 내보낼 수 있다.
+ */
+public class StageTimer {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final Map<String, Long> durations = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public <T> T time(String stage, Supplier<T> supplier) {
+        long start = System.nanoTime();
+
+        try {
+            return supplier.get();
+        } finally {
+            durations.put(stage, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public Map<String, Long> getDurations() {
+        synchronized (durations) {
+            return new LinkedHashMap<>(durations);
+        }
+    }
+
+    /**
+     * 예) article;dur=3, galleries;dur=2, prev;dur=1
+     */
+    public String toServerTiming() {
+        return this.getDurations().entrySet().stream()
+                .map(entry -> entry.getKey() + ";dur=" + entry.getValue())
+                .collect(Collectors.joining(", "));
+    }
+
+}
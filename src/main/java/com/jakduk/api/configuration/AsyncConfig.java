@@ -2,12 +2,16 @@ package com.jakduk.api.configuration;
 
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author pyohwan
@@ -28,6 +32,110 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    /**
+     * 한 요청 안에서 서로 독립적인 조회를 동시에 실행할 때 쓴다.
+     * 큐가 차면 요청 스레드에서 직접 실행해서 스레드 수를 넘지 않는다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor lookupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("lookup-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        return executor;
+    }
+
+    /**
+     * 홈 최근 데이터의 영역들을 동시에 가져올 때 쓴다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor homeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(5);
+        executor.setMaxPoolSize(10);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("home-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        return executor;
+    }
+
+    /**
+     * 엘라스틱서치 재색인 작업을 돌린다. 한번에 하나만 돈다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor searchReindexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("reindex-");
+
+        return executor;
+    }
+
+    /**
+     * lucene 검색 엔진에서 검색을 돌린다. 엘라스틱서치 엔진은 클라이언트 스레드를 쓰므로 만들지 않는다.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "jakduk.elasticsearch", name = "engine", havingValue = "lucene")
+    public ThreadPoolTaskExecutor searchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("search-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        return executor;
+    }
+
+    /**
+     * 통합 검색의 제한 시간을 잰다. 시간이 되면 결과 future 를 완료하기만 하므로 스레드 하나면 된다.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler searchTimer() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("search-timer-");
+        scheduler.setDaemon(true);
+        scheduler.setRemoveOnCancelPolicy(true);
+
+        return scheduler;
+    }
+
+    /**
+     * RabbitMQSender 의 보내기 버퍼를 비우는 스레드 하나를 돌린다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor rabbitSendExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("rabbit-send-");
+
+        return executor;
+    }
+
+    /**
+     * in-process 전송으로 받은 메일을 보낸다. SMTP 가 느려도 in-process 처리 스레드는 다른 메시지를 처리한다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor emailExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("email-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
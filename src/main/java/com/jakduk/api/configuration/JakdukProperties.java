@@ -30,6 +30,8 @@ public class JakdukProperties {
     private Rabbitmq rabbitmq = new Rabbitmq();
     private Elasticsearch elasticsearch = new Elasticsearch();
     private Storage storage = new Storage();
+    private Board board = new Board();
+    private Home home = new Home();
 
     @Getter
     @Setter
@@ -57,6 +59,19 @@ public class JakdukProperties {
     @ConfigurationProperties("jakduk.rabbitmq")
     public class Rabbitmq {
         private String exchangeName;
+        private String transport; // 메시지 전송. rabbitmq, in-process
+        private Integer inProcessCapacity; // in-process 버퍼와 처리 중인 메시지를 합친 최대 수
+        private Integer inProcessWorkers; // in-process 메시지를 꺼내서 처리하는 스레드 수
+        private String inProcessJournalPath; // in-process 메시지를 남기는 저널 파일. 없으면 남기지 않는다
+        private Integer outboxRelayDelayMillis; // outbox 를 RabbitMQ 로 보내는 주기
+        private Integer outboxBatchSize; // outbox 에서 한번에 꺼내서 보내는 최대 수
+        private Long outboxLeaseMillis; // relay 가 맡은 outbox 이벤트를 다른 서버가 가져가지 못하는 시간. confirm 을 기다리는 시간보다 길어야 한다
+        private Long publisherConfirmTimeoutMillis; // 보낸 메시지의 publisher confirm 을 기다리는 시간
+        private Integer sendBufferCapacity; // 보내기 버퍼와 confirm 을 기다리는 메시지를 합친 최대 수
+        private Long sendBufferOfferTimeoutMillis; // 보내기 버퍼가 찼을 때 자리가 나기를 기다리는 시간
+        private Integer publishBatchSize; // 한 채널로 한번에 보내는 최대 메시지 수
+        private Integer ackBatchSize; // 엘라스틱서치 리스너가 성공한 메시지를 모아서 한번에 ack 하는 수
+        private Integer documentBatchSize; // 모은 검색 문서 메시지 하나에 담는 최대 수
         private Map<String, RabbitMQ> queues = new HashMap<>();
         private Map<String, String> routingKeys = new HashMap<>();
     }
@@ -74,6 +89,13 @@ public class JakdukProperties {
         private Integer bulkConcurrentRequests;
         private Integer bulkFlushIntervalSeconds;
         private Integer bulkSizeMb;
+        private Integer searchTimeoutMillis; // 통합 검색 제한 시간
+        private Integer searchCacheMaxEntries; // 통합 검색 결과 캐시 최대 수
+        private Integer searchCacheTtlSeconds; // 통합 검색 결과 캐시 유지 시간
+        private Integer searchCacheRefreshDelayMillis; // 쓰기가 검색에 보이기까지 기다리는 시간. 색인 refresh_interval 보다 길게 둔다
+        private Integer searchWordRollupIntervalSeconds; // 검색어를 모아서 색인하는 주기
+        private String engine; // 검색 엔진. elasticsearch, lucene
+        private String lucenePath; // lucene 엔진의 색인 디렉토리
     }
 
     @Getter
@@ -87,4 +109,23 @@ public class JakdukProperties {
         private String userPictureSmallPath;
     }
 
+    @Getter
+    @Setter
+    @Configuration
+    @ConfigurationProperties("jakduk.board")
+    public class Board {
+        private Integer viewsFlushIntervalSeconds; // 게시물 읽음수를 DB에 반영하는 주기
+        private Integer totalsReconcileIntervalSeconds; // 게시판 전체 글 수를 DB와 맞추는 주기
+    }
+
+    @Getter
+    @Setter
+    @Configuration
+    @ConfigurationProperties("jakduk.home")
+    public class Home {
+        private Integer latestItemsDebounceSeconds; // 변경 후 이 시간 동안 다른 변경이 없으면 홈 최근 데이터를 다시 만든다
+        private Integer latestItemsMaxStalenessSeconds; // 홈 최근 데이터가 이보다 오래되면 다시 만든다
+        private Integer latestItemsSectionTimeoutMillis; // 홈 최근 데이터 영역별 제한 시간. 넘기면 그 영역은 빠진다
+    }
+
 }
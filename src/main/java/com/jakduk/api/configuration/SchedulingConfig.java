@@ -0,0 +1,28 @@
+package com.jakduk.api.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 주기적인 작업(읽음수 반영 등)을 위한 설정
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    /**
+     * @Scheduled 작업을 돌린다. TaskScheduler 빈이 여럿이면 이 이름의 빈을 쓰므로, searchTimer 에서 돌지 않는다.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("scheduling-");
+
+        return scheduler;
+    }
+
+}
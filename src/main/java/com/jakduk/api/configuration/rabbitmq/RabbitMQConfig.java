@@ -2,13 +2,17 @@ package com.jakduk.api.configuration.rabbitmq;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jakduk.api.configuration.JakdukProperties;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -25,6 +29,7 @@ import java.util.stream.Collectors;
 public class RabbitMQConfig {
 
     @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
 
     @Autowired private ObjectMapper objectMapper;
 
@@ -33,6 +38,22 @@ public class RabbitMQConfig {
         return new Jackson2JsonMessageConverter(objectMapper);
     }
 
+    /**
+     * 엘라스틱서치 색인 메시지는 bulk 결과가 나온 뒤에 직접 ack, nack 한다. ack 는 ack-batch-size 만큼 모아서 한번에 한다.
+     * 한 bulk에 모을 만큼 메시지를 미리 받아 둔다.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory elasticsearchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(elasticsearchProperties.getBulkActions());
+
+        return factory;
+    }
+
     @Bean
     public TopicExchange topicExchange() {
         return new TopicExchange(rabbitmqProperties.getExchangeName());
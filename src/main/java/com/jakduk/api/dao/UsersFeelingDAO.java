@@ -0,0 +1,136 @@
+package com.jakduk.api.dao;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.UsersFeeling;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Objects;
+
+/**
+ * 감정 표현(좋아요, 싫어요)을 document를 읽지 않고 조건부 findAndModify 한번으로 바꾼다.
+ * UsersFeeling을 구현한 Article, ArticleComment, JakduComment에 쓴다.
+ *
+ * 반환하는 document에는 감정 표현 회원 목록의 userId만 담긴다.
+ */
+
+@Repository
+public class UsersFeelingDAO {
+
+    private static final String USERS_LIKING = "usersLiking";
+    private static final String USERS_DISLIKING = "usersDisliking";
+    private static final String LIKING_COUNT = "likingCount";
+    private static final String DISLIKING_COUNT = "dislikingCount";
+
+    // 동시에 다른 요청이 감정 표현을 바꿔 조건이 어긋났을 때 다시 시도하는 횟수
+    private static final Integer MAX_RETRIES = 3;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 감정 표현을 토글한다.
+     * 같은 감정 표현을 이미 했으면 취소하고, 반대 감정 표현을 했으면 바꾸고, 안 했으면 추가한다.
+     *
+     * @param entityClass document 타입
+     * @param id document ID
+     * @param userId 회원 ID
+     * @param username 회원 이름
+     * @param feeling 감정 표현 종류
+     * @return 바뀐 뒤의 document. document가 없으면 null
+     */
+    public <T extends UsersFeeling> T toggleUsersFeeling(Class<T> entityClass, String id, String userId, String username,
+                                                          Constants.FEELING_TYPE feeling) {
+
+        String sameField = this.getFeelingField(feeling, true);
+        String oppositeField = this.getFeelingField(feeling, false);
+
+        for (int i = 0; i < MAX_RETRIES; i++) {
+            // 이미 같은 감정 표현을 했을 때, 취소
+            Update cancel = new Update().pull(sameField, new Query(Criteria.where("userId").is(userId)));
+            this.incCount(entityClass, cancel, sameField, -1);
+
+            T result = this.modify(entityClass, Criteria.where("_id").is(new ObjectId(id)).and(sameField + ".userId").is(userId), cancel);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            // 반대 감정 표현을 했을 때, 반대 감정 표현을 없애고 바꿈
+            Update change = new Update()
+                    .pull(oppositeField, new Query(Criteria.where("userId").is(userId)))
+                    .push(sameField, this.newFeelingUser(userId, username));
+            this.incCount(entityClass, change, oppositeField, -1);
+            this.incCount(entityClass, change, sameField, 1);
+
+            result = this.modify(entityClass, Criteria.where("_id").is(new ObjectId(id)).and(oppositeField + ".userId").is(userId), change);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            // 아직 감정 표현을 하지 않았을 때, 추가
+            result = this.addUsersFeeling(entityClass, id, userId, username, feeling);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            if (! mongoTemplate.exists(new Query(Criteria.where("_id").is(new ObjectId(id))), entityClass))
+                return null;
+        }
+
+        throw new IllegalStateException("감정 표현을 바꾸지 못했습니다. id=" + id);
+    }
+
+    /**
+     * 아직 감정 표현을 하지 않은 회원만 감정 표현을 추가한다.
+     *
+     * @return 바뀐 뒤의 document. document가 없거나 이미 감정 표현을 했으면 null
+     */
+    public <T extends UsersFeeling> T addUsersFeeling(Class<T> entityClass, String id, String userId, String username,
+                                                       Constants.FEELING_TYPE feeling) {
+
+        String sameField = this.getFeelingField(feeling, true);
+
+        Update add = new Update().push(sameField, this.newFeelingUser(userId, username));
+        this.incCount(entityClass, add, sameField, 1);
+
+        Criteria criteria = Criteria.where("_id").is(new ObjectId(id))
+                .and(USERS_LIKING + ".userId").ne(userId)
+                .and(USERS_DISLIKING + ".userId").ne(userId);
+
+        return this.modify(entityClass, criteria, add);
+    }
+
+    private <T extends UsersFeeling> T modify(Class<T> entityClass, Criteria criteria, Update update) {
+        Query query = new Query(criteria);
+        query.fields().include(USERS_LIKING + ".userId").include(USERS_DISLIKING + ".userId");
+
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), entityClass);
+    }
+
+    /**
+     * 글은 감정 표현수를 따로 저장하므로 같은 update에서 함께 증감한다.
+     */
+    private void incCount(Class<?> entityClass, Update update, String feelingField, Integer amount) {
+        if (Article.class.equals(entityClass))
+            update.inc(USERS_LIKING.equals(feelingField) ? LIKING_COUNT : DISLIKING_COUNT, amount);
+    }
+
+    private String getFeelingField(Constants.FEELING_TYPE feeling, Boolean same) {
+        Boolean isLike = Constants.FEELING_TYPE.LIKE.equals(feeling);
+
+        return isLike.equals(same) ? USERS_LIKING : USERS_DISLIKING;
+    }
+
+    private CommonFeelingUser newFeelingUser(String userId, String username) {
+        return new CommonFeelingUser(new ObjectId().toString(), userId, username);
+    }
+
+}
@@ -61,7 +61,8 @@ public enum ServiceError {
     SEND_EMAIL_FAILED(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.send.email.failed"),
     GALLERY_IO_ERROR(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.gallery.io"),
     ELASTICSEARCH_NOT_FOUND_INDEX(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.elasticsearch.not.found.index"),
-    ELASTICSEARCH_INDEX_FAILED(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.elasticsearch.index.failed");
+    ELASTICSEARCH_INDEX_FAILED(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.elasticsearch.index.failed"),
+    ELASTICSEARCH_REINDEX_ALREADY_RUNNING(HttpStatus.SC_CONFLICT, "exception.elasticsearch.reindex.already.running");
 
     private final Integer httpStatus;
     private final String code;
@@ -0,0 +1,64 @@
+package com.jakduk.api.listener;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * 한 채널에서 받은 메시지의 처리 결과를 모아서 ack 한다.
+ *
+ * 성공한 메시지는 바로 ack 하지 않고, 그보다 앞선 메시지가 모두 끝나면 가장 큰 delivery tag 로 한번에(multiple) ack 한다.
+ * 실패한 메시지는 그 메시지만 nack 한다. 처리 중인 메시지가 없거나 모인 수가 ackBatchSize 가 되면 ack 한다.
+ * delivery tag 는 채널마다 따로 매기므로 채널마다 하나씩 만든다.
+ */
+class AckTracker {
+
+    private final Channel channel;
+    private final Integer ackBatchSize;
+
+    private final NavigableSet<Long> inProgress = new TreeSet<>(); // 받았지만 아직 결과가 없는 메시지
+    private final NavigableSet<Long> succeeded = new TreeSet<>(); // 성공했지만 아직 ack 하지 않은 메시지
+
+    AckTracker(Channel channel, Integer ackBatchSize) {
+        this.channel = channel;
+        this.ackBatchSize = ackBatchSize;
+    }
+
+    synchronized void received(long deliveryTag) {
+        inProgress.add(deliveryTag);
+    }
+
+    synchronized void succeeded(long deliveryTag) throws IOException {
+        inProgress.remove(deliveryTag);
+        succeeded.add(deliveryTag);
+
+        this.flush();
+    }
+
+    synchronized void failed(long deliveryTag, Boolean requeue) throws IOException {
+        inProgress.remove(deliveryTag);
+        channel.basicNack(deliveryTag, false, requeue);
+
+        this.flush();
+    }
+
+    /**
+     * 처리 중인 가장 앞 메시지보다 앞선 성공한 메시지들을 한번에 ack 한다.
+     * 그 사이에 nack 한 메시지가 있어도 이미 끝난 메시지이므로 multiple ack 에 영향이 없다.
+     */
+    private void flush() throws IOException {
+        NavigableSet<Long> ackable = inProgress.isEmpty() ? succeeded : succeeded.headSet(inProgress.first(), false);
+
+        if (ackable.isEmpty())
+            return;
+
+        if (! inProgress.isEmpty() && ackable.size() < ackBatchSize)
+            return;
+
+        channel.basicAck(ackable.last(), true);
+        ackable.clear();
+    }
+
+}
@@ -1,6 +1,11 @@
 package com.jakduk.api.listener;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.jakduk.api.common.rabbitmq.ElasticsearchRoutingKey;
+import com.jakduk.api.common.rabbitmq.MessageTransport;
+import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
+import com.jakduk.api.common.rabbitmq.TransportMessage;
 import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.exception.ServiceError;
@@ -9,7 +14,10 @@ import com.jakduk.api.model.elasticsearch.EsArticle;
 import com.jakduk.api.model.elasticsearch.EsComment;
 import com.jakduk.api.model.elasticsearch.EsGallery;
 import com.jakduk.api.model.elasticsearch.EsSearchWord;
+import com.jakduk.api.model.rabbitmq.EsDocumentEvent;
 import com.jakduk.api.service.SearchService;
+import com.jakduk.api.service.search.SearchWriteResult;
+import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -18,9 +26,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Created by pyohwanjang on 2017. 6. 20..
@@ -33,55 +51,243 @@ public class ElasticsearchListener {
     @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
 
     @Autowired private SearchService searchService;
+    @Autowired private MessageTransport messageTransport;
 
-    @RabbitListener(queues = "${jakduk.rabbitmq.queues.elasticsearch.binding-queue-name}")
-    public void receive(Message message, @Header(AmqpHeaders.RECEIVED_ROUTING_KEY) String routingKey) throws IOException {
-
-        String findKey = rabbitmqProperties.getRoutingKeys().entrySet().stream()
-                .filter(entity -> entity.getValue().equals(routingKey))
-                .findFirst()
-                .map(Map.Entry::getKey)
-                .orElseThrow(() -> new ServiceException(ServiceError.ILLEGAL_ARGUMENT));
-
-        ElasticsearchRoutingKey elasticsearchRoutingKey = ElasticsearchRoutingKey.find(findKey);
-
-        switch (elasticsearchRoutingKey) {
-            case ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE:
-                EsArticle esArticle = ObjectMapperUtils.readValue(message.getBody(), EsArticle.class);
-                searchService.indexDocumentArticle(esArticle);
-                break;
-
-                case ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE:
-                String boardId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                    searchService.deleteDocumentBoard(boardId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT:
-                EsComment esComment = ObjectMapperUtils.readValue(message.getBody(), EsComment.class);
-                searchService.indexDocumentBoardComment(esComment);
-                break;
-
-            case ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT:
-                String commentId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                searchService.deleteDocumentBoardComment(commentId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_GALLERY:
-                EsGallery esGallery = ObjectMapperUtils.readValue(message.getBody(), EsGallery.class);
-                searchService.indexDocumentGallery(esGallery);
-                break;
-
-            case ELASTICSEARCH_DELETE_DOCUMENT_GALLERY:
-                String galleryId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                searchService.deleteDocumentGallery(galleryId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD:
-                EsSearchWord esSearchWord = ObjectMapperUtils.readValue(message.getBody(), EsSearchWord.class);
-                searchService.indexDocumentSearchWord(esSearchWord);
-                break;
+    // 브로커 라우팅 키 -> 라우팅 키
+    private final Map<String, ElasticsearchRoutingKey> routingKeys = new HashMap<>();
 
+    // 라우팅 키 -> 메시지 본문을 읽어서 쓰는 처리기
+    private final Map<ElasticsearchRoutingKey, DocumentHandler> handlers = new EnumMap<>(ElasticsearchRoutingKey.class);
+
+    private final ObjectReader eventsReader = ObjectMapperUtils.getObjectMapper().readerFor(EsDocumentEvent[].class);
+
+    // 채널 -> 그 채널의 ack 모음
+    private final Map<Channel, AckTracker> ackTrackers = new ConcurrentHashMap<>();
+
+    /**
+     * 라우팅 키와 처리기를 미리 만들어 두고, 메시지마다 설정을 뒤지거나 읽기 객체를 만들지 않는다.
+     */
+    @PostConstruct
+    public void init() {
+        for (ElasticsearchRoutingKey elasticsearchRoutingKey : ElasticsearchRoutingKey.values()) {
+            String routingKey = rabbitmqProperties.getRoutingKeys().get(elasticsearchRoutingKey.getRoutingKey());
+
+            if (Objects.nonNull(routingKey))
+                routingKeys.put(routingKey, elasticsearchRoutingKey);
+        }
+
+        ObjectReader articleReader = ObjectMapperUtils.getObjectMapper().readerFor(EsArticle.class);
+        ObjectReader commentReader = ObjectMapperUtils.getObjectMapper().readerFor(EsComment.class);
+        ObjectReader galleryReader = ObjectMapperUtils.getObjectMapper().readerFor(EsGallery.class);
+        ObjectReader searchWordReader = ObjectMapperUtils.getObjectMapper().readerFor(EsSearchWord.class);
+        ObjectReader idReader = ObjectMapperUtils.getObjectMapper().readerFor(String.class);
+
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE,
+                (payload, version) -> searchService.indexDocumentArticle(articleReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE,
+                (payload, version) -> searchService.deleteDocumentBoard(idReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT,
+                (payload, version) -> searchService.indexDocumentBoardComment(commentReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT,
+                (payload, version) -> searchService.deleteDocumentBoardComment(idReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_GALLERY,
+                (payload, version) -> searchService.indexDocumentGallery(galleryReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_GALLERY,
+                (payload, version) -> searchService.deleteDocumentGallery(idReader.readValue(payload), version));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD,
+                (payload, version) -> searchService.indexDocumentSearchWord(searchWordReader.readValue(payload)));
+
+        messageTransport.subscribe(RabbitMQPublisher.QUEUE_ELASTICSEARCH, this::receiveInProcess);
+    }
+
+    /**
+     * 메시지는 컨테이너가 prefetch 만큼 미리 받아 두고, 쓰기는 SearchIndexingService 의 bulk 로 모인다.
+     * ack 는 AckTracker 가 모아서 한번에 하고, 실패한 메시지만 따로 nack 한다.
+     */
+    @RabbitListener(queues = "${jakduk.rabbitmq.queues.elasticsearch.binding-queue-name}",
+            containerFactory = "elasticsearchListenerContainerFactory")
+    public void receive(Message message, @Header(AmqpHeaders.RECEIVED_ROUTING_KEY) String routingKey, Channel channel,
+                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+
+        AckTracker ackTracker = this.getAckTracker(channel);
+        ackTracker.received(deliveryTag);
+
+        CompletableFuture<SearchWriteResult> result;
+
+        try {
+            result = this.dispatch(message.getBody(), routingKey, this.getVersion(message));
+        } catch (Exception e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+
+        result.whenComplete((writeResult, throwable) -> this.acknowledge(message, ackTracker, deliveryTag, writeResult, throwable));
+    }
+
+    /**
+     * in-process 전송으로 받은 메시지. 되돌릴지는 RabbitMQ 로 받을 때와 같은 규칙으로 정한다.
+     */
+    private CompletableFuture<Boolean> receiveInProcess(TransportMessage message) {
+        CompletableFuture<SearchWriteResult> result;
+
+        try {
+            result = this.dispatch(message.getBody(), message.getRoutingKey(), null);
+        } catch (Exception e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
         }
+
+        return result.handle((writeResult, throwable) ->
+                ! this.isSucceeded(message.getRoutingKey(), writeResult, throwable)
+                        && this.isRequeue(message.getRoutingKey(), message.getRedelivered(), writeResult, throwable));
+    }
+
+    private CompletableFuture<SearchWriteResult> dispatch(byte[] body, String routingKey, Long version) throws IOException {
+
+        ElasticsearchRoutingKey elasticsearchRoutingKey = routingKeys.get(routingKey);
+
+        if (Objects.isNull(elasticsearchRoutingKey))
+            throw new ServiceException(ServiceError.ILLEGAL_ARGUMENT);
+
+        if (ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENTS.equals(elasticsearchRoutingKey))
+            return this.dispatchEvents(eventsReader.readValue(body));
+
+        return this.dispatch(elasticsearchRoutingKey, ObjectMapperUtils.getObjectMapper().readTree(body), version);
+    }
+
+    private CompletableFuture<SearchWriteResult> dispatch(ElasticsearchRoutingKey elasticsearchRoutingKey, JsonNode payload,
+                                                          Long version) throws IOException {
+
+        DocumentHandler handler = handlers.get(elasticsearchRoutingKey);
+
+        if (Objects.isNull(handler))
+            throw new ServiceException(ServiceError.ILLEGAL_ARGUMENT);
+
+        return handler.handle(payload, version);
+    }
+
+    /**
+     * 채널이 닫히면 그 채널의 delivery tag 는 더 쓸 수 없으므로 버린다. 새 채널은 tag 를 1 부터 다시 매긴다.
+     */
+    private AckTracker getAckTracker(Channel channel) {
+        return ackTrackers.computeIfAbsent(channel, key -> {
+            key.addShutdownListener(cause -> ackTrackers.remove(key));
+            return new AckTracker(key, rabbitmqProperties.getAckBatchSize());
+        });
+    }
+
+    /**
+     * 모아서 보낸 이벤트를 모두 쓰고 결과 하나로 합친다. 하나라도 실패하면 실패이고, 다시 보낼 수 있는 실패가 있으면 다시 보낼 수 있다.
+     * 메시지를 다시 받아도 이미 쓴 이벤트는 버전이 같아서 버려지므로, 실패한 이벤트만 다시 쓰인다.
+     */
+    private CompletableFuture<SearchWriteResult> dispatchEvents(EsDocumentEvent[] events) {
+        List<CompletableFuture<SearchWriteResult>> results = new ArrayList<>();
+
+        for (EsDocumentEvent event : events) {
+            CompletableFuture<SearchWriteResult> result;
+
+            try {
+                result = this.dispatch(event.getRoutingKey(), event.getPayload(), event.getVersion());
+            } catch (Exception e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+
+            results.add(result.exceptionally(throwable -> {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+                return SearchWriteResult.builder()
+                        .failed(true)
+                        .retryable(this.isRetryable(cause))
+                        .notFound(false)
+                        .stale(false)
+                        .message(cause.getMessage())
+                        .build();
+            }));
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(ignore -> {
+                    List<SearchWriteResult> failures = results.stream()
+                            .map(CompletableFuture::join)
+                            .filter(SearchWriteResult::getFailed)
+                            .collect(Collectors.toList());
+
+                    return SearchWriteResult.builder()
+                            .failed(! failures.isEmpty())
+                            .retryable(failures.stream().anyMatch(SearchWriteResult::getRetryable))
+                            .notFound(false)
+                            .stale(false)
+                            .message(failures.isEmpty() ? null
+                                    : String.format("%d of %d events failed. %s", failures.size(), events.length, failures.get(0).getMessage()))
+                            .build();
+                });
+    }
+
+    /**
+     * 문서 버전 헤더. 버전 없이 보낸 예전 메시지는 null
+     */
+    private Long getVersion(Message message) {
+        Object version = message.getMessageProperties().getHeaders().get(RabbitMQPublisher.HEADER_DOCUMENT_VERSION);
+
+        return version instanceof Number ? ((Number) version).longValue() : null;
+    }
+
+    /**
+     * 쓰기 결과에 따라 메시지를 ack, nack 한다.
+     */
+    private void acknowledge(Message message, AckTracker ackTracker, long deliveryTag, SearchWriteResult writeResult, Throwable throwable) {
+
+        String routingKey = message.getMessageProperties().getReceivedRoutingKey();
+
+        try {
+            if (this.isSucceeded(routingKey, writeResult, throwable)) {
+                ackTracker.succeeded(deliveryTag);
+            } else {
+                ackTracker.failed(deliveryTag, this.isRequeue(routingKey, message.getMessageProperties().isRedelivered(), writeResult, throwable));
+            }
+        } catch (IOException e) {
+            // 채널이 닫혔으면 ack 하지 못한 메시지는 브로커가 다시 보낸다
+            log.warn("failed to acknowledge elasticsearch message. deliveryTag={}", deliveryTag, e);
+        }
+    }
+
+    private Boolean isSucceeded(String routingKey, SearchWriteResult writeResult, Throwable throwable) {
+        if (Objects.nonNull(throwable) || writeResult.getFailed())
+            return false;
+
+        if (writeResult.getStale())
+            log.debug("stale elasticsearch message was discarded. routingKey={}, id={}", routingKey, writeResult.getId());
+
+        return true;
+    }
+
+    /**
+     * 검색 엔진이 바빠서 거절했거나 bulk 요청 자체가 실패했으면 한번은 큐로 되돌리고, 그 밖의 실패는 버린다.
+     */
+    private Boolean isRequeue(String routingKey, Boolean redelivered, SearchWriteResult writeResult, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+        Boolean retryable = Objects.isNull(cause) ? writeResult.getRetryable() : this.isRetryable(cause);
+
+        Boolean requeue = retryable && ! redelivered;
+
+        log.warn("elasticsearch message was nacked. routingKey={}, requeue={}, cause={}", routingKey, requeue,
+                Objects.isNull(cause) ? writeResult.getMessage() : cause.getMessage());
+
+        return requeue;
+    }
+
+    /**
+     * 잘못된 메시지(ServiceException, 읽지 못한 본문)가 아닌 예외는 다시 보내면 될 수 있다.
+     */
+    private Boolean isRetryable(Throwable cause) {
+        return ! (cause instanceof ServiceException || cause instanceof IOException);
+    }
+
+    @FunctionalInterface
+    private interface DocumentHandler {
+        CompletableFuture<SearchWriteResult> handle(JsonNode payload, Long version) throws IOException;
     }
 
 }
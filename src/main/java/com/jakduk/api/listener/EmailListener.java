@@ -1,13 +1,23 @@
 package com.jakduk.api.listener;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jakduk.api.common.rabbitmq.MessageTransport;
+import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
+import com.jakduk.api.common.rabbitmq.TransportMessage;
+import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.model.rabbitmq.EmailPayload;
 import com.jakduk.api.mail.EmailService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.mail.MessagingException;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by pyohwanjang on 2017. 6. 17..
@@ -20,6 +30,19 @@ public class EmailListener {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private MessageTransport messageTransport;
+
+    @Resource
+    private ThreadPoolTaskExecutor emailExecutor;
+
+    private final ObjectReader emailPayloadReader = ObjectMapperUtils.getObjectMapper().readerFor(EmailPayload.class);
+
+    @PostConstruct
+    public void init() {
+        messageTransport.subscribe(RabbitMQPublisher.QUEUE_EMAIL, this::receiveInProcess);
+    }
+
     @RabbitListener(queues = "${jakduk.rabbitmq.queues.email.binding-queue-name}")
     public void receive(EmailPayload emailPayload) throws MessagingException {
 
@@ -36,4 +59,20 @@ public class EmailListener {
         }
     }
 
+    /**
+     * in-process 전송으로 받은 메시지. SMTP 로 보내는 동안 in-process 처리 스레드를 잡지 않도록 emailExecutor 에서 보낸다.
+     * 보내지 못한 메일은 로그만 남기고 되돌리지 않는다.
+     */
+    private CompletableFuture<Boolean> receiveInProcess(TransportMessage message) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                this.receive(emailPayloadReader.readValue(message.getBody()));
+            } catch (IOException | MessagingException e) {
+                log.warn("failed to send email. routingKey={}", message.getRoutingKey(), e);
+            }
+
+            return false;
+        }, emailExecutor);
+    }
+
 }
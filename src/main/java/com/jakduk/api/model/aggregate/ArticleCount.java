@@ -0,0 +1,21 @@
+package com.jakduk.api.model.aggregate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 게시물의 댓글수, 감정수
+ */
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+public class ArticleCount {
+	private String id;
+	private Integer commentCount;
+	private Integer likingCount;
+	private Integer dislikingCount;
+}
@@ -0,0 +1,14 @@
+package com.jakduk.api.model.aggregate;
+
+import lombok.Getter;
+
+/**
+ * 게시판, 말머리별 글 수
+ */
+
+@Getter
+public class BoardCategoryCount {
+	private String board;
+	private String category; // 말머리가 없는 게시판은 null
+	private Long count;
+}
@@ -0,0 +1,13 @@
+package com.jakduk.api.model.aggregate;
+
+import lombok.Getter;
+
+/**
+ * 아이템(글, 댓글) 별 대표 사진
+ */
+
+@Getter
+public class LinkedGallery {
+	private String id; // 아이템 ID
+	private String galleryId; // 사진 ID
+}
@@ -6,6 +6,8 @@ import com.jakduk.api.model.embedded.CommonFeelingUser;
 import com.jakduk.api.model.embedded.CommonWriter;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -23,6 +25,10 @@ import java.util.List;
 @Getter
 @Setter
 @Document
+@CompoundIndexes({
+		@CompoundIndex(name = "board_id", def = "{'board': 1, '_id': -1}"), // 게시판 글 목록
+		@CompoundIndex(name = "board_category_id", def = "{'board': 1, 'category': 1, '_id': -1}") // 게시판 말머리별 글 목록
+})
 public class Article implements UsersFeeling {
 
 	@Id
@@ -42,5 +48,8 @@ public class Article implements UsersFeeling {
 	private String shortContent;
 	private LocalDateTime lastUpdated;
 	private Boolean linkedGallery;
+	private Integer commentCount; // 댓글 수
+	private Integer likingCount; // 좋아요 수
+	private Integer dislikingCount; // 싫어요 수
 
 }
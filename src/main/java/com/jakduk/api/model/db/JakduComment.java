@@ -16,7 +16,7 @@ import java.util.List;
 
 @Document
 @Data
-public class JakduComment {
+public class JakduComment implements UsersFeeling {
 
     @Id
     private String id;
@@ -0,0 +1,42 @@
+package com.jakduk.api.model.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 아직 RabbitMQ 로 보내지 않은 메시지. 요청에서는 여기에만 쓰고, OutboxRelay 가 맡아서(owner, leaseUntil) 보낸 뒤 지운다.
+ * 본문을 읽을 수 없는 메시지는 failedAt 을 남기고 다시 꺼내지 않는다.
+ */
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Document
+@CompoundIndexes({
+		@CompoundIndex(name = "owner", def = "{'owner': 1}"), // 맡은 이벤트 읽기, 지우기, 내려놓기
+		@CompoundIndex(name = "failedAt_id_leaseUntil", def = "{'failedAt': 1, '_id': 1, 'leaseUntil': 1}") // 맡을 이벤트를 _id 순으로 찾기, 남은 이벤트 세기
+})
+public class OutboxEvent {
+
+	@Id
+	private String id;
+	private String queue; // email, elasticsearch
+	private String routingKey; // jakduk.rabbitmq.routing-keys 의 키
+	private String documentKey; // 검색 문서 이벤트면 (타입#ID). 같은 문서는 마지막 것만 보낸다
+	private String payload; // 메시지 본문 JSON. 검색 문서 이벤트면 EsDocumentEvent
+	private LocalDateTime createdAt;
+	private String owner; // 맡은 relay 가 가져갈 때마다 새로 만드는 표식
+	private LocalDateTime leaseUntil; // 이때까지는 owner 만 보낸다. 지나면 다른 relay 가 다시 맡는다
+	private LocalDateTime failedAt; // 본문을 읽을 수 없어서 보내지 않기로 한 시각
+	private String error; // 보내지 않기로 한 까닭
+
+}
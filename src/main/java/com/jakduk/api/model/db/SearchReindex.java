@@ -0,0 +1,38 @@
+package com.jakduk.api.model.db;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.embedded.ReindexCheckpoint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 엘라스틱서치 재색인 작업. 중간에 멈춰도 checkpoints 부터 이어서 한다.
+ */
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Document
+public class SearchReindex {
+
+	@Id
+	private String id;
+	private Constants.REINDEX_STATUS_TYPE status;
+	private String boardIndex; // 새로 만든 게시판 색인
+	private String galleryIndex; // 새로 만든 사진첩 색인
+	private List<ReindexCheckpoint> checkpoints;
+	private String message; // 실패 이유
+	private LocalDateTime startedAt;
+	private LocalDateTime finishedAt;
+
+}
@@ -1,6 +1,5 @@
 package com.jakduk.api.model.elasticsearch;
 
-import com.jakduk.api.model.embedded.ArticleItem;
 import com.jakduk.api.model.embedded.CommonWriter;
 import lombok.Builder;
 import lombok.Getter;
@@ -19,7 +18,8 @@ import java.util.List;
 public class EsComment {
 	
     private String id;
-	private ArticleItem article;
+	// 부모 글 요약. 검색 결과에 글 정보를 보여주려고 색인할 때 함께 넣는다.
+	private EsParentArticle article;
 	private CommonWriter writer;
 	private String content;
 	private List<String> galleries;
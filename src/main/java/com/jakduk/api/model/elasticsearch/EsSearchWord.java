@@ -22,5 +22,6 @@ public class EsSearchWord {
 	private String word;
 	private SimpleWriter writer;
 	private LocalDateTime registerDate;
+	private Long count; // 모아서 넣은 검색 수. 예전 문서는 없고 1번으로 센다.
 
 }
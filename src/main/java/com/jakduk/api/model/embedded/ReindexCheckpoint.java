@@ -0,0 +1,27 @@
+package com.jakduk.api.model.embedded;
+
+import com.jakduk.api.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 재색인 대상별 진행 상황. lastId 까지 색인을 마쳤다.
+ */
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+public class ReindexCheckpoint {
+
+	private Constants.REINDEX_SOURCE_TYPE source;
+	private String lastId; // 색인을 마친 마지막 ID
+	private Long count; // 색인한 수
+	private Long failures; // 색인에 실패한 수
+	private Boolean done;
+
+}
@@ -1,8 +1,10 @@
 package com.jakduk.api.model.rabbitmq;
 
 import com.jakduk.api.common.Constants;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.util.Locale;
@@ -12,6 +14,8 @@ import java.util.Map;
  * Created by pyohwanjang on 2017. 6. 17..
  */
 
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 @Getter
 @ToString
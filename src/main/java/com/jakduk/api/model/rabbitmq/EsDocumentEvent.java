@@ -0,0 +1,26 @@
+package com.jakduk.api.model.rabbitmq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jakduk.api.common.rabbitmq.ElasticsearchRoutingKey;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 모아서 보내는 검색 문서 색인, 삭제 하나. ELASTICSEARCH_INDEX_DOCUMENTS 메시지에 여러개를 담는다.
+ */
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@ToString
+public class EsDocumentEvent {
+
+    private ElasticsearchRoutingKey routingKey; // 따로 보낼 때의 라우팅 키
+    private Long version; // 문서 버전
+    private JsonNode payload; // 따로 보낼 때의 메시지 본문. EsArticle, EsComment, EsGallery 또는 지울 문서 ID
+
+}
@@ -7,6 +7,8 @@ import lombok.Getter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Objects;
+
 /**
  * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
  * @company  : http://jakduk.com
@@ -29,5 +31,22 @@ public class ArticleOnList {
 	private Integer views;
 	private String shortContent;
 	private Boolean linkedGallery;
+	private Integer commentCount;
+	private Integer likingCount;
+	private Integer dislikingCount;
+
+	// 아직 수를 채우지 않은 옛 글은 0으로 읽는다
+
+	public Integer getCommentCount() {
+		return Objects.isNull(commentCount) ? 0 : commentCount;
+	}
+
+	public Integer getLikingCount() {
+		return Objects.isNull(likingCount) ? 0 : likingCount;
+	}
+
+	public Integer getDislikingCount() {
+		return Objects.isNull(dislikingCount) ? 0 : dislikingCount;
+	}
 
 }
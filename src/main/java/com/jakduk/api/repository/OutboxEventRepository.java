@@ -0,0 +1,15 @@
+package com.jakduk.api.repository;
+
+import com.jakduk.api.model.db.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String>, OutboxEventRepositoryCustom {
+
+	Optional<OutboxEvent> findTopByFailedAtIsNullOrderByIdAsc();
+	Long countByFailedAtIsNull();
+	Long countByFailedAtIsNotNull();
+	Long deleteByOwner(String owner);
+
+}
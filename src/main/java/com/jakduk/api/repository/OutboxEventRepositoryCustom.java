@@ -0,0 +1,29 @@
+package com.jakduk.api.repository;
+
+import com.jakduk.api.model.db.OutboxEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepositoryCustom {
+
+    /**
+     * 맡은 relay 가 없거나 맡은 시간이 지난 이벤트를 _id 순으로 limit 개까지 맡는다.
+     * 이벤트마다 조건을 다시 보고 고치므로, 여러 서버가 같이 가져가도 한 이벤트는 한 relay 만 맡는다.
+     *
+     * @param owner 이번에 맡는 relay 의 표식. 가져갈 때마다 새로 만든다.
+     * @return owner 가 맡은 이벤트. _id 순
+     */
+    List<OutboxEvent> claim(String owner, LocalDateTime leaseUntil, Integer limit);
+
+    /**
+     * 보내지 못한 이벤트를 내려놓아서 다음에 바로 다시 맡을 수 있게 한다.
+     */
+    void release(String owner);
+
+    /**
+     * 보낼 수 없는 이벤트로 남긴다. 다시 맡지 않는다.
+     */
+    void markFailed(String id, String error);
+
+}
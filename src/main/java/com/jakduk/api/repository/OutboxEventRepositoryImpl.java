@@ -0,0 +1,77 @@
+package com.jakduk.api.repository;
+
+import com.jakduk.api.model.db.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+public class OutboxEventRepositoryImpl implements OutboxEventRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 맡을 이벤트의 ID 를 읽고, 그 중 아직 맡을 수 있는 것만 owner 로 고친 뒤 owner 가 맡은 것을 읽는다.
+     * 그 사이 다른 relay 가 맡은 이벤트는 조건에 걸려 고쳐지지 않는다.
+     */
+    @Override
+    public List<OutboxEvent> claim(String owner, LocalDateTime leaseUntil, Integer limit) {
+        LocalDateTime now = LocalDateTime.now();
+
+        Query candidates = new Query(this.getClaimable(now))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        candidates.fields().include("_id");
+
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .collect(Collectors.toList());
+
+        if (ids.isEmpty())
+            return Collections.emptyList();
+
+        mongoTemplate.updateMulti(
+                new Query(this.getClaimable(now).and("_id").in(ids)),
+                new Update().set("owner", owner).set("leaseUntil", leaseUntil),
+                OutboxEvent.class);
+
+        return mongoTemplate.find(
+                new Query(Criteria.where("owner").is(owner)).with(Sort.by(Sort.Direction.ASC, "_id")),
+                OutboxEvent.class);
+    }
+
+    @Override
+    public void release(String owner) {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("owner").is(owner)),
+                new Update().unset("owner").unset("leaseUntil"),
+                OutboxEvent.class);
+    }
+
+    @Override
+    public void markFailed(String id, String error) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(id)),
+                new Update().set("failedAt", LocalDateTime.now()).set("error", error).unset("owner").unset("leaseUntil"),
+                OutboxEvent.class);
+    }
+
+    /**
+     * 보내지 않기로 한 이벤트가 아니고, 맡은 relay 가 없거나 맡은 시간이 지났다.
+     */
+    private Criteria getClaimable(LocalDateTime now) {
+        return Criteria.where("failedAt").is(null)
+                .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now));
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.jakduk.api.repository;
+
+import com.jakduk.api.model.db.SearchReindex;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface SearchReindexRepository extends MongoRepository<SearchReindex, String> {
+	Optional<SearchReindex> findTopByOrderByIdDesc();
+}
@@ -1,17 +1,23 @@
 package com.jakduk.api.repository.article;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.ArticleCount;
+import com.jakduk.api.model.aggregate.BoardCategoryCount;
 import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.embedded.BoardLog;
 import com.jakduk.api.model.simple.ArticleOnList;
 import com.jakduk.api.model.simple.ArticleOnRSS;
 import com.jakduk.api.model.simple.ArticleOnSitemap;
 import com.jakduk.api.model.simple.ArticleSimple;
 import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by pyohwan on 16. 10. 9.
@@ -40,11 +46,45 @@ public interface ArticleRepositoryCustom {
      */
     List<ArticleSimple> findArticleSimplesByIds(List<ObjectId> ids);
 
+    /**
+     * id 배열에 해당하는 Article 목록. 검색 색인에 쓰는 id, seq, board, category, subject, status 만 가져온다.
+     * @param ids id 배열
+     */
+    List<Article> findArticleSummariesByIds(List<ObjectId> ids);
+
+    /**
+     * 기준 Article ID 보다 큰 Article 목록. 지운 글은 빼고 id, subject 만 가져온다.
+     */
+    List<ArticleSimple> findSubjectsGreaterThanId(ObjectId objectId, Integer limit);
+
     /**
      * 공지 글 목록
      */
     List<ArticleOnList> findNotices(Sort sort);
 
+    /**
+     * 게시판 글 목록을 가져온다. Page와 달리 전체 글 수를 세지 않는다.
+     *
+     * @param board 게시판
+     * @param category 말머리. null이면 전체
+     */
+    List<ArticleOnList> findArticles(Constants.BOARD_TYPE board, String category, Pageable pageable);
+
+    /**
+     * 게시판, 말머리별 글 수
+     */
+    List<BoardCategoryCount> findBoardCategoryCounts();
+
+    /**
+     * 기준 글 ID보다 이전(작은 ID)의 글 목록을 최신순으로 가져온다. (board, category, _id) 인덱스를 탄다.
+     *
+     * @param board 게시판
+     * @param category 말머리. null이면 전체
+     * @param before 기준 글 ID. null이면 처음부터
+     * @param limit 가져올 글 수
+     */
+    List<ArticleOnList> findArticlesBefore(Constants.BOARD_TYPE board, String category, ObjectId before, Integer limit);
+
     /**
      * 홈에서 보여지는 최근글 목록
      */
@@ -69,6 +109,55 @@ public interface ArticleRepositoryCustom {
      */
     List<BoardFeelingCount> findUsersFeelingCount(List<ObjectId> ids);
 
+    /**
+     * 기준 Article ID 초과의 게시물 감정 갯수를 ID 오름차순으로 가져온다.
+     *
+     * @param objectId 해당 ID 초과의 조건 추가 (null 이면 검사 안함)
+     * @param limit limit
+     */
+    List<BoardFeelingCount> findUsersFeelingCountGreaterThanId(ObjectId objectId, Integer limit);
+
+    /**
+     * 게시물의 댓글 수를 증감한다.
+     *
+     * @param id 게시물 ID
+     * @param amount 증감 수
+     */
+    void increaseCommentCount(String id, Integer amount);
+
+    /**
+     * 고친 글의 내용만 바꾸고 로그를 덧붙인다. 댓글수, 읽음수, 감정은 따로 증감하므로 건드리지 않는다.
+     *
+     * @param category 말머리. null이면 지운다
+     */
+    void updateContent(String id, String subject, String content, String category, String shortContent, Boolean linkedGallery,
+                       BoardLog log, LocalDateTime lastUpdated);
+
+    /**
+     * 댓글이 달린 글의 제목, 내용, 작성자를 지우고 지운 글로 표시한다.
+     */
+    void updateToDeleted(String id, BoardLog log, LocalDateTime lastUpdated);
+
+    /**
+     * 공지 여부를 바꾸고 로그를 덧붙인다.
+     *
+     * @param notice 공지면 true. null이면 지운다
+     */
+    void updateNotice(String id, Boolean notice, BoardLog log);
+
+    /**
+     * 게시물들의 댓글수, 감정수를 덮어쓴다.
+     */
+    void updateArticleCounts(List<ArticleCount> articleCounts);
+
+    /**
+     * 게시물별 읽음수를 한번의 bulkWrite로 증가한다.
+     * views를 도는 순서대로 넣으므로, BulkOperationException의 오류 index는 그 순서의 게시물이다.
+     *
+     * @param views 게시물 ID, 증가할 읽음수
+     */
+    void increaseViews(Map<String, Integer> views);
+
     /**
      * 인기있는 게시물 조회
      *
@@ -1,9 +1,12 @@
 package com.jakduk.api.repository.article;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.ArticleCount;
+import com.jakduk.api.model.aggregate.BoardCategoryCount;
 import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.embedded.BoardLog;
 import com.jakduk.api.model.simple.ArticleOnList;
 import com.jakduk.api.model.simple.ArticleOnRSS;
 import com.jakduk.api.model.simple.ArticleOnSitemap;
@@ -11,16 +14,21 @@ import com.jakduk.api.model.simple.ArticleSimple;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.ObjectUtils;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -104,6 +112,37 @@ public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
         return results.getMappedResults();
     }
 
+    /**
+     * id 배열에 해당하는 Article 목록. 검색 색인에 쓰는 id, seq, board, category, subject, status 만 가져온다.
+     * @param ids id 배열
+     */
+    @Override
+    public List<Article> findArticleSummariesByIds(List<ObjectId> ids) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").in(ids));
+        query.fields().include("seq").include("board").include("category").include("subject").include("status");
+
+        return mongoTemplate.find(query, Article.class);
+    }
+
+    /**
+     * 기준 Article ID 보다 큰 Article 목록. 지운 글은 빼고 id, subject 만 가져온다.
+     */
+    @Override
+    public List<ArticleSimple> findSubjectsGreaterThanId(ObjectId objectId, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.delete").ne(true));
+
+        if (Objects.nonNull(objectId))
+            query.addCriteria(Criteria.where("_id").gt(objectId));
+
+        query.fields().include("subject");
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+        query.limit(limit);
+
+        return mongoTemplate.find(query, ArticleSimple.class);
+    }
+
     /**
      * 공지 글 목록
      */
@@ -117,6 +156,58 @@ public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
         return mongoTemplate.find(query, ArticleOnList.class);
     }
 
+    /**
+     * 게시판 글 목록을 가져온다. Page와 달리 전체 글 수를 세지 않는다.
+     */
+    @Override
+    public List<ArticleOnList> findArticles(Constants.BOARD_TYPE board, String category, Pageable pageable) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("board").is(board.name()));
+
+        if (Objects.nonNull(category))
+            query.addCriteria(Criteria.where("category").is(category));
+
+        query.with(pageable);
+
+        return mongoTemplate.find(query, ArticleOnList.class);
+    }
+
+    /**
+     * 게시판, 말머리별 글 수
+     *
+     * db.article.aggregate([{$group: {_id: {board: '$board', category: '$category'}, count: {$sum: 1}}}])
+     */
+    @Override
+    public List<BoardCategoryCount> findBoardCategoryCounts() {
+        AggregationOperation group1 = Aggregation.group("board", "category").count().as("count");
+        AggregationOperation project1 = Aggregation.project("board", "category", "count");
+
+        Aggregation aggregation = Aggregation.newAggregation(group1, project1);
+        AggregationResults<BoardCategoryCount> results = mongoTemplate.aggregate(aggregation, Constants.COLLECTION_ARTICLE, BoardCategoryCount.class);
+
+        return results.getMappedResults();
+    }
+
+    /**
+     * 기준 글 ID보다 이전(작은 ID)의 글 목록을 최신순으로 가져온다.
+     */
+    @Override
+    public List<ArticleOnList> findArticlesBefore(Constants.BOARD_TYPE board, String category, ObjectId before, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("board").is(board.name()));
+
+        if (Objects.nonNull(category))
+            query.addCriteria(Criteria.where("category").is(category));
+
+        if (Objects.nonNull(before))
+            query.addCriteria(Criteria.where("_id").lt(before));
+
+        query.with(new Sort(Sort.Direction.DESC, "_id"));
+        query.limit(limit);
+
+        return mongoTemplate.find(query, ArticleOnList.class);
+    }
+
     /**
      * 홈에서 보여지는 최근글 목록
      */
@@ -196,6 +287,173 @@ public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
         return results.getMappedResults();
     }
 
+    /**
+     * 기준 Article ID 초과의 게시물 감정 갯수를 ID 오름차순으로 가져온다.
+     *
+     * @param objectId 해당 ID 초과의 조건 추가 (null 이면 검사 안함)
+     * @param limit limit
+     */
+    @Override
+    public List<BoardFeelingCount> findUsersFeelingCountGreaterThanId(ObjectId objectId, Integer limit) {
+        AggregationOperation match1 = Aggregation.match(Criteria.where("_id").gt(objectId));
+        AggregationOperation sort1 = Aggregation.sort(Sort.Direction.ASC, "_id");
+        AggregationOperation limit1 = Aggregation.limit(limit);
+
+        AggregationExpression usersLikingCount = ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("usersLiking").then(new ArrayList<>()));
+        AggregationExpression usersDislikingCount = ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("usersDisliking").then(new ArrayList<>()));
+
+        AggregationOperation project1 = Aggregation.project("_id")
+                .and(usersLikingCount).as("usersLikingCount")
+                .and(usersDislikingCount).as("usersDislikingCount");
+
+        Aggregation aggregation;
+
+        if (Objects.nonNull(objectId)) {
+            aggregation = Aggregation.newAggregation(match1, sort1, limit1, project1);
+        } else {
+            aggregation = Aggregation.newAggregation(sort1, limit1, project1);
+        }
+
+        AggregationResults<BoardFeelingCount> results = mongoTemplate.aggregate(aggregation, Constants.COLLECTION_ARTICLE, BoardFeelingCount.class);
+
+        return results.getMappedResults();
+    }
+
+    /**
+     * 게시물의 댓글 수를 증감한다.
+     *
+     * @param id 게시물 ID
+     * @param amount 증감 수
+     */
+    @Override
+    public void increaseCommentCount(String id, Integer amount) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").is(new ObjectId(id)));
+
+        Update update = new Update();
+        update.inc("commentCount", amount);
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 고친 글의 내용만 바꾸고 로그를 덧붙인다.
+     */
+    @Override
+    public void updateContent(String id, String subject, String content, String category, String shortContent, Boolean linkedGallery,
+                              BoardLog log, LocalDateTime lastUpdated) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").is(new ObjectId(id)));
+
+        Update update = new Update();
+        update.set("subject", subject);
+        update.set("content", content);
+        update.set("shortContent", shortContent);
+        update.set("linkedGallery", linkedGallery);
+        update.set("lastUpdated", lastUpdated);
+        update.push("logs", log);
+
+        if (Objects.isNull(category)) {
+            update.unset("category");
+        } else {
+            update.set("category", category);
+        }
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 댓글이 달린 글의 제목, 내용, 작성자를 지우고 지운 글로 표시한다.
+     */
+    @Override
+    public void updateToDeleted(String id, BoardLog log, LocalDateTime lastUpdated) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").is(new ObjectId(id)));
+
+        Update update = new Update();
+        update.unset("subject");
+        update.unset("content");
+        update.unset("writer");
+        update.set("status.delete", true);
+        update.set("linkedGallery", false);
+        update.set("lastUpdated", lastUpdated);
+        update.push("logs", log);
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 공지 여부를 바꾸고 로그를 덧붙인다.
+     */
+    @Override
+    public void updateNotice(String id, Boolean notice, BoardLog log) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").is(new ObjectId(id)));
+
+        Update update = new Update();
+        update.push("logs", log);
+
+        if (Objects.isNull(notice)) {
+            update.unset("status.notice");
+        } else {
+            update.set("status.notice", notice);
+        }
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 게시물들의 댓글수, 감정수를 덮어쓴다.
+     */
+    @Override
+    public void updateArticleCounts(List<ArticleCount> articleCounts) {
+
+        if (articleCounts.isEmpty())
+            return;
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Article.class);
+
+        articleCounts.forEach(articleCount -> {
+            Query query = new Query();
+            query.addCriteria(Criteria.where("_id").is(new ObjectId(articleCount.getId())));
+
+            Update update = new Update();
+            update.set("commentCount", articleCount.getCommentCount());
+            update.set("likingCount", articleCount.getLikingCount());
+            update.set("dislikingCount", articleCount.getDislikingCount());
+
+            bulkOperations.updateOne(query, update);
+        });
+
+        bulkOperations.execute();
+    }
+
+    /**
+     * 게시물별 읽음수를 한번의 bulkWrite로 증가한다.
+     *
+     * @param views 게시물 ID, 증가할 읽음수
+     */
+    @Override
+    public void increaseViews(Map<String, Integer> views) {
+
+        if (views.isEmpty())
+            return;
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Article.class);
+
+        views.forEach((id, amount) -> {
+            Query query = new Query();
+            query.addCriteria(Criteria.where("_id").is(new ObjectId(id)));
+
+            Update update = new Update();
+            update.inc("views", amount);
+
+            bulkOperations.updateOne(query, update);
+        });
+
+        bulkOperations.execute();
+    }
+
     /**
      * 인기있는 게시물 조회
      *
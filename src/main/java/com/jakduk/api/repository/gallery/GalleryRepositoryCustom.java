@@ -1,6 +1,7 @@
 package com.jakduk.api.repository.gallery;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.LinkedGallery;
 import com.jakduk.api.model.db.Gallery;
 import com.jakduk.api.model.simple.GallerySimple;
 import org.bson.types.ObjectId;
@@ -22,9 +23,30 @@ public interface GalleryRepositoryCustom {
      */
     List<Gallery> findByItemIdAndFromType(ObjectId itemId, Constants.GALLERY_FROM_TYPE fromType, Integer limit);
 
+    /**
+     * ItemID 배열과 FromType에 해당하는 아이템별 최신 Gallery 하나씩을 가져온다.
+     *
+     * @param itemIds 아이템 ID 배열
+     * @param fromType 아이템 타입
+     */
+    List<LinkedGallery> findFirstByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType);
+
     /**
      * ItemID이 있으면 그 이전부터 최신순으로 GallerySimple 목록을 가져온다.
      */
     List<GallerySimple> findSimpleById(ObjectId id, Integer limit);
 
+    /**
+     * ID가 있으면 그 다음부터 오래된순으로 Gallery 목록을 가져온다. (재색인용)
+     */
+    List<Gallery> findGalleriesGreaterThanId(ObjectId id, Integer limit);
+
+    /**
+     * ItemID 배열과 FromType에 연결된 Gallery 목록을 가져온다.
+     *
+     * @param itemIds 아이템 ID 배열
+     * @param fromType 아이템 타입
+     */
+    List<Gallery> findByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType);
+
 }
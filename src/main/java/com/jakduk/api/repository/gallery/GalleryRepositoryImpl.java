@@ -1,16 +1,21 @@
 package com.jakduk.api.repository.gallery;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.LinkedGallery;
 import com.jakduk.api.model.db.Gallery;
 import com.jakduk.api.model.simple.GallerySimple;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -65,6 +70,42 @@ public class GalleryRepositoryImpl implements GalleryRepositoryCustom {
         return mongoTemplate.find(query, Gallery.class);
     }
 
+    /**
+     * ItemID 배열과 FromType에 해당하는 아이템별 최신 Gallery 하나씩을 가져온다.
+     *
+     * db.gallery.aggregate([
+     *  {$match:{'status.status':'ENABLE', 'linkedItems._id':{$in:[...]}, 'linkedItems.from':'ARTICLE'}},
+     *  {$sort:{_id:-1}},
+     *  {$unwind:'$linkedItems'},
+     *  {$match:{'linkedItems._id':{$in:[...]}, 'linkedItems.from':'ARTICLE'}},
+     *  {$group:{_id:'$linkedItems._id', galleryId:{$first:'$_id'}}}])
+     *
+     * @param itemIds 아이템 ID 배열
+     * @param fromType 아이템 타입
+     */
+    @Override
+    public List<LinkedGallery> findFirstByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+
+        if (itemIds.isEmpty())
+            return Collections.emptyList();
+
+        AggregationOperation match1 = Aggregation.match(
+                Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name())
+                        .and("linkedItems._id").in(itemIds)
+                        .and("linkedItems.from").is(fromType.name()));
+        AggregationOperation sort1 = Aggregation.sort(Sort.Direction.DESC, "_id");
+        AggregationOperation unwind1 = Aggregation.unwind("linkedItems");
+        AggregationOperation match2 = Aggregation.match(
+                Criteria.where("linkedItems._id").in(itemIds)
+                        .and("linkedItems.from").is(fromType.name()));
+        AggregationOperation group1 = Aggregation.group("linkedItems._id").first("_id").as("galleryId");
+
+        Aggregation aggregation = Aggregation.newAggregation(match1, sort1, unwind1, match2, group1);
+        AggregationResults<LinkedGallery> results = mongoTemplate.aggregate(aggregation, Constants.COLLECTION_GALLERY, LinkedGallery.class);
+
+        return results.getMappedResults();
+    }
+
     @Override
     public List<GallerySimple> findSimpleById(ObjectId id, Integer limit) {
 
@@ -80,4 +121,42 @@ public class GalleryRepositoryImpl implements GalleryRepositoryCustom {
 
         return mongoTemplate.find(query, GallerySimple.class);
     }
+
+    /**
+     * ID가 있으면 그 다음부터 오래된순으로 Gallery 목록을 가져온다. (재색인용)
+     */
+    @Override
+    public List<Gallery> findGalleriesGreaterThanId(ObjectId id, Integer limit) {
+
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name()));
+        query.limit(limit);
+
+        if (Objects.nonNull(id)) {
+            query.addCriteria(Criteria.where("_id").gt(id));
+        }
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
+
+    /**
+     * ItemID 배열과 FromType에 연결된 Gallery 목록을 가져온다.
+     */
+    @Override
+    public List<Gallery> findByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+
+        if (itemIds.isEmpty())
+            return Collections.emptyList();
+
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name()));
+        query.addCriteria(Criteria.where("linkedItems").elemMatch(Criteria.where("_id").in(itemIds).and("from").is(fromType.name())));
+        query.fields().include("linkedItems");
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
 }
@@ -2,6 +2,8 @@ package com.jakduk.api.restcontroller;
 
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.rabbitmq.MessageTransport;
+import com.jakduk.api.common.rabbitmq.OutboxRelay;
 import com.jakduk.api.model.db.*;
 import com.jakduk.api.model.embedded.LocalName;
 import com.jakduk.api.restcontroller.vo.EmptyJsonResponse;
@@ -9,16 +11,24 @@ import com.jakduk.api.restcontroller.vo.admin.*;
 import com.jakduk.api.service.AdminService;
 import com.jakduk.api.service.CommonService;
 import com.jakduk.api.service.CompetitionService;
+import com.jakduk.api.service.HomeLatestItemsService;
+import com.jakduk.api.service.SearchCacheService;
+import com.jakduk.api.service.SearchIndexingService;
+import com.jakduk.api.service.SearchReindexService;
+import com.jakduk.api.service.SearchSuggestService;
 import com.jakduk.api.service.StatsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.bind.annotation.*;
 
+import javax.annotation.Resource;
 import javax.validation.Valid;
 import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 관리자 API
@@ -44,6 +54,30 @@ public class AdminRestController {
 	@Autowired
 	private CompetitionService competitionService;
 
+	@Autowired
+	private HomeLatestItemsService homeLatestItemsService;
+
+	@Autowired
+	private SearchIndexingService searchIndexingService;
+
+	@Autowired
+	private SearchReindexService searchReindexService;
+
+	@Autowired
+	private SearchCacheService searchCacheService;
+
+	@Autowired
+	private SearchSuggestService searchSuggestService;
+
+	@Autowired
+	private OutboxRelay outboxRelay;
+
+	@Autowired
+	private MessageTransport messageTransport;
+
+	@Resource
+	private ThreadPoolTaskExecutor homeExecutor;
+
 	// 알림판 목록
 	@RequestMapping(value = "/home/descriptions", method = RequestMethod.GET)
 	public Map<String, Object> getHomeDescriptions() {
@@ -660,6 +694,78 @@ public class AdminRestController {
 		return data;
 	}
 
+	// 홈 최근 데이터 영역별 호출 통계
+	@RequestMapping(value = "/home/latest/stats", method = RequestMethod.GET)
+	public Map<String, Object> getHomeLatestItemsStats() {
+		ThreadPoolExecutor executor = homeExecutor.getThreadPoolExecutor();
+
+		Map<String, Object> executorStats = new HashMap<>();
+		executorStats.put("poolSize", executor.getPoolSize());
+		executorStats.put("activeCount", executor.getActiveCount());
+		executorStats.put("queueSize", executor.getQueue().size());
+		executorStats.put("completedTaskCount", executor.getCompletedTaskCount());
+
+		Map<String, Object> data = new HashMap<>();
+		data.put("sections", homeLatestItemsService.getSectionStats());
+		data.put("executor", executorStats);
+		return data;
+	}
+
+	// 엘라스틱서치 bulk 색인 통계
+	@RequestMapping(value = "/search/indexing/stats", method = RequestMethod.GET)
+	public Map<String, Object> getSearchIndexingStats() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("bulk", searchIndexingService.getStats());
+		return data;
+	}
+
+	// outbox 에서 보낸 통계, 메시지 전송(RabbitMQ 또는 in-process) 통계
+	@RequestMapping(value = "/search/publisher/stats", method = RequestMethod.GET)
+	public Map<String, Object> getSearchPublisherStats() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("outbox", outboxRelay.getStats());
+		data.put("transport", messageTransport.getStats());
+		return data;
+	}
+
+	// 통합 검색 결과 캐시 통계
+	@RequestMapping(value = "/search/cache/stats", method = RequestMethod.GET)
+	public Map<String, Object> getSearchCacheStats() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("cache", searchCacheService.getStats());
+		return data;
+	}
+
+	// 검색어 자동 완성 통계
+	@RequestMapping(value = "/search/suggest/stats", method = RequestMethod.GET)
+	public Map<String, Object> getSearchSuggestStats() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("suggest", searchSuggestService.getStats());
+		return data;
+	}
+
+	// 엘라스틱서치 재색인 시작. resume이 true면 마지막 재색인을 이어서 한다.
+	@RequestMapping(value = "/search/reindex", method = RequestMethod.POST)
+	public Map<String, Object> startSearchReindex(@RequestParam(required = false, defaultValue = "false") Boolean resume) {
+		Map<String, Object> data = new HashMap<>();
+		data.put("reindex", searchReindexService.startReindex(resume));
+		return data;
+	}
+
+	// 엘라스틱서치 재색인 진행 상황
+	@RequestMapping(value = "/search/reindex", method = RequestMethod.GET)
+	public Map<String, Object> getSearchReindexProgress() {
+		return searchReindexService.getProgress();
+	}
+
+	// 게시물의 댓글수, 감정 표현수 다시 계산
+	@RequestMapping(value = "/article/counts", method = RequestMethod.POST)
+	public Map<String, Object> refreshArticleCounts() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("count", adminService.refreshArticleCounts());
+		return data;
+	}
+
 	private FootballClub buildFootballClub(String id, FootballClubRequest request) {
 		FootballClubOrigin footballClubOrigin = adminService.findOriginFootballClubById(request.getOrigin());
 
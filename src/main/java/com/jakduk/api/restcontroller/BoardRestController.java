@@ -35,6 +35,7 @@ import javax.validation.Valid;
 import java.beans.PropertyEditorSupport;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -58,9 +59,21 @@ public class BoardRestController {
             @PathVariable Constants.BOARD_TYPE board, // 게시판
             @RequestParam(required = false, defaultValue = "1") Integer page, // 페이지 번호(1부터 시작)
             @RequestParam(required = false, defaultValue = "20") Integer size, // 페이지 사이즈
-            @RequestParam(required = false, defaultValue = "ALL") String categoryCode // 말머리
+            @RequestParam(required = false, defaultValue = "ALL") String categoryCode, // 말머리
+            @RequestParam(required = false) String before // 이 글 ID 이전의 글 목록 (있으면 page 대신 keyset 방식)
     ) {
 
+        // offset, keyset 방식 모두 같은 범위로 가져온다.
+        if (size < 1) size = Constants.BOARD_MAX_LIMIT;
+        if (size > Constants.BOARD_MAX_SIZE) size = Constants.BOARD_MAX_SIZE;
+
+        if (Objects.nonNull(before)) {
+            if (! ObjectId.isValid(before))
+                throw new ServiceException(ServiceError.INVALID_PARAMETER);
+
+            return articleService.getArticlesBefore(board, categoryCode, new ObjectId(before), size);
+        }
+
         return articleService.getArticles(board, categoryCode, page, size);
     }
 
@@ -1,14 +1,12 @@
 package com.jakduk.api.restcontroller;
 
-import com.jakduk.api.common.Constants;
 import com.jakduk.api.common.util.JakdukUtils;
 import com.jakduk.api.model.db.Encyclopedia;
-import com.jakduk.api.restcontroller.vo.home.HomeLatestItemsResponse;
-import com.jakduk.api.service.ArticleService;
-import com.jakduk.api.service.GalleryService;
+import com.jakduk.api.service.HomeLatestItemsService;
 import com.jakduk.api.service.HomeService;
-import com.jakduk.api.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,9 +23,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class HomeRestController {
 
     @Autowired private HomeService homeService;
-    @Autowired private UserService userService;
-    @Autowired private ArticleService articleService;
-    @Autowired private GalleryService galleryService;
+    @Autowired private HomeLatestItemsService homeLatestItemsService;
 
     // 랜덤하게 백과사전 하나 가져오기
     @GetMapping("/home/encyclopedia")
@@ -38,20 +34,15 @@ public class HomeRestController {
         return homeService.getEncyclopediaWithRandom(language);
     }
 
-    // 홈에서 보여줄 각종 최근 데이터 가져오기
+    // 홈에서 보여줄 각종 최근 데이터 가져오기. 미리 만들어 둔 JSON을 그대로 내려준다.
     @GetMapping("/home/latest")
-    public HomeLatestItemsResponse getLatestItems() {
+    public ResponseEntity<byte[]> getLatestItems() {
 
         String language = JakdukUtils.getLanguageCode();
 
-        return HomeLatestItemsResponse.builder()
-                .homeDescription(homeService.getHomeDescription())
-                .users(userService.findSimpleUsers())
-                .comments(articleService.getLatestComments())
-                .articles(articleService.getLatestArticles())
-                .galleries(galleryService.findSimpleById(null, Constants.HOME_SIZE_GALLERY))
-                .build();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(homeLatestItemsService.getLatestItems(language));
     }
 
 }
-
@@ -1,10 +1,12 @@
 package com.jakduk.api.restcontroller;
 
-import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
-import com.jakduk.api.common.util.AuthUtils;
+import com.jakduk.api.common.Constants;
 import com.jakduk.api.restcontroller.vo.search.PopularSearchWordResult;
+import com.jakduk.api.restcontroller.vo.search.SearchSuggestResponse;
 import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
+import com.jakduk.api.service.PopularSearchWordService;
 import com.jakduk.api.service.SearchService;
+import com.jakduk.api.service.SearchSuggestService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -14,8 +16,12 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
 
 /**
  * 찾기 API
@@ -32,21 +38,26 @@ import java.time.LocalDate;
 @RestController
 public class SearchRestController {
 	
-	@Autowired private RabbitMQPublisher rabbitMQPublisher;
 	@Autowired private SearchService searchService;
+	@Autowired private PopularSearchWordService popularSearchWordService;
+	@Autowired private SearchSuggestService searchSuggestService;
 
-	// 통합 찾기
+	// 통합 찾기. 범위별 찾기가 끝날 때까지 요청 스레드를 잡고 있지 않는다.
 	@GetMapping("")
-	public SearchUnifiedResponse searchUnified(
+	public DeferredResult<SearchUnifiedResponse> searchUnified(
 			@NotEmpty @RequestParam String q, // 검색어
 			@NotEmpty @RequestParam(defaultValue = "ARTICLE;COMMENT;GALLERY") String w, // ARTICLE;COMMENT;GALLERY
 			@RequestParam(required = false, defaultValue = "0") Integer from, // 페이지 시작 위치
 			@RequestParam(required = false, defaultValue = "10") Integer size, // 페이지 크기
 			@RequestParam(required = false) String tag, // 하이라이트의 태그
-			@RequestParam(required = false) String styleClass // 하이라이트의 태그 클래스
+			@RequestParam(required = false) String styleClass, // 하이라이트의 태그 클래스
+			@RequestParam(required = false) String articleCursor, // 글 다음 페이지 커서
+			@RequestParam(required = false) String commentCursor, // 댓글 다음 페이지 커서
+			@RequestParam(required = false) String galleryCursor // 그림 다음 페이지 커서
 	) {
 
-		log.debug("unified search request q={}, w={}, from={}, size={}, tag={}, styleClass={}", q, w, from, size, tag, styleClass);
+		log.debug("unified search request q={}, w={}, from={}, size={}, tag={}, styleClass={}, articleCursor={}, commentCursor={}, galleryCursor={}",
+				q, w, from, size, tag, styleClass, articleCursor, commentCursor, galleryCursor);
 
 		if (size <= 0) size = 10;
 
@@ -63,11 +74,35 @@ public class SearchRestController {
 			postTags = String.format("</%s>", tag);
 		}
 
-		SearchUnifiedResponse searchUnifiedResponse = searchService.searchUnified(q, w, from, size, preTags, postTags);
+		Map<Constants.SEARCH_INCLUDE_TYPE, String> cursors = new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class);
+		cursors.put(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, articleCursor);
+		cursors.put(Constants.SEARCH_INCLUDE_TYPE.COMMENT, commentCursor);
+		cursors.put(Constants.SEARCH_INCLUDE_TYPE.GALLERY, galleryCursor);
 
-		rabbitMQPublisher.indexDocumentSearchWord(StringUtils.lowerCase(q), AuthUtils.getCommonWriter());
+		DeferredResult<SearchUnifiedResponse> deferredResult = new DeferredResult<>();
 
-		return searchUnifiedResponse;
+		searchService.searchUnified(q, w, from, size, preTags, postTags, cursors)
+				.whenComplete((searchUnifiedResponse, throwable) -> {
+					if (Objects.nonNull(throwable)) {
+						deferredResult.setErrorResult(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+					} else {
+						deferredResult.setResult(searchUnifiedResponse);
+					}
+				});
+
+		popularSearchWordService.record(q);
+
+		return deferredResult;
+	}
+
+	// 검색어 자동 완성. 엘라스틱서치에 묻지 않는다.
+	@GetMapping("/suggest")
+	public SearchSuggestResponse searchSuggest(
+			@NotEmpty @RequestParam String q, // 입력 중인 검색어
+			@RequestParam(required = false, defaultValue = "5") Integer size // 크기
+	) {
+
+		return searchSuggestService.suggest(q, size);
 	}
 
 	// 인기 검색어
@@ -76,10 +111,7 @@ public class SearchRestController {
 			@RequestParam(required = false, defaultValue = "5") Integer size // 크기
 	) {
 
-		// 3 주전
-		LocalDate threeWeeksAgo = LocalDate.now().minusWeeks(3);
-
-		return searchService.aggregateSearchWord(threeWeeksAgo, size);
+		return popularSearchWordService.getPopularWords(size);
 	}
 
 }
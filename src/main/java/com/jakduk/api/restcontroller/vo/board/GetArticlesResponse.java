@@ -31,5 +31,6 @@ public class GetArticlesResponse {
     private Integer number; // 현재 페이지(0부터 시작)
     private Integer numberOfElements; // 현제 페이지에서 글 수
     private Long totalElements; // 전체 글 수
+    private String nextBefore; // 다음 목록을 가져올 before 값(마지막 글 ID). 마지막 목록이면 없음
 
 }
@@ -17,4 +17,5 @@ public class SearchArticleResult {
 	private Long took; // 찾기에 걸린 시간(ms)
 	private Long totalCount; // 매칭되는 아이템 수
 	private List<ArticleSource> articles; // 매칭되는 게시물 목록
+	private String nextCursor; // 다음 페이지 커서
 }
@@ -18,4 +18,5 @@ public class SearchCommentResult {
 	private Long took;
 	private Long totalCount;
 	private List<EsCommentSource> comments;
+	private String nextCursor; // 다음 페이지 커서
 }
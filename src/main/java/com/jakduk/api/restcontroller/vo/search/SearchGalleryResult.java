@@ -17,4 +17,5 @@ public class SearchGalleryResult {
     private Long took;
     private Long totalCount;
     private List<EsGallerySource> galleries;
+    private String nextCursor; // 다음 페이지 커서
 }
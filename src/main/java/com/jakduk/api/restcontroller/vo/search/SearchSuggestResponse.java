@@ -0,0 +1,12 @@
+package com.jakduk.api.restcontroller.vo.search;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class SearchSuggestResponse {
+	private List<SearchSuggestion> suggestions; // 추천 검색어 목록. 점수 순
+}
@@ -0,0 +1,14 @@
+package com.jakduk.api.restcontroller.vo.search;
+
+import com.jakduk.api.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@AllArgsConstructor
+@Getter
+public class SearchSuggestion {
+	private String text; // 추천 검색어
+	private Constants.SEARCH_SUGGEST_TYPE type; // 추천 검색어를 가져온 곳
+}
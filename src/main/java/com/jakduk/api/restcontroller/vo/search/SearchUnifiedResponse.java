@@ -1,7 +1,10 @@
 package com.jakduk.api.restcontroller.vo.search;
 
+import com.jakduk.api.common.Constants;
 import lombok.*;
 
+import java.util.List;
+
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -11,4 +14,6 @@ public class SearchUnifiedResponse {
 	private SearchArticleResult articleResult; // 매칭된 글 객체
 	private SearchCommentResult commentResult; // 매칭된 댓글 객체
 	private SearchGalleryResult galleryResult; // 매칭된 사진 객체
+	private List<Constants.SEARCH_INCLUDE_TYPE> timedOutSections; // 제한 시간 안에 다 찾지 못한 범위
+	private List<Constants.SEARCH_INCLUDE_TYPE> failedSections; // 찾기에 실패한 범위
 }
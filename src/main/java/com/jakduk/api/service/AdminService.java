@@ -2,10 +2,14 @@ package com.jakduk.api.service;
 
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.event.ContentChangedEvent;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.dao.JakdukDAO;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.aggregate.ArticleCount;
+import com.jakduk.api.model.aggregate.BoardFeelingCount;
+import com.jakduk.api.model.aggregate.CommonCount;
 import com.jakduk.api.model.db.*;
 import com.jakduk.api.model.embedded.JakduScheduleScore;
 import com.jakduk.api.model.embedded.LocalName;
@@ -13,6 +17,8 @@ import com.jakduk.api.repository.AttendanceClubRepository;
 import com.jakduk.api.repository.CompetitionRepository;
 import com.jakduk.api.repository.EncyclopediaRepository;
 import com.jakduk.api.repository.HomeDescriptionRepository;
+import com.jakduk.api.repository.article.ArticleCommentRepository;
+import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.repository.footballclub.FootballClubOriginRepository;
 import com.jakduk.api.repository.footballclub.FootballClubRepository;
 import com.jakduk.api.repository.gallery.GalleryRepository;
@@ -26,6 +32,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
@@ -45,6 +52,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
@@ -58,6 +66,7 @@ public class AdminService {
 
 	@Autowired private JakdukDAO jakdukDAO;
 	@Autowired private CommonService commonService;
+	@Autowired private ApplicationEventPublisher applicationEventPublisher;
 	@Autowired private EncyclopediaRepository encyclopediaRepository;
 	@Autowired private FootballClubRepository footballClubRepository;
 	@Autowired private FootballClubOriginRepository footballClubOriginRepository;
@@ -67,6 +76,8 @@ public class AdminService {
 	@Autowired private JakduScheduleRepository jakduScheduleRepository;
 	@Autowired private JakduScheduleGroupRepository jakduScheduleGroupRepository;
 	@Autowired private CompetitionRepository competitionRepository; // 리팩토링 할때 없애자.
+	@Autowired private ArticleRepository articleRepository;
+	@Autowired private ArticleCommentRepository articleCommentRepository;
 
 	// 알림판 목록.
 	public List<HomeDescription> findHomeDescriptions() {
@@ -81,11 +92,15 @@ public class AdminService {
 	// 알림판 저장.
 	public void saveHomeDescription(HomeDescription homeDescription) {
 		homeDescriptionReposotiry.save(homeDescription);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.HOME_DESCRIPTION));
 	}
 
 	// 알림판 삭제.
 	public void deleteHomeDescriptionById(String id) {
 		homeDescriptionReposotiry.deleteById(id);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.HOME_DESCRIPTION));
 	}
 
 	// 백과사전 하나.
@@ -446,4 +461,47 @@ public class AdminService {
 		competitionRepository.deleteById(id);
 	}
 
+	/**
+	 * 게시물에 저장된 댓글수, 감정 표현수를 실제 댓글, 감정 표현 회원 목록과 맞춘다.
+	 * 여러번 실행해도 되며, 게시물 ID 순으로 1000개씩 처리한다.
+	 *
+	 * @return 처리한 게시물 수
+	 */
+	public Integer refreshArticleCounts() {
+		Integer total = 0;
+		ObjectId lastId = null;
+
+		while (true) {
+			List<BoardFeelingCount> feelingCounts = articleRepository.findUsersFeelingCountGreaterThanId(lastId, 1000);
+
+			if (feelingCounts.isEmpty())
+				break;
+
+			List<ObjectId> ids = feelingCounts.stream()
+					.map(feelingCount -> new ObjectId(feelingCount.getId()))
+					.collect(Collectors.toList());
+
+			Map<String, Integer> commentCounts = articleCommentRepository.findCommentsCountByIds(ids).stream()
+					.collect(Collectors.toMap(CommonCount::getId, CommonCount::getCount));
+
+			List<ArticleCount> articleCounts = feelingCounts.stream()
+					.map(feelingCount -> ArticleCount.builder()
+							.id(feelingCount.getId())
+							.commentCount(commentCounts.getOrDefault(feelingCount.getId(), 0))
+							.likingCount(feelingCount.getUsersLikingCount())
+							.dislikingCount(feelingCount.getUsersDislikingCount())
+							.build())
+					.collect(Collectors.toList());
+
+			articleRepository.updateArticleCounts(articleCounts);
+
+			total += articleCounts.size();
+			lastId = ids.get(ids.size() - 1);
+		}
+
+		log.info("refreshed counts of {} articles", total);
+
+		return total;
+	}
+
 }
@@ -3,50 +3,57 @@ package com.jakduk.api.service;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.common.board.category.BoardCategory;
 import com.jakduk.api.common.board.category.BoardCategoryGenerator;
+import com.jakduk.api.common.event.ContentChangedEvent;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.DateUtils;
 import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.common.util.StageTimer;
 import com.jakduk.api.common.util.UrlGenerationUtils;
+import com.jakduk.api.dao.UsersFeelingDAO;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
-import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.aggregate.CommonCount;
+import com.jakduk.api.model.aggregate.LinkedGallery;
 import com.jakduk.api.model.db.Article;
 import com.jakduk.api.model.db.ArticleComment;
 import com.jakduk.api.model.db.Gallery;
-import com.jakduk.api.model.db.UsersFeeling;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
 import com.jakduk.api.model.embedded.*;
 import com.jakduk.api.model.simple.*;
 import com.jakduk.api.repository.article.ArticleCommentRepository;
-import com.jakduk.api.repository.article.ArticleOnListRepository;
 import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.repository.gallery.GalleryRepository;
 import com.jakduk.api.restcontroller.vo.board.*;
 import com.jakduk.api.restcontroller.vo.home.HomeArticle;
 import com.jakduk.api.restcontroller.vo.home.HomeArticleComment;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.ObjectUtils;
 
+import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -56,12 +63,26 @@ public class ArticleService {
 
 	@Autowired private UrlGenerationUtils urlGenerationUtils;
 	@Autowired private ArticleRepository articleRepository;
-	@Autowired private ArticleOnListRepository articleOnListRepository;
 	@Autowired private ArticleCommentRepository articleCommentRepository;
 	@Autowired private GalleryRepository galleryRepository;
 	@Autowired private CommonService commonService;
 	@Autowired private CommonGalleryService commonGalleryService;
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
+	@Autowired private ApplicationEventPublisher applicationEventPublisher;
+	@Autowired private ArticleViewsService articleViewsService;
+	@Autowired private UsersFeelingDAO usersFeelingDAO;
+	@Autowired private ArticleTotalsService articleTotalsService;
+	@Resource private ThreadPoolTaskExecutor lookupExecutor;
+
+	// 공지글 목록 캐시. 공지 설정/해제, 공지글 고치기/지우기 때 비운다. 댓글수, 읽음수 등은 TTL 만큼 늦게 반영된다.
+	private static final Long NOTICES_CACHE_TTL_MILLIS = 60_000L;
+	private volatile NoticesCache noticesCache;
+
+	@AllArgsConstructor
+	private static class NoticesCache {
+		private final List<GetArticle> notices;
+		private final Long cachedAt;
+	}
 
 	public Article findOneBySeq(Constants.BOARD_TYPE board, Integer seq) {
         return articleRepository.findOneByBoardAndSeq(board.name(), seq)
@@ -100,10 +121,17 @@ public class ArticleService {
 				.logs(this.initBoardLogs(objectId, Constants.ARTICLE_LOG_TYPE.CREATE.name(), writer))
 				.lastUpdated(LocalDateTime.ofInstant(objectId.getDate().toInstant(), ZoneId.systemDefault()))
 				.linkedGallery(linkedGallery)
+				.commentCount(0)
+				.likingCount(0)
+				.dislikingCount(0)
 				.build();
 
 		articleRepository.save(article);
 
+		articleTotalsService.increaseTotal(article.getBoard(), article.getCategory(), 1L);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE));
+
 		log.info("new post created. post seq={}, subject={}", article.getSeq(), article.getSubject());
 
 		return article;
@@ -135,6 +163,8 @@ public class ArticleService {
 		String stripHtmlContent = StringUtils.defaultIfBlank(JakdukUtils.stripHtmlTag(content), StringUtils.EMPTY);
 		String shortContent = StringUtils.truncate(stripHtmlContent, Constants.ARTICLE_SHORT_CONTENT_LENGTH);
 
+		String beforeCategory = article.getCategory();
+
 		article.setSubject(subject);
 		article.setContent(content);
 		article.setCategory(Constants.BOARD_TYPE.FREE.equals(board) ? null : categoryCode);
@@ -148,13 +178,23 @@ public class ArticleService {
 			logs = new ArrayList<>();
 
 		ObjectId logId = new ObjectId();
-		logs.add(new BoardLog(logId.toString(), Constants.ARTICLE_LOG_TYPE.EDIT.name(), new SimpleWriter(writer)));
+		BoardLog boardLog = new BoardLog(logId.toString(), Constants.ARTICLE_LOG_TYPE.EDIT.name(), new SimpleWriter(writer));
+		logs.add(boardLog);
 		article.setLogs(logs);
 
 		// lastUpdated
 		article.setLastUpdated(LocalDateTime.ofInstant(logId.getDate().toInstant(), ZoneId.systemDefault()));
 
-		articleRepository.save(article);
+		// 댓글수, 읽음수, 감정은 따로 증감하므로 읽은 글을 통째로 저장하지 않고 고친 필드만 바꾼다.
+		articleRepository.updateContent(article.getId(), article.getSubject(), article.getContent(), article.getCategory(),
+				article.getShortContent(), article.getLinkedGallery(), boardLog, article.getLastUpdated());
+
+		articleTotalsService.moveTotal(article.getBoard(), beforeCategory, article.getCategory());
+
+		if (this.isNotice(article))
+			this.evictNotices();
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE));
 
 		log.info("post was edited. post seq={}, subject={}", article.getSeq(), article.getSubject());
 
@@ -208,7 +248,8 @@ public class ArticleService {
 			// lastUpdated
 			article.setLastUpdated(LocalDateTime.ofInstant(boardHistoryId.getDate().toInstant(), ZoneId.systemDefault()));
 
-			articleRepository.save(article);
+			// 내용만 지운 글은 목록에 남으므로 글 수는 그대로 둔다.
+			articleRepository.updateToDeleted(article.getId(), history, article.getLastUpdated());
 
 			log.info("A post was deleted(post only). post seq={}, subject={}", article.getSeq(), article.getSubject());
         }
@@ -216,13 +257,20 @@ public class ArticleService {
         else {
             articleRepository.delete(article);
 
+			articleTotalsService.increaseTotal(article.getBoard(), article.getCategory(), -1L);
+
 			log.info("A post was deleted(all). post seq={}, subject={}", article.getSeq(), article.getSubject());
         }
 
+		if (this.isNotice(article))
+			this.evictNotices();
+
         // 연결된 사진 끊기
         if (article.getLinkedGallery())
 			commonGalleryService.unlinkGalleries(article.getId(), Constants.GALLERY_FROM_TYPE.ARTICLE);
 
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE));
+
 		// 색인 지움
 		rabbitMQPublisher.deleteDocumentArticle(article.getId());
 
@@ -236,97 +284,16 @@ public class ArticleService {
 
 		Sort sort = new Sort(Sort.Direction.DESC, Collections.singletonList("_id"));
 		Pageable pageable = PageRequest.of(page - 1, size, sort);
-		Page<ArticleOnList> articlePages;
+		String category = "ALL".equals(categoryCode) ? null : categoryCode;
 
-		if ("ALL".equals(categoryCode)) {
-			articlePages = articleOnListRepository.findByBoard(board, pageable);
-		} else {
-			articlePages = articleOnListRepository.findByBoardAndCategory(board, categoryCode, pageable);
-		}
-
-		// 자유 게시판 공지글 목록
-		List<ArticleOnList> notices = articleRepository.findNotices(sort);
-
-		// 게시물 VO 변환 및 썸네일 URL 추가
-		Function<ArticleOnList, GetArticle> convertToGetArticle = article -> {
-			GetArticle getArticle = new GetArticle();
-			BeanUtils.copyProperties(article, getArticle);
-
-			if (article.getLinkedGallery()) {
-				List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(
-						new ObjectId(article.getId()), Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-				if (! CollectionUtils.isEmpty(galleries)) {
-					List<BoardGallerySimple> boardGalleries = galleries.stream()
-							.map(gallery -> BoardGallerySimple.builder()
-									.id(gallery.getId())
-									.thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()))
-									.build())
-							.collect(Collectors.toList());
-
-					getArticle.setGalleries(boardGalleries);
-				}
-			}
-
-			return getArticle;
-		};
-
-		List<GetArticle> getArticles = articlePages.getContent().stream()
-				.map(convertToGetArticle)
-				.collect(Collectors.toList());
-
-		List<GetArticle> getNotices = notices.stream()
-				.map(convertToGetArticle)
-				.collect(Collectors.toList());
-
-		// Board ID 뽑아내기.
-		ArrayList<ObjectId> ids = new ArrayList<>();
-
-		getArticles.forEach(article -> ids.add(new ObjectId(article.getId())));
-		getNotices.forEach(article -> ids.add(new ObjectId(article.getId())));
-
-		// 게시물의 댓글수
-		Map<String, Integer> commentCounts = articleCommentRepository.findCommentsCountByIds(ids).stream()
-				.collect(Collectors.toMap(CommonCount::getId, CommonCount::getCount));
-
-		// 게시물의 감정수
-		Map<String, BoardFeelingCount> feelingCounts = articleRepository.findUsersFeelingCount(ids).stream()
-				.collect(Collectors.toMap(BoardFeelingCount::getId, Function.identity()));
-
-		// 댓글수, 감정 표현수 합치기.
-		Consumer<GetArticle> applyCounts = article -> {
-			String boardId = article.getId();
-			Integer commentCount = commentCounts.get(boardId);
-
-			if (Objects.nonNull(commentCount))
-				article.setCommentCount(commentCount);
-
-			BoardFeelingCount feelingCount = feelingCounts.get(boardId);
-
-			if (Objects.nonNull(feelingCount)) {
-				article.setLikingCount(feelingCount.getUsersLikingCount());
-				article.setDislikingCount(feelingCount.getUsersDislikingCount());
-			}
-		};
-
-		getArticles.forEach(applyCounts);
-		getNotices.forEach(applyCounts);
-
-		// 말머리
-		List<BoardCategory> categories = BoardCategoryGenerator.getCategories(board, JakdukUtils.getLocale());
-		Map<String, String> categoriesMap = null;
-
-		if (! CollectionUtils.isEmpty(categories)) {
-			categoriesMap = categories.stream()
-					.collect(Collectors.toMap(BoardCategory::getCode, boardCategory -> boardCategory.getNames().get(0).getName()));
-
-			categoriesMap.put("ALL", JakdukUtils.getMessageSource("board.category.all"));
-		}
+		// 전체 글 수는 DB에서 세지 않고 메모리에 있는 값을 쓴다.
+		List<ArticleOnList> articles = articleRepository.findArticles(board, category, pageable);
+		Page<ArticleOnList> articlePages = new PageImpl<>(articles, pageable, articleTotalsService.getTotal(board, category));
 
 		return GetArticlesResponse.builder()
-				.categories(categoriesMap)
-				.articles(getArticles)
-				.notices(getNotices)
+				.categories(this.getCategoriesMap(board))
+				.articles(this.convertToGetArticles(articlePages.getContent()))
+				.notices(this.getNotices())
 				.first(articlePages.isFirst())
 				.last(articlePages.isLast())
 				.totalPages(articlePages.getTotalPages())
@@ -334,6 +301,36 @@ public class ArticleService {
 				.numberOfElements(articlePages.getNumberOfElements())
 				.size(articlePages.getSize())
 				.number(articlePages.getNumber())
+				.nextBefore(articlePages.isLast() ? null : this.getLastArticleId(articlePages.getContent()))
+				.build();
+	}
+
+	/**
+	 * 게시판 글 목록 (keyset 방식)
+	 * skip 없이 before 글 ID보다 이전 글을 가져온다. 첫 목록은 getArticles에서 가져오므로 공지글과 전체 글 수는 담지 않는다.
+	 *
+	 * @param before 기준 글 ID. 앞 목록의 nextBefore
+	 */
+	public GetArticlesResponse getArticlesBefore(Constants.BOARD_TYPE board, String categoryCode, ObjectId before, Integer size) {
+
+		String category = "ALL".equals(categoryCode) ? null : categoryCode;
+
+		// 다음 목록이 있는지 알기 위해 하나 더 가져온다.
+		List<ArticleOnList> articles = articleRepository.findArticlesBefore(board, category, before, size + 1);
+		Boolean last = articles.size() <= size;
+
+		if (! last)
+			articles = articles.subList(0, size);
+
+		return GetArticlesResponse.builder()
+				.categories(this.getCategoriesMap(board))
+				.articles(this.convertToGetArticles(articles))
+				.notices(Collections.emptyList())
+				.first(false)
+				.last(last)
+				.size(size)
+				.numberOfElements(articles.size())
+				.nextBefore(last ? null : this.getLastArticleId(articles))
 				.build();
 	}
 
@@ -346,27 +343,20 @@ public class ArticleService {
 
 		List<ArticleOnList> articles = articleRepository.findLatest(sort, Constants.HOME_SIZE_POST);
 
+		// 게시물의 썸네일 URL (사진이 연동된 게시물만)
+		List<ObjectId> linkedGalleryIds = articles.stream()
+				.filter(article -> BooleanUtils.isTrue(article.getLinkedGallery()))
+				.map(article -> new ObjectId(article.getId()))
+				.collect(Collectors.toList());
+
+		Map<String, List<BoardGallerySimple>> thumbnails = this.getArticleThumbnails(linkedGalleryIds);
+
 		// 게시물 VO 변환 및 썸네일 URL 추가
 		return articles.stream()
 				.map(post -> {
 					HomeArticle homeArticle = new HomeArticle();
 					BeanUtils.copyProperties(post, homeArticle);
-
-					if (post.getLinkedGallery()) {
-						List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(
-								new ObjectId(post.getId()), Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-						List<BoardGallerySimple> boardGalleries = galleries.stream()
-								.sorted(Comparator.comparing(Gallery::getId))
-								.limit(1)
-								.map(gallery -> BoardGallerySimple.builder()
-										.id(gallery.getId())
-										.thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()))
-										.build())
-								.collect(Collectors.toList());
-
-						homeArticle.setGalleries(boardGalleries);
-					}
+					homeArticle.setGalleries(thumbnails.get(post.getId()));
 
 					return homeArticle;
 				})
@@ -434,11 +424,13 @@ public class ArticleService {
 		if (userId.equals(articleWriter.getUserId()))
 			throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
 
-		this.setUsersFeeling(userId, username, feeling, article);
+		// 감정 표현수도 같은 update에서 함께 증감
+		Article feelingArticle = usersFeelingDAO.toggleUsersFeeling(Article.class, article.getId(), userId, username, feeling);
 
-		articleRepository.save(article);
+		if (Objects.isNull(feelingArticle))
+			throw new ServiceException(ServiceError.NOT_FOUND_ARTICLE);
 
-		return article;
+		return feelingArticle;
 	}
 
 	/**
@@ -465,8 +457,13 @@ public class ArticleService {
 
 		articleCommentRepository.save(articleComment);
 
+		// 게시물의 댓글수 증가
+		articleRepository.increaseCommentCount(article.getId(), 1);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE_COMMENT));
+
 		// 엘라스틱서치 색인 요청
-		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), articleComment.getArticle(), articleComment.getWriter(),
+		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), this.toEsParentArticle(article), articleComment.getWriter(),
 				articleComment.getContent(), galleryIds);
 
 		return articleComment;
@@ -497,8 +494,13 @@ public class ArticleService {
 
 		articleCommentRepository.save(articleComment);
 
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE_COMMENT));
+
+		Article article = articleRepository.findOneById(articleComment.getArticle().getId())
+				.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_ARTICLE));
+
 		// 엘라스틱서치 색인 요청
-		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), articleComment.getArticle(), articleComment.getWriter(),
+		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), this.toEsParentArticle(article), articleComment.getWriter(),
 				articleComment.getContent(), galleryIds);
 
 		return articleComment;
@@ -517,6 +519,11 @@ public class ArticleService {
 
 		articleCommentRepository.deleteById(id);
 
+		// 게시물의 댓글수 감소
+		articleRepository.increaseCommentCount(articleComment.getArticle().getId(), -1);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.ARTICLE_COMMENT));
+
 		// 색인 지움
 		rabbitMQPublisher.deleteDocumentComment(id);
 
@@ -569,11 +576,12 @@ public class ArticleService {
 		if (userId.equals(postWriter.getUserId()))
 			throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
 
-		this.setUsersFeeling(userId, username, feeling, boardComment);
+		ArticleComment feelingComment = usersFeelingDAO.toggleUsersFeeling(ArticleComment.class, boardComment.getId(), userId, username, feeling);
 
-		articleCommentRepository.save(boardComment);
+		if (Objects.isNull(feelingComment))
+			throw new ServiceException(ServiceError.NOT_FOUND_COMMENT);
 
-		return boardComment;
+		return feelingComment;
 	}
 
 	public void enableArticleNotice(CommonWriter writer, Constants.BOARD_TYPE board, Integer seq) {
@@ -623,11 +631,14 @@ public class ArticleService {
 			histories = new ArrayList<>();
 
 		String historyType = isEnable ? Constants.ARTICLE_LOG_TYPE.ENABLE_NOTICE.name() : Constants.ARTICLE_LOG_TYPE.DISABLE_NOTICE.name();
-		histories.add(new BoardLog(new ObjectId().toString(), historyType, new SimpleWriter(writer)));
+		BoardLog history = new BoardLog(new ObjectId().toString(), historyType, new SimpleWriter(writer));
+		histories.add(history);
 
 		article.setLogs(histories);
 
-		articleRepository.save(article);
+		articleRepository.updateNotice(article.getId(), status.getNotice(), history);
+
+		this.evictNotices();
 
 		if (log.isInfoEnabled())
 			log.info("Set notice for article. seq={}, type={}", article.getSeq(), status.getNotice());
@@ -698,7 +709,9 @@ public class ArticleService {
 	 */
 	public ResponseEntity<GetArticleDetailResponse> getArticleDetail(CommonWriter commonWriter, Constants.BOARD_TYPE board, Integer seq, Boolean isAddCookie) {
 
-		Article article = articleRepository.findOneBySeq(seq)
+		StageTimer timer = new StageTimer();
+
+		Article article = timer.time("article", () -> articleRepository.findOneBySeq(seq))
 				.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_ARTICLE));
 
 		if (! StringUtils.equals(article.getBoard(), board.name())) {
@@ -710,6 +723,30 @@ public class ArticleService {
 		if (isAddCookie)
 			this.increaseViews(article);
 
+		BoardCategory boardCategory = BoardCategoryGenerator.getCategory(board, article.getCategory(), JakdukUtils.getLocale());
+		ObjectId articleId = new ObjectId(article.getId());
+		String categoryCode = Objects.nonNull(boardCategory) ? boardCategory.getCode() : null;
+
+		// 글을 읽은 뒤의 조회는 서로 독립적이라 동시에 실행한다.
+		CompletableFuture<List<ArticleGallery>> galleriesFuture = CompletableFuture.supplyAsync(() ->
+				BooleanUtils.isTrue(article.getLinkedGallery()) ? timer.time("galleries", () -> this.getArticleGalleries(articleId)) : null,
+				lookupExecutor);
+
+		// 앞, 뒤 글
+		CompletableFuture<ArticleSimple> prevFuture = CompletableFuture.supplyAsync(() ->
+				timer.time("prev", () -> articleRepository.findByIdAndCategoryWithOperator(articleId, categoryCode, Constants.CRITERIA_OPERATOR.GT)),
+				lookupExecutor);
+		CompletableFuture<ArticleSimple> nextFuture = CompletableFuture.supplyAsync(() ->
+				timer.time("next", () -> articleRepository.findByIdAndCategoryWithOperator(articleId, categoryCode, Constants.CRITERIA_OPERATOR.LT)),
+				lookupExecutor);
+
+		// 글쓴이의 최근 글
+		CompletableFuture<List<LatestArticle>> latestFuture = CompletableFuture.supplyAsync(() ->
+				Objects.isNull(article.getStatus()) || BooleanUtils.isNotTrue(article.getStatus().getDelete())
+						? timer.time("latest", () -> this.getLatestArticlesByWriter(articleId, article.getWriter().getUserId()))
+						: null,
+				lookupExecutor);
+
         // 글 상세
 		ArticleDetail articleDetail = new ArticleDetail();
 		BeanUtils.copyProperties(article, articleDetail);
@@ -731,93 +768,111 @@ public class ArticleService {
 			articleDetail.setLogs(logs);
 		}
 
-		BoardCategory boardCategory = BoardCategoryGenerator.getCategory(board, article.getCategory(), JakdukUtils.getLocale());
-
 		articleDetail.setBoard(board.name());
 		articleDetail.setCategory(boardCategory);
 		articleDetail.setNumberOfLike(CollectionUtils.isEmpty(article.getUsersLiking()) ? 0 : article.getUsersLiking().size());
 		articleDetail.setNumberOfDislike(CollectionUtils.isEmpty(article.getUsersDisliking()) ? 0 : article.getUsersDisliking().size());
 
-		// 엮인 사진들
-		if (article.getLinkedGallery()) {
-            List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(
-                    new ObjectId(article.getId()), Constants.GALLERY_FROM_TYPE.ARTICLE, 100);
-
-            if (! CollectionUtils.isEmpty(galleries)) {
-                List<ArticleGallery> postDetailGalleries = galleries.stream()
-                        .map(gallery -> ArticleGallery.builder()
-                                .id(gallery.getId())
-                                .name(StringUtils.isNoneBlank(gallery.getName()) ? gallery.getName() : gallery.getFileName())
-                                .imageUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.LARGE, gallery.getId()))
-                                .thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()))
-                                .build())
-                        .collect(Collectors.toList());
-
-                articleDetail.setGalleries(postDetailGalleries);
-            }
-        }
-
         // 나의 감정 상태
 		if (Objects.nonNull(commonWriter))
 			articleDetail.setMyFeeling(JakdukUtils.getMyFeeling(commonWriter, article.getUsersLiking(), article.getUsersDisliking()));
 
-		// 앞, 뒤 글
-		ArticleSimple prevPost = articleRepository.findByIdAndCategoryWithOperator(new ObjectId(articleDetail.getId()),
-				Objects.nonNull(boardCategory) ? boardCategory.getCode() : null, Constants.CRITERIA_OPERATOR.GT);
-		ArticleSimple nextPost = articleRepository.findByIdAndCategoryWithOperator(new ObjectId(articleDetail.getId()),
-				Objects.nonNull(boardCategory) ? boardCategory.getCode() : null, Constants.CRITERIA_OPERATOR.LT);
-
-        // 글쓴이의 최근 글
-		List<LatestArticle> latestArticles = null;
-
-		if (Objects.isNull(articleDetail.getStatus()) || BooleanUtils.isNotTrue(articleDetail.getStatus().getDelete())) {
-
-			List<ArticleOnList> latestPostsByWriter = articleRepository.findByIdAndUserId(
-					new ObjectId(articleDetail.getId()), articleDetail.getWriter().getUserId(), 3);
-
-			// 게시물 VO 변환 및 썸네일 URL 추가
-			latestArticles = latestPostsByWriter.stream()
-					.map(post -> {
-						LatestArticle latestArticle = new LatestArticle();
-						BeanUtils.copyProperties(post, latestArticle);
-
-						if (! post.getLinkedGallery()) {
-							List<Gallery> latestPostGalleries = galleryRepository.findByItemIdAndFromType(new ObjectId(post.getId()),
-									Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-							if (! ObjectUtils.isEmpty(latestPostGalleries)) {
-								List<BoardGallerySimple> boardGalleries = latestPostGalleries.stream()
-										.map(gallery -> BoardGallerySimple.builder()
-												.id(gallery.getId())
-												.thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()))
-												.build())
-										.collect(Collectors.toList());
-
-								latestArticle.setGalleries(boardGalleries);
-							}
-						}
+		// 엮인 사진들
+		List<ArticleGallery> galleries = this.join(galleriesFuture);
 
-						return latestArticle;
-					})
-					.collect(Collectors.toList());
-		}
+		if (! CollectionUtils.isEmpty(galleries))
+			articleDetail.setGalleries(galleries);
+
+		ArticleSimple prevArticle = this.join(prevFuture);
+		ArticleSimple nextArticle = this.join(nextFuture);
+		List<LatestArticle> latestArticles = this.join(latestFuture);
+
+		// 모든 조회가 끝난 뒤에 시간을 적는다.
+		String serverTiming = timer.toServerTiming();
+
+		if (log.isDebugEnabled())
+			log.debug("article detail timings. seq={}, {}", seq, serverTiming);
 
 		return ResponseEntity.ok()
+				.header(StageTimer.SERVER_TIMING_HEADER, serverTiming)
 				.body(GetArticleDetailResponse.builder()
 						.article(articleDetail)
-						.prevArticle(prevPost)
-						.nextArticle(nextPost)
+						.prevArticle(prevArticle)
+						.nextArticle(nextArticle)
 						.latestArticlesByWriter(CollectionUtils.isEmpty(latestArticles) ? null : latestArticles)
 						.build());
 	}
 
+	/**
+	 * 비동기 조회 결과를 기다린다. CompletionException은 벗겨서 ServiceException 등 원래 예외를 그대로 던진다.
+	 */
+	private <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+
+			throw new ServiceException(ServiceError.INTERNAL_SERVER_ERROR, e.getCause());
+		}
+	}
+
+	/**
+	 * 글에 엮인 사진 목록
+	 */
+	private List<ArticleGallery> getArticleGalleries(ObjectId articleId) {
+		List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(articleId, Constants.GALLERY_FROM_TYPE.ARTICLE, 100);
+
+		return galleries.stream()
+				.map(gallery -> ArticleGallery.builder()
+						.id(gallery.getId())
+						.name(StringUtils.isNoneBlank(gallery.getName()) ? gallery.getName() : gallery.getFileName())
+						.imageUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.LARGE, gallery.getId()))
+						.thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()))
+						.build())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 글쓴이의 최근 글 목록. 썸네일은 한번에 가져온다.
+	 *
+	 * @param articleId 제외할 글 ID
+	 * @param userId 글쓴이 ID
+	 */
+	private List<LatestArticle> getLatestArticlesByWriter(ObjectId articleId, String userId) {
+		List<ArticleOnList> latestPostsByWriter = articleRepository.findByIdAndUserId(articleId, userId, 3);
+
+		// 게시물의 썸네일 URL (사진이 연동된 게시물만)
+		List<ObjectId> linkedGalleryIds = latestPostsByWriter.stream()
+				.filter(post -> BooleanUtils.isTrue(post.getLinkedGallery()))
+				.map(post -> new ObjectId(post.getId()))
+				.collect(Collectors.toList());
+
+		Map<String, List<BoardGallerySimple>> thumbnails = this.getArticleThumbnails(linkedGalleryIds);
+
+		// 게시물 VO 변환 및 썸네일 URL 추가
+		return latestPostsByWriter.stream()
+				.map(post -> {
+					LatestArticle latestArticle = new LatestArticle();
+					BeanUtils.copyProperties(post, latestArticle);
+					latestArticle.setGalleries(thumbnails.get(post.getId()));
+
+					return latestArticle;
+				})
+				.collect(Collectors.toList());
+	}
+
 	/**
 	 * 읽음수 1 증가
 	 */
 	private void increaseViews(Article article) {
-		int views = article.getViews();
-		article.setViews(++views);
-		articleRepository.save(article);
+		articleViewsService.increaseViews(article.getId());
+
+		// DB 반영은 나중에 모아서 하고, 응답에는 이번 읽음을 포함한다.
+		article.setViews(article.getViews() + 1);
 	}
 
 	/**
@@ -832,76 +887,104 @@ public class ArticleService {
 	}
 
 	/**
-	 * 감정 표현 CRUD
-	 *
-	 * @param userId 회원 ID
-	 * @param username 회원 별명
-	 * @param feeling 입력받은 감정
-	 * @param usersFeeling 편집할 객체
+	 * 공지글 목록. 캐시에 있으면 DB를 읽지 않는다.
 	 */
-	private void setUsersFeeling(String userId, String username, Constants.FEELING_TYPE feeling, UsersFeeling usersFeeling) {
-
-		List<CommonFeelingUser> usersLiking = usersFeeling.getUsersLiking();
-		List<CommonFeelingUser> usersDisliking = usersFeeling.getUsersDisliking();
-
-		if (CollectionUtils.isEmpty(usersLiking)) usersLiking = new ArrayList<>();
-		if (CollectionUtils.isEmpty(usersDisliking)) usersDisliking = new ArrayList<>();
-
-		// 해당 회원이 좋아요를 이미 했는지 검사
-		Optional<CommonFeelingUser> alreadyLike = usersLiking.stream()
-				.filter(commonFeelingUser -> commonFeelingUser.getUserId().equals(userId))
-				.findFirst();
-
-		// 해당 회원이 싫어요를 이미 했는지 검사
-		Optional<CommonFeelingUser> alreadyDislike = usersDisliking.stream()
-				.filter(commonFeelingUser -> commonFeelingUser.getUserId().equals(userId))
-				.findFirst();
-
-		CommonFeelingUser feelingUser = new CommonFeelingUser(new ObjectId().toString(), userId, username);
-
-		switch (feeling) {
-			case LIKE:
-				// 이미 좋아요를 했을 때, 좋아요를 취소
-				if (alreadyLike.isPresent()) {
-					usersLiking.remove(alreadyLike.get());
-				}
-				// 이미 싫어요를 했을 때, 싫어요를 없애고 좋아요로 바꿈
-				else if (alreadyDislike.isPresent()) {
-					usersDisliking.remove(alreadyDislike.get());
-					usersLiking.add(feelingUser);
-
-					usersFeeling.setUsersDisliking(usersDisliking);
-				}
-				// 아직 감정 표현을 하지 않아 좋아요로 등록
-				else {
-					usersLiking.add(feelingUser);
-				}
-
-				usersFeeling.setUsersLiking(usersLiking);
-
-				break;
-
-			case DISLIKE:
-				// 이미 싫어요를 했을 때, 싫어요를 취소
-				if (alreadyDislike.isPresent()) {
-					usersDisliking.remove(alreadyDislike.get());
-				}
-				// 이미 좋아요를 했을 때, 좋아요를 없애고 싫어요로 바꿈
-				else if (alreadyLike.isPresent()) {
-					usersLiking.remove(alreadyLike.get());
-					usersDisliking.add(feelingUser);
-
-					usersFeeling.setUsersLiking(usersLiking);
-				}
-				// 아직 감정 표현을 하지 않아 싫어요로 등록
-				else {
-					usersDisliking.add(feelingUser);
-				}
-
-				usersFeeling.setUsersDisliking(usersDisliking);
-
-				break;
+	private List<GetArticle> getNotices() {
+		NoticesCache cache = noticesCache;
+
+		if (Objects.nonNull(cache) && System.currentTimeMillis() - cache.cachedAt < NOTICES_CACHE_TTL_MILLIS)
+			return cache.notices;
+
+		List<ArticleOnList> notices = articleRepository.findNotices(new Sort(Sort.Direction.DESC, "_id"));
+		List<GetArticle> getNotices = Collections.unmodifiableList(this.convertToGetArticles(notices));
+
+		// 읽는 도중 캐시가 비워졌으면 옛 목록을 캐시에 넣지 않는다.
+		synchronized (this) {
+			if (noticesCache == cache)
+				noticesCache = new NoticesCache(getNotices, System.currentTimeMillis());
 		}
+
+		return getNotices;
+	}
+
+	/**
+	 * 공지글 목록 캐시를 비운다.
+	 */
+	private synchronized void evictNotices() {
+		noticesCache = null;
+	}
+
+	private Boolean isNotice(Article article) {
+		return Objects.nonNull(article.getStatus()) && BooleanUtils.isTrue(article.getStatus().getNotice());
+	}
+
+	/**
+	 * 글 목록을 GetArticle로 바꾼다. 썸네일은 한번에 가져온다.
+	 */
+	private List<GetArticle> convertToGetArticles(List<ArticleOnList> articles) {
+
+		// 게시물의 썸네일 URL (사진이 연동된 게시물만)
+		List<ObjectId> linkedGalleryIds = articles.stream()
+				.filter(article -> BooleanUtils.isTrue(article.getLinkedGallery()))
+				.map(article -> new ObjectId(article.getId()))
+				.distinct()
+				.collect(Collectors.toList());
+
+		Map<String, List<BoardGallerySimple>> thumbnails = this.getArticleThumbnails(linkedGalleryIds);
+
+		// 게시물 VO 변환 및 썸네일 URL 추가. 댓글수, 감정 표현수는 게시물에 저장된 값을 그대로 쓴다.
+		return articles.stream()
+				.map(article -> {
+					GetArticle getArticle = new GetArticle();
+					BeanUtils.copyProperties(article, getArticle);
+					getArticle.setGalleries(thumbnails.get(article.getId()));
+
+					return getArticle;
+				})
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 게시판의 말머리 맵
+	 */
+	private Map<String, String> getCategoriesMap(Constants.BOARD_TYPE board) {
+		List<BoardCategory> categories = BoardCategoryGenerator.getCategories(board, JakdukUtils.getLocale());
+		Map<String, String> categoriesMap = null;
+
+		if (! CollectionUtils.isEmpty(categories)) {
+			categoriesMap = categories.stream()
+					.collect(Collectors.toMap(BoardCategory::getCode, boardCategory -> boardCategory.getNames().get(0).getName()));
+
+			categoriesMap.put("ALL", JakdukUtils.getMessageSource("board.category.all"));
+		}
+
+		return categoriesMap;
+	}
+
+	/**
+	 * 다음 목록을 가져올 때 before로 쓸 마지막 글 ID
+	 */
+	private String getLastArticleId(List<ArticleOnList> articles) {
+		return CollectionUtils.isEmpty(articles) ? null : articles.get(articles.size() - 1).getId();
+	}
+
+	/**
+	 * 글 ID 배열에 해당하는 글별 썸네일을 한번에 가져온다.
+	 *
+	 * @param articleIds 글 ID 배열
+	 * @return 글 ID 별 썸네일 목록
+	 */
+	private Map<String, List<BoardGallerySimple>> getArticleThumbnails(List<ObjectId> articleIds) {
+
+		if (CollectionUtils.isEmpty(articleIds))
+			return Collections.emptyMap();
+
+		return galleryRepository.findFirstByItemIdsAndFromType(articleIds, Constants.GALLERY_FROM_TYPE.ARTICLE).stream()
+				.collect(Collectors.toMap(LinkedGallery::getId,
+						linkedGallery -> Collections.singletonList(BoardGallerySimple.builder()
+								.id(linkedGallery.getGalleryId())
+								.thumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, linkedGallery.getGalleryId()))
+								.build())));
 	}
 
 	/**
@@ -926,6 +1009,19 @@ public class ArticleService {
 		return null;
 	}
 
+	/**
+	 * 댓글 문서에 넣을 부모 글 요약
+	 */
+	private EsParentArticle toEsParentArticle(Article article) {
+		return EsParentArticle.builder()
+				.id(article.getId())
+				.seq(article.getSeq())
+				.board(article.getBoard())
+				.category(article.getCategory())
+				.subject(JakdukUtils.stripHtmlTag(article.getSubject()))
+				.build();
+	}
+
 	/**
 	 * List<ArticleComment> 를 List<GetArticleComment> 로 변환한다.
 	 *
@@ -0,0 +1,122 @@
+package com.jakduk.api.service;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.BoardCategoryCount;
+import com.jakduk.api.repository.article.ArticleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 게시판, 말머리별 전체 글 수를 메모리에 들고 있는다.
+ * 시작할 때 DB에서 읽어 오고, 글쓰기/지우기/말머리 변경 때 증감하고, 주기적으로 DB와 맞춘다.
+ */
+
+@Slf4j
+@Service
+public class ArticleTotalsService {
+
+    private static final String CATEGORY_ALL = "ALL";
+
+    @Autowired private ArticleRepository articleRepository;
+
+    // "게시판:말머리" 별 글 수. 말머리 전체는 "게시판:ALL"
+    private final ConcurrentHashMap<String, AtomicLong> totals = new ConcurrentHashMap<>();
+
+    private volatile Boolean loaded = false;
+
+    /**
+     * 게시판 글 수
+     *
+     * @param category 말머리. null이거나 ALL이면 게시판 전체
+     */
+    public Long getTotal(Constants.BOARD_TYPE board, String category) {
+        if (! loaded)
+            this.reloadTotals();
+
+        AtomicLong total = totals.get(this.getKey(board.name(), category));
+
+        return Objects.isNull(total) ? 0L : total.get();
+    }
+
+    /**
+     * 글 수 증감. 말머리가 있으면 게시판 전체와 말머리 둘 다 증감한다.
+     */
+    public void increaseTotal(String board, String category, Long amount) {
+        this.add(this.getKey(board, null), amount);
+
+        if (Objects.nonNull(category))
+            this.add(this.getKey(board, category), amount);
+    }
+
+    /**
+     * 말머리가 바뀌었을 때 옮긴다.
+     */
+    public void moveTotal(String board, String fromCategory, String toCategory) {
+        if (Objects.equals(fromCategory, toCategory))
+            return;
+
+        if (Objects.nonNull(fromCategory))
+            this.add(this.getKey(board, fromCategory), -1L);
+
+        if (Objects.nonNull(toCategory))
+            this.add(this.getKey(board, toCategory), 1L);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        this.reloadTotals();
+    }
+
+    /**
+     * DB에서 다시 세어 맞춘다. 세는 동안 들어온 증감을 덮어쓰지 않도록, 세기 전의 수와 센 수의 차이만 더한다.
+     */
+    @Scheduled(fixedDelayString = "#{${jakduk.board.totals-reconcile-interval-seconds:600} * 1000}",
+            initialDelayString = "#{${jakduk.board.totals-reconcile-interval-seconds:600} * 1000}")
+    public synchronized void reloadTotals() {
+        Map<String, Long> before = new HashMap<>();
+        totals.forEach((key, total) -> before.put(key, total.get()));
+
+        List<BoardCategoryCount> counts = articleRepository.findBoardCategoryCounts();
+        Map<String, Long> newTotals = new HashMap<>();
+
+        counts.forEach(count -> {
+            newTotals.merge(this.getKey(count.getBoard(), null), count.getCount(), Long::sum);
+
+            if (Objects.nonNull(count.getCategory()))
+                newTotals.merge(this.getKey(count.getBoard(), count.getCategory()), count.getCount(), Long::sum);
+        });
+
+        // 지금은 글이 없는 말머리는 0으로
+        before.keySet().forEach(key -> newTotals.putIfAbsent(key, 0L));
+
+        newTotals.forEach((key, total) -> {
+            Long drift = before.getOrDefault(key, 0L) - total;
+            this.add(key, -drift);
+
+            if (loaded && drift != 0)
+                log.info("article total was reconciled. key={}, drift={}", key, drift);
+        });
+
+        loaded = true;
+    }
+
+    private void add(String key, Long amount) {
+        totals.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(amount);
+    }
+
+    private String getKey(String board, String category) {
+        return board + ":" + (Objects.isNull(category) ? CATEGORY_ALL : category);
+    }
+
+}
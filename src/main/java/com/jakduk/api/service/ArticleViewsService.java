@@ -0,0 +1,84 @@
+package com.jakduk.api.service;
+
+import com.jakduk.api.repository.article.ArticleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 게시물 읽음수 증가를 메모리에 모아 두었다가 주기적으로 DB에 반영한다.
+ * 글 상세 조회에서는 게시물 document를 쓰지 않는다.
+ */
+
+@Slf4j
+@Service
+public class ArticleViewsService {
+
+    @Autowired private ArticleRepository articleRepository;
+
+    // 게시물 ID별 아직 반영하지 않은 읽음수. ConcurrentHashMap의 bin 단위 잠금으로 게시물끼리 경합하지 않는다.
+    private final ConcurrentHashMap<String, Integer> pendingViews = new ConcurrentHashMap<>();
+
+    /**
+     * 읽음수 1 증가
+     *
+     * @param articleId 게시물 ID
+     */
+    public void increaseViews(String articleId) {
+        pendingViews.merge(articleId, 1, Integer::sum);
+    }
+
+    /**
+     * 모아 둔 읽음수를 DB에 반영한다.
+     */
+    @Scheduled(fixedDelayString = "#{${jakduk.board.views-flush-interval-seconds:10} * 1000}")
+    public synchronized void flushViews() {
+        // bulk 오류의 index로 게시물을 찾으므로 넣은 순서를 지킨다.
+        Map<String, Integer> views = new LinkedHashMap<>();
+
+        // remove는 merge와 원자적이라 flush 도중 들어온 증가분은 다음 주기로 넘어간다.
+        for (String articleId : pendingViews.keySet()) {
+            Integer amount = pendingViews.remove(articleId);
+
+            if (amount != null)
+                views.put(articleId, amount);
+        }
+
+        if (views.isEmpty())
+            return;
+
+        try {
+            articleRepository.increaseViews(views);
+        } catch (BulkOperationException e) {
+            // UNORDERED라 나머지는 반영되었다. 실패한 게시물만 다음 주기에 다시 시도
+            List<String> articleIds = new ArrayList<>(views.keySet());
+
+            log.warn("failed to flush views of {} of {} articles", e.getErrors().size(), views.size(), e);
+
+            e.getErrors().forEach(error -> {
+                String articleId = articleIds.get(error.getIndex());
+                pendingViews.merge(articleId, views.get(articleId), Integer::sum);
+            });
+        } catch (Exception e) {
+            log.warn("failed to flush views of {} articles", views.size(), e);
+
+            // 어디까지 반영되었는지 모르므로 모두 다음 주기에 다시 시도
+            views.forEach((articleId, amount) -> pendingViews.merge(articleId, amount, Integer::sum));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.flushViews();
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.jakduk.api.service;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.event.ContentChangedEvent;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.FileUtils;
 import com.jakduk.api.configuration.JakdukProperties;
@@ -10,6 +11,7 @@ import com.jakduk.api.repository.gallery.GalleryRepository;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -27,6 +29,7 @@ public class CommonGalleryService {
     @Resource private JakdukProperties.Storage storageProperties;
     @Autowired private GalleryRepository galleryRepository;
     @Autowired private RabbitMQPublisher rabbitMQPublisher;
+    @Autowired private ApplicationEventPublisher applicationEventPublisher;
 
     /**
      * Gallery와 사진 파일 지움
@@ -70,6 +73,8 @@ public class CommonGalleryService {
                 rabbitMQPublisher.deleteDocumentGallery(gallery.getId());
             }
         });
+
+        applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.GALLERY));
     }
 
 }
@@ -1,6 +1,7 @@
 package com.jakduk.api.service;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.event.ContentChangedEvent;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.UrlGenerationUtils;
 import com.jakduk.api.configuration.JakdukProperties;
@@ -27,6 +28,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.DigestUtils;
@@ -68,6 +70,7 @@ public class GalleryService {
 	@Autowired private ArticleRepository articleRepository;
 	@Autowired private CommonGalleryService commonGalleryService;
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
+	@Autowired private ApplicationEventPublisher applicationEventPublisher;
 
 	public Gallery findOneById(String id) {
 		return galleryRepository.findOneById(id).orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_GALLERY));
@@ -459,6 +462,8 @@ public class GalleryService {
 				}
 			});
 		}
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.GALLERY));
 	}
 
 }
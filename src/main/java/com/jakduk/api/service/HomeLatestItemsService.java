@@ -0,0 +1,231 @@
+package com.jakduk.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.event.ContentChangedEvent;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.HomeDescription;
+import com.jakduk.api.model.simple.UserSimple;
+import com.jakduk.api.restcontroller.vo.home.HomeArticle;
+import com.jakduk.api.restcontroller.vo.home.HomeArticleComment;
+import com.jakduk.api.restcontroller.vo.home.HomeGallery;
+import com.jakduk.api.restcontroller.vo.home.HomeLatestItemsResponse;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 홈에서 보여줄 최근 데이터를 언어별로 미리 만들어 JSON 바이트로 들고 있는다.
+ *
+ * 글, 댓글, 사진, 회원, 알림판이 바뀌면 바로 다시 만들지 않고, 변경이 debounce 시간 동안 없을 때 다시 만든다.
+ * 변경이 계속 들어와도 max staleness 를 넘기지 않고, 변경이 없어도 max staleness 마다 다시 만든다.
+ * (감정 표현, 읽음수 처럼 이벤트를 발행하지 않는 변경도 반영하기 위해)
+ */
+
+@Slf4j
+@Service
+public class HomeLatestItemsService {
+
+    @Resource private JakdukProperties.Home homeProperties;
+
+    @Autowired private HomeService homeService;
+    @Autowired private UserService userService;
+    @Autowired private ArticleService articleService;
+    @Autowired private GalleryService galleryService;
+
+    @Resource private ThreadPoolTaskExecutor homeExecutor;
+
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SectionStat> sectionStats = new ConcurrentHashMap<>();
+
+    private volatile Boolean dirty = false;
+    private volatile Long firstChangedAt = 0L;
+    private volatile Long lastChangedAt = 0L;
+
+    /**
+     * 미리 만들어 둔 홈 최근 데이터 JSON. 아직 없으면 만든다.
+     *
+     * @param language 언어 코드
+     */
+    public byte[] getLatestItems(String language) {
+        return snapshots.computeIfAbsent(language, this::buildSnapshot).json;
+    }
+
+    @EventListener
+    public void onContentChanged(ContentChangedEvent event) {
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            if (! dirty) {
+                firstChangedAt = now;
+                dirty = true;
+            }
+
+            lastChangedAt = now;
+        }
+    }
+
+    /**
+     * 다시 만들 때가 된 스냅샷을 다시 만든다. 요청 스레드와 상관없이 스케줄러 스레드에서 돈다.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refreshSnapshots() {
+        long now = System.currentTimeMillis();
+        long debounceMillis = homeProperties.getLatestItemsDebounceSeconds() * 1000L;
+        long maxStalenessMillis = homeProperties.getLatestItemsMaxStalenessSeconds() * 1000L;
+        Boolean rebuildAll = false;
+
+        synchronized (this) {
+            if (dirty && (now - lastChangedAt >= debounceMillis || now - firstChangedAt >= maxStalenessMillis)) {
+                dirty = false;
+                rebuildAll = true;
+            }
+        }
+
+        for (String language : snapshots.keySet()) {
+            Snapshot snapshot = snapshots.get(language);
+
+            if (rebuildAll || snapshot.partial || now - snapshot.builtAt >= maxStalenessMillis) {
+                try {
+                    snapshots.put(language, this.buildSnapshot(language));
+                } catch (Exception e) {
+                    // 옛 스냅샷을 그대로 두고 다음 주기에 다시 시도
+                    log.warn("failed to rebuild home latest items. language={}", language, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 영역별 호출 통계. 영역 이름, 통계 이름(calls, timeouts, failures, totalMillis)
+     */
+    public Map<String, Map<String, Long>> getSectionStats() {
+        Map<String, Map<String, Long>> stats = new TreeMap<>();
+        sectionStats.forEach((section, sectionStat) -> stats.put(section, sectionStat.toMap()));
+
+        return stats;
+    }
+
+    /**
+     * 서로 의존하지 않는 영역들을 동시에 가져온다.
+     * 영역마다 제한 시간이 있고, 제한 시간을 넘기거나 실패한 영역은 빼고 만든다. 이런 스냅샷은 다음 주기에 다시 만든다.
+     */
+    private Snapshot buildSnapshot(String language) {
+        Locale locale = new Locale(language);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(homeProperties.getLatestItemsSectionTimeoutMillis());
+
+        Future<HomeDescription> homeDescription = this.fetchSection("homeDescription", locale, homeService::getHomeDescription);
+        Future<List<UserSimple>> users = this.fetchSection("users", locale, userService::findSimpleUsers);
+        Future<List<HomeArticleComment>> comments = this.fetchSection("comments", locale, articleService::getLatestComments);
+        Future<List<HomeArticle>> articles = this.fetchSection("articles", locale, articleService::getLatestArticles);
+        Future<List<HomeGallery>> galleries = this.fetchSection("galleries", locale,
+                () -> galleryService.findSimpleById(null, Constants.HOME_SIZE_GALLERY));
+
+        List<Boolean> completed = new ArrayList<>();
+
+        HomeLatestItemsResponse response = HomeLatestItemsResponse.builder()
+                .homeDescription(this.joinSection("homeDescription", homeDescription, deadline, completed))
+                .users(this.joinSection("users", users, deadline, completed))
+                .comments(this.joinSection("comments", comments, deadline, completed))
+                .articles(this.joinSection("articles", articles, deadline, completed))
+                .galleries(this.joinSection("galleries", galleries, deadline, completed))
+                .build();
+
+        try {
+            return new Snapshot(ObjectMapperUtils.getObjectMapper().writeValueAsBytes(response), System.currentTimeMillis(),
+                    completed.contains(false));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 영역을 homeExecutor 에서 가져온다. 제한 시간을 넘기면 cancel(true) 로 작업 스레드를 인터럽트한다.
+     * 다만 Mongo 드라이버는 인터럽트에 바로 멈추지 않을 수 있어서, 조회가 끝날 때까지 작업 스레드가 묶일 수 있다.
+     *
+     * 큐가 차면 CallerRunsPolicy 로 부른 스레드에서 돌므로, 원래 LocaleContext 를 되돌려 놓는다.
+     */
+    private <T> Future<T> fetchSection(String section, Locale locale, Supplier<T> supplier) {
+        SectionStat sectionStat = sectionStats.computeIfAbsent(section, key -> new SectionStat());
+
+        return homeExecutor.submit(() -> {
+            long start = System.nanoTime();
+            LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+            LocaleContextHolder.setLocale(locale);
+
+            try {
+                return supplier.get();
+            } finally {
+                LocaleContextHolder.setLocaleContext(previousLocaleContext);
+                sectionStat.calls.increment();
+                sectionStat.totalMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    private <T> T joinSection(String section, Future<T> future, Long deadline, List<Boolean> completed) {
+        SectionStat sectionStat = sectionStats.get(section);
+
+        try {
+            T result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            completed.add(true);
+
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            sectionStat.timeouts.increment();
+            log.warn("home latest items section timed out. section={}", section);
+        } catch (ExecutionException e) {
+            sectionStat.failures.increment();
+            log.warn("home latest items section failed. section={}", section, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        completed.add(false);
+
+        return null;
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        private final byte[] json;
+        private final Long builtAt;
+        private final Boolean partial; // 빠진 영역이 있음
+    }
+
+    private static class SectionStat {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            map.put("calls", calls.sum());
+            map.put("timeouts", timeouts.sum());
+            map.put("failures", failures.sum());
+            map.put("totalMillis", totalMillis.sum());
+
+            return map;
+        }
+    }
+
+}
@@ -4,13 +4,13 @@ package com.jakduk.api.service;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.common.util.JakdukUtils;
 import com.jakduk.api.dao.JakdukDAO;
+import com.jakduk.api.dao.UsersFeelingDAO;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
 import com.jakduk.api.model.db.Jakdu;
 import com.jakduk.api.model.db.JakduComment;
 import com.jakduk.api.model.db.JakduSchedule;
 import com.jakduk.api.model.elasticsearch.EsJakduComment;
-import com.jakduk.api.model.embedded.CommonFeelingUser;
 import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.model.simple.JakduOnSchedule;
 import com.jakduk.api.repository.jakdu.JakduCommentRepository;
@@ -26,7 +26,6 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -44,6 +43,7 @@ public class JakduService {
     @Autowired private JakduScheduleRepository jakduScheduleRepository;
     @Autowired private JakduCommentRepository jakduCommentRepository;
     @Autowired private JakdukDAO jakdukDAO;
+    @Autowired private UsersFeelingDAO usersFeelingDAO;
     @Autowired private SearchService searchService;
 
     public JakduSchedule findScheduleById(String id) {
@@ -155,45 +155,16 @@ public class JakduService {
         JakduComment jakduComment = jakduCommentRepository.findById(commentId).orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_COMMENT));
         CommonWriter jakdukWriter = jakduComment.getWriter();
 
-        List<CommonFeelingUser> usersLiking = jakduComment.getUsersLiking();
-        List<CommonFeelingUser> usersDisliking = jakduComment.getUsersDisliking();
-
-        if (Objects.isNull(usersLiking)) usersLiking = new ArrayList<>();
-        if (Objects.isNull(usersDisliking)) usersDisliking = new ArrayList<>();
-
         // 이 게시물의 작성자라서 감정 표현을 할 수 없음
         if (userId.equals(jakdukWriter.getUserId()))
             throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
 
-        // 해당 회원이 좋아요를 이미 했는지 검사
-        for (CommonFeelingUser feelingUser : usersLiking) {
-            if (Objects.nonNull(feelingUser) && userId.equals(feelingUser.getUserId()))
-                throw new ServiceException(ServiceError.FEELING_SELECT_ALREADY_LIKE);
-        }
+        // 아직 감정 표현을 하지 않은 회원만 추가된다.
+        JakduComment feelingComment = usersFeelingDAO.addUsersFeeling(JakduComment.class, commentId, userId, username, feeling);
 
-        // 해당 회원이 싫어요를 이미 했는지 검사
-        for (CommonFeelingUser feelingUser : usersDisliking) {
-            if (Objects.nonNull(feelingUser) && userId.equals(feelingUser.getUserId()))
-                throw new ServiceException(ServiceError.FEELING_SELECT_ALREADY_LIKE);
-        }
+        if (Objects.isNull(feelingComment))
+            throw new ServiceException(ServiceError.FEELING_SELECT_ALREADY_LIKE);
 
-        CommonFeelingUser feelingUser = new CommonFeelingUser(new ObjectId().toString(), userId, username);
-
-        switch (feeling) {
-            case LIKE:
-                usersLiking.add(feelingUser);
-                jakduComment.setUsersLiking(usersLiking);
-                break;
-            case DISLIKE:
-                usersDisliking.add(feelingUser);
-                jakduComment.setUsersDisliking(usersDisliking);
-                break;
-            default:
-                break;
-        }
-
-        jakduCommentRepository.save(jakduComment);
-
-        return jakduComment;
+        return feelingComment;
     }
 }
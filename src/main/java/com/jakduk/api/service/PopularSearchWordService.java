@@ -0,0 +1,163 @@
+package com.jakduk.api.service;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.SpaceSaving;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.elasticsearch.EsSearchWord;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.jakduk.api.restcontroller.vo.search.PopularSearchWordResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 인기 검색어를 메모리에서 센다.
+ *
+ * 날짜별로 Space-Saving 카운터를 두고, 최근 3주 카운터를 합친 순위를 주기적으로 만들어 둔다.
+ * 엘라스틱서치에는 검색 한번마다 문서를 넣지 않고, 주기적으로 (검색어, 수, 시각) 문서로 모아서 넣는다.
+ * 시작할 때 엘라스틱서치에 쌓인 문서로 카운터를 채운다.
+ */
+
+@Slf4j
+@Service
+public class PopularSearchWordService {
+
+    // 날짜별로 세는 검색어 수
+    private static final Integer CAPACITY = 1000;
+
+    // 미리 만들어 두는 순위 길이
+    private static final Integer TOP_SIZE = 100;
+
+    // 모아서 넣기 전까지 들고 있는 검색어 수. 넘치면 버린다.
+    private static final Integer MAX_PENDING_WORDS = 10000;
+
+    private static final Integer MAX_WORD_LENGTH = 50;
+
+    private static final Integer WINDOW_WEEKS = 3;
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+    @Autowired private SearchService searchService;
+    @Autowired private SearchIndexingService searchIndexingService;
+
+    private final ConcurrentHashMap<LocalDate, SpaceSaving> buckets = new ConcurrentHashMap<>();
+    private final AtomicReference<ConcurrentHashMap<String, Long>> pendings = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final LongAdder droppedWords = new LongAdder();
+
+    private volatile List<EsTermsBucket> topWords = Collections.emptyList();
+
+    /**
+     * 검색어 하나를 센다.
+     */
+    public void record(String query) {
+        String word = StringUtils.normalizeSpace(StringUtils.lowerCase(query));
+
+        if (StringUtils.isBlank(word) || word.length() > MAX_WORD_LENGTH)
+            return;
+
+        buckets.computeIfAbsent(LocalDate.now(), date -> new SpaceSaving(CAPACITY)).offer(word, 1L);
+
+        ConcurrentHashMap<String, Long> current = pendings.get();
+
+        if (current.size() < MAX_PENDING_WORDS || current.containsKey(word)) {
+            current.merge(word, 1L, Long::sum);
+        } else {
+            droppedWords.increment();
+        }
+    }
+
+    /**
+     * 인기 검색어. 미리 만들어 둔 순위에서 자른다.
+     */
+    public PopularSearchWordResult getPopularWords(Integer size) {
+        List<EsTermsBucket> words = topWords;
+
+        return PopularSearchWordResult.builder()
+                .took(0L)
+                .popularSearchWords(words.subList(0, Math.min(Math.max(size, 0), words.size())))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        LocalDate from = LocalDate.now().minusWeeks(WINDOW_WEEKS);
+
+        try {
+            searchService.aggregateDailySearchWords(from, CAPACITY).forEach((date, words) -> {
+                SpaceSaving bucket = buckets.computeIfAbsent(date, key -> new SpaceSaving(CAPACITY));
+                words.forEach(word -> bucket.offer(word.getKey(), word.getCount()));
+            });
+        } catch (Exception e) {
+            log.warn("failed to load popular search words from elasticsearch.", e);
+        }
+
+        this.refreshTopWords();
+    }
+
+    /**
+     * 지난 날짜 카운터를 지우고 순위를 다시 만든다.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void refreshTopWords() {
+        LocalDate from = LocalDate.now().minusWeeks(WINDOW_WEEKS);
+        buckets.keySet().removeIf(date -> date.isBefore(from));
+
+        Map<String, Long> merged = new HashMap<>();
+        buckets.values().forEach(bucket -> bucket.getCounts().forEach((word, count) -> merged.merge(word, count, Long::sum)));
+
+        topWords = merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_SIZE)
+                .map(entry -> new EsTermsBucket(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 지난번 이후 센 검색어를 (검색어, 수, 시각) 문서로 엘라스틱서치에 넣는다.
+     * 교체 직전에 들어온 몇 건은 옛 map 에 더해진 뒤 빠질 수 있다. 순위는 메모리 카운터로 만들므로 영향이 없다.
+     */
+    @Scheduled(fixedDelayString = "#{${jakduk.elasticsearch.search-word-rollup-interval-seconds:60} * 1000}")
+    public void rollupSearchWords() {
+        ConcurrentHashMap<String, Long> rollups = pendings.getAndSet(new ConcurrentHashMap<>());
+
+        if (rollups.isEmpty())
+            return;
+
+        LocalDateTime registerDate = LocalDateTime.now();
+
+        rollups.forEach((word, count) -> {
+            EsSearchWord esSearchWord = EsSearchWord.builder()
+                    .word(word)
+                    .count(count)
+                    .registerDate(registerDate)
+                    .build();
+
+            searchIndexingService.add(searchIndexingService.newIndexRequest(elasticsearchProperties.getIndexSearchWord(),
+                    Constants.ES_TYPE_SEARCH_WORD, null, null, esSearchWord));
+        });
+
+        Long dropped = droppedWords.sumThenReset();
+
+        log.debug("search words were rolled up. words={}, dropped={}", rollups.size(), dropped);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.rollupSearchWords();
+    }
+
+}
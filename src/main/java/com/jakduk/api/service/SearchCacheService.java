@@ -0,0 +1,233 @@
+package com.jakduk.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 통합 검색 결과를 잠깐 들고 있는다.
+ *
+ * 찾고 있는 중인 결과도 들고 있어서, 같은 검색이 동시에 여러번 들어와도 엘라스틱서치에는 한번만 묻는다.
+ * 색인마다 세대 번호가 있고, 색인에 문서가 들어가거나 지워지면 올린다. 키에 세대 번호가 들어가므로 옛 결과는 다시 쓰이지 않는다.
+ * 쓰기는 색인이 refresh 되어야 검색에 보이므로, search-cache-refresh-delay-millis 가 지나면 세대 번호를 한번 더 올린다.
+ * 그 사이에 찾아서 들고 있던 쓰기 전 결과도 버려진다.
+ * 일부 범위가 빠진 결과(제한 시간 초과, 실패)는 들고 있지 않는다.
+ *
+ * 세대 번호는 서버마다 따로 있다. 다른 서버에서 받은 쓰기는 그 서버의 캐시만 비우므로,
+ * 여러 서버로 돌리면 다른 서버는 search-cache-ttl-seconds 동안 옛 결과를 보여줄 수 있다.
+ */
+
+@Slf4j
+@Service
+public class SearchCacheService {
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+    @Resource private ThreadPoolTaskScheduler searchTimer;
+
+    // 색인(별칭) 이름 -> 세대 번호
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    // 오래 안 쓴 순서. this 로 잠근다.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Long bytes = 0L;
+
+    // 색인 이름 -> 마지막으로 쓴 시각
+    private final ConcurrentHashMap<String, Long> lastWrittenAt = new ConcurrentHashMap<>();
+
+    // refresh 뒤에 세대 번호를 올리기로 예약해 둔 색인. 쓰기가 몰려도 색인마다 하나만 예약한다.
+    private final Set<String> delayedIncreases = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public Long getGeneration(String index) {
+        AtomicLong generation = generations.get(index);
+
+        return Objects.isNull(generation) ? 0L : generation.get();
+    }
+
+    /**
+     * 세대 번호를 바로 올리고, 마지막 쓰기가 refresh 된 뒤에 한번 더 올린다.
+     */
+    public void increaseGeneration(String index) {
+        this.increaseGenerationNow(index);
+        lastWrittenAt.put(index, System.currentTimeMillis());
+
+        if (delayedIncreases.add(index))
+            this.scheduleDelayedIncrease(index, elasticsearchProperties.getSearchCacheRefreshDelayMillis());
+    }
+
+    private void increaseGenerationNow(String index) {
+        generations.computeIfAbsent(index, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 예약한 사이에 또 쓰면 그 쓰기가 refresh 될 때까지 미룬다.
+     */
+    private void scheduleDelayedIncrease(String index, long delayMillis) {
+        searchTimer.schedule(() -> {
+            long refreshDelayMillis = elasticsearchProperties.getSearchCacheRefreshDelayMillis();
+            long remainingMillis = lastWrittenAt.get(index) + refreshDelayMillis - System.currentTimeMillis();
+
+            if (remainingMillis > 0) {
+                this.scheduleDelayedIncrease(index, remainingMillis);
+                return;
+            }
+
+            delayedIncreases.remove(index);
+            this.increaseGenerationNow(index);
+
+            // 지우는 사이에 들어온 쓰기는 예약하지 못했을 수 있다
+            if (System.currentTimeMillis() - lastWrittenAt.get(index) < refreshDelayMillis && delayedIncreases.add(index))
+                this.scheduleDelayedIncrease(index, refreshDelayMillis);
+
+        }, new Date(System.currentTimeMillis() + delayMillis));
+    }
+
+    /**
+     * 들고 있는 결과가 있으면 돌려주고, 없으면 loader 로 찾는다.
+     */
+    public CompletableFuture<SearchUnifiedResponse> get(String key, Supplier<CompletableFuture<SearchUnifiedResponse>> loader) {
+        long now = System.currentTimeMillis();
+        long ttlMillis = elasticsearchProperties.getSearchCacheTtlSeconds() * 1000L;
+        Entry entry;
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+
+            if (Objects.nonNull(cached) && now - cached.createdAt < ttlMillis) {
+                hits.increment();
+                return cached.future;
+            }
+
+            if (Objects.nonNull(cached))
+                this.remove(key, cached);
+
+            misses.increment();
+
+            entry = new Entry(now);
+            entries.put(key, entry);
+            this.evict();
+        }
+
+        CompletableFuture<SearchUnifiedResponse> loaded;
+
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            this.discard(key, entry);
+            entry.future.completeExceptionally(e);
+            return entry.future;
+        }
+
+        loaded.whenComplete((response, throwable) -> {
+            if (Objects.nonNull(throwable) || this.isPartial(response)) {
+                this.discard(key, entry);
+            } else {
+                this.weigh(key, entry, response);
+            }
+
+            if (Objects.nonNull(throwable)) {
+                entry.future.completeExceptionally(throwable);
+            } else {
+                entry.future.complete(response);
+            }
+        });
+
+        return entry.future;
+    }
+
+    /**
+     * 캐시 통계. hits, misses, hitRate, evictions, entries, bytes(JSON 크기로 어림), 색인별 세대 번호
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0D);
+        stats.put("evictions", evictions.sum());
+
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+
+        Map<String, Long> generationStats = new TreeMap<>();
+        generations.forEach((index, generation) -> generationStats.put(index, generation.get()));
+        stats.put("generations", generationStats);
+
+        return stats;
+    }
+
+    private Boolean isPartial(SearchUnifiedResponse response) {
+        return ! ObjectUtils.isEmpty(response.getTimedOutSections()) || ! ObjectUtils.isEmpty(response.getFailedSections());
+    }
+
+    private synchronized void discard(String key, Entry entry) {
+        if (entries.get(key) == entry)
+            this.remove(key, entry);
+    }
+
+    private void weigh(String key, Entry entry, SearchUnifiedResponse response) {
+        Long weight;
+
+        try {
+            weight = (long) ObjectMapperUtils.getObjectMapper().writeValueAsBytes(response).length;
+        } catch (JsonProcessingException e) {
+            weight = 0L;
+        }
+
+        synchronized (this) {
+            // 기다리는 동안 밀려났으면 셈하지 않는다
+            if (entries.get(key) == entry) {
+                entry.bytes = weight;
+                bytes += weight;
+            }
+        }
+    }
+
+    private void evict() {
+        Integer maxEntries = elasticsearchProperties.getSearchCacheMaxEntries();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            bytes -= eldest.bytes;
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        bytes -= entry.bytes;
+    }
+
+    private static class Entry {
+        private final CompletableFuture<SearchUnifiedResponse> future = new CompletableFuture<>();
+        private final Long createdAt;
+        private Long bytes = 0L;
+
+        private Entry(Long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.jakduk.api.service;
+
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.service.search.SearchWriteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 엘라스틱서치 색인, 삭제 요청을 BulkProcessor에 모아서 한번에 보낸다.
+ * jakduk.elasticsearch.bulk-* 설정으로 건수, 크기, 주기, 동시 요청 수를 정한다.
+ *
+ * 요청마다 CompletableFuture를 돌려주고, bulk 응답이 오면 해당 항목의 결과로 완료한다.
+ * bulk 요청 자체가 실패하면 그 안의 모든 항목을 예외로 완료한다.
+ */
+
+@Slf4j
+@Service
+public class SearchIndexingService {
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+    @Autowired private Client client;
+
+    // 요청 객체 -> 결과. 요청 객체는 equals를 구현하지 않으므로 identity로 찾는다.
+    private final Map<DocWriteRequest<?>, CompletableFuture<BulkItemResponse>> pendings =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // bulk 실행 ID -> 시작 시각
+    private final ConcurrentHashMap<Long, Long> startedAt = new ConcurrentHashMap<>();
+
+    private final LongAdder bulks = new LongAdder();
+    private final LongAdder bulkFailures = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder failedItems = new LongAdder();
+    private final LongAdder rejectedItems = new LongAdder();
+    private final LongAdder staleItems = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final LongAccumulator maxMillis = new LongAccumulator(Long::max, 0L);
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Long::max, 0L);
+
+    private BulkProcessor bulkProcessor;
+
+    @PostConstruct
+    public void init() {
+        bulkProcessor = BulkProcessor.builder(client, new IndexingListener())
+                .setBulkActions(elasticsearchProperties.getBulkActions())
+                .setBulkSize(new ByteSizeValue(elasticsearchProperties.getBulkSizeMb(), ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueSeconds(elasticsearchProperties.getBulkFlushIntervalSeconds()))
+                .setConcurrentRequests(elasticsearchProperties.getBulkConcurrentRequests())
+                // 다시 보낸 bulk의 항목 순번은 원래 요청과 맞지 않으므로, 거절된 항목도 실패로 돌려주고 호출한 쪽에서 다시 보낸다
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (! bulkProcessor.awaitClose(30, TimeUnit.SECONDS))
+            log.warn("bulk processor was closed before all requests were sent. pendings={}", pendings.size());
+    }
+
+    /**
+     * 색인 요청을 bulk에 넣는다.
+     *
+     * @return 항목의 bulk 결과. 실패한 항목도 정상 완료되므로 BulkItemResponse.isFailed()로 확인한다.
+     */
+    public CompletableFuture<BulkItemResponse> add(IndexRequest request) {
+        CompletableFuture<BulkItemResponse> future = this.register(request);
+
+        try {
+            bulkProcessor.add(request);
+        } catch (Exception e) {
+            this.fail(request, e);
+        }
+
+        return future;
+    }
+
+    /**
+     * 삭제 요청을 bulk에 넣는다.
+     *
+     * @return 항목의 bulk 결과. 실패한 항목도 정상 완료되므로 BulkItemResponse.isFailed()로 확인한다.
+     */
+    public CompletableFuture<BulkItemResponse> add(DeleteRequest request) {
+        CompletableFuture<BulkItemResponse> future = this.register(request);
+
+        try {
+            bulkProcessor.add(request);
+        } catch (Exception e) {
+            this.fail(request, e);
+        }
+
+        return future;
+    }
+
+    /**
+     * 문서를 JSON 으로 바꿔 색인 요청을 만든다.
+     *
+     * @param parent 부모 문서 ID. 없으면 null
+     */
+    public IndexRequest newIndexRequest(String index, String type, String id, String parent, Object document) {
+        try {
+            IndexRequest request = new IndexRequest(index, type, id)
+                    .source(ObjectMapperUtils.writeValueAsString(document), XContentType.JSON);
+
+            if (Objects.nonNull(parent))
+                request.parent(parent);
+
+            return request;
+
+        } catch (IOException e) {
+            throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
+        }
+    }
+
+    /**
+     * bulk 항목 결과를 검색 엔진 쓰기 결과로 바꾼다. 거절(429)된 항목은 다시 보낼 수 있다.
+     * external 버전이 같거나 낮아서 충돌(409)한 항목은 실패가 아니라 버린 옛 쓰기다.
+     */
+    public static SearchWriteResult toWriteResult(BulkItemResponse item) {
+        if (item.isFailed() && RestStatus.CONFLICT.equals(item.getFailure().getStatus())) {
+            return SearchWriteResult.builder()
+                    .id(item.getId())
+                    .failed(false)
+                    .retryable(false)
+                    .notFound(false)
+                    .stale(true)
+                    .message(item.getFailureMessage())
+                    .build();
+        }
+
+        if (item.isFailed()) {
+            return SearchWriteResult.builder()
+                    .id(item.getId())
+                    .failed(true)
+                    .retryable(RestStatus.TOO_MANY_REQUESTS.equals(item.getFailure().getStatus()))
+                    .notFound(false)
+                    .stale(false)
+                    .message(item.getFailureMessage())
+                    .build();
+        }
+
+        return SearchWriteResult.builder()
+                .id(item.getId())
+                .failed(false)
+                .retryable(false)
+                .notFound(DocWriteResponse.Result.NOT_FOUND.equals(item.getResponse().getResult()))
+                .stale(false)
+                .build();
+    }
+
+    /**
+     * 지금까지 모인 요청을 바로 보낸다.
+     */
+    public void flush() {
+        bulkProcessor.flush();
+    }
+
+    /**
+     * bulk 통계. 통계 이름(bulks, bulkFailures, items, failedItems, rejectedItems, staleItems, totalMillis, maxMillis, maxBatchSize, pendings)
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("bulks", bulks.sum());
+        stats.put("bulkFailures", bulkFailures.sum());
+        stats.put("items", items.sum());
+        stats.put("failedItems", failedItems.sum());
+        stats.put("rejectedItems", rejectedItems.sum());
+        stats.put("staleItems", staleItems.sum());
+        stats.put("totalMillis", totalMillis.sum());
+        stats.put("maxMillis", maxMillis.get());
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("pendings", (long) pendings.size());
+
+        return stats;
+    }
+
+    private CompletableFuture<BulkItemResponse> register(DocWriteRequest<?> request) {
+        CompletableFuture<BulkItemResponse> future = new CompletableFuture<>();
+        pendings.put(request, future);
+
+        return future;
+    }
+
+    private void fail(DocWriteRequest<?> request, Throwable failure) {
+        CompletableFuture<BulkItemResponse> future = pendings.remove(request);
+
+        if (Objects.nonNull(future))
+            future.completeExceptionally(failure);
+    }
+
+    private Long finish(Long executionId, BulkRequest request) {
+        Long start = startedAt.remove(executionId);
+        Long elapsed = Objects.isNull(start) ? 0L : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        bulks.increment();
+        items.add(request.numberOfActions());
+        totalMillis.add(elapsed);
+        maxMillis.accumulate(elapsed);
+        maxBatchSize.accumulate(request.numberOfActions());
+
+        return elapsed;
+    }
+
+    private class IndexingListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            startedAt.put(executionId, System.nanoTime());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            Long elapsed = finish(executionId, request);
+            List<DocWriteRequest> requests = request.requests();
+
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() && RestStatus.CONFLICT.equals(item.getFailure().getStatus())) {
+                    staleItems.increment();
+                } else if (item.isFailed()) {
+                    failedItems.increment();
+
+                    if (RestStatus.TOO_MANY_REQUESTS.equals(item.getFailure().getStatus()))
+                        rejectedItems.increment();
+
+                    log.warn("elasticsearch bulk item failed. index={}, type={}, id={}, message={}",
+                            item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+                }
+
+                CompletableFuture<BulkItemResponse> future = pendings.remove(requests.get(item.getItemId()));
+
+                if (Objects.nonNull(future))
+                    future.complete(item);
+            }
+
+            log.debug("elasticsearch bulk executed. executionId={}, actions={}, elapsed={}ms, took={}ms",
+                    executionId, request.numberOfActions(), elapsed, response.getTookInMillis());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            finish(executionId, request);
+            bulkFailures.increment();
+            failedItems.add(request.numberOfActions());
+
+            log.error("elasticsearch bulk failed. executionId={}, actions={}", executionId, request.numberOfActions(), failure);
+
+            request.requests().forEach(docWriteRequest -> fail(docWriteRequest, failure));
+        }
+    }
+
+}
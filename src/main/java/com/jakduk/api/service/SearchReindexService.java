@@ -0,0 +1,554 @@
+package com.jakduk.api.service;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.DocumentVersionUtils;
+import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.ArticleComment;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.db.SearchReindex;
+import com.jakduk.api.model.elasticsearch.EsArticle;
+import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsGallery;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
+import com.jakduk.api.model.embedded.ArticleItem;
+import com.jakduk.api.model.embedded.ReindexCheckpoint;
+import com.jakduk.api.repository.SearchReindexRepository;
+import com.jakduk.api.repository.article.ArticleCommentRepository;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.BooleanUtils;
+import org.bson.types.ObjectId;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.VersionType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 글, 댓글, 사진을 _id 순서로 읽어 새 색인에 다시 넣고, 다 넣으면 별칭을 새 색인으로 한번에 옮긴다.
+ *
+ * jakduk.elasticsearch.index-board, index-gallery 는 별칭 이름으로 쓴다.
+ * 새 색인은 지금 색인의 settings(analysis), mappings 를 그대로 가져다 "별칭_yyyyMMddHHmmss" 이름으로 만든다.
+ * 재색인 중에 들어오는 색인, 삭제 요청은 새 색인에도 보낸다. (ElasticsearchSearchEngine)
+ * 문서는 external 버전으로 넣으므로, 재색인 중에 더 새로 들어온 문서를 옛 내용으로 덮어쓰지 않는다.
+ *
+ * 페이지를 다 넣을 때마다 마지막 _id 를 저장하므로, 실패하거나 서버가 재시작되면 이어서 할 수 있다.
+ * 실패하거나 거절(429)된 문서는 몇번 다시 보내고, 그래도 실패하면 그 페이지 앞에서 멈춘다. 별칭은 옮기지 않는다.
+ */
+
+@Slf4j
+@Service
+public class SearchReindexService {
+
+    private static final Integer PAGE_SIZE = 1000;
+
+    // 응답을 기다리지 않고 보내 둘 수 있는 페이지 수. 동시 bulk 수는 bulk-concurrent-requests 로 제한된다.
+    private static final Integer MAX_IN_FLIGHT_PAGES = 4;
+
+    // 실패한 문서를 다시 보내는 횟수와 간격. 간격은 횟수만큼 늘어난다.
+    private static final Integer MAX_RETRIES = 3;
+    private static final Long RETRY_BACKOFF_MILLIS = 1000L;
+
+    private static final DateTimeFormatter INDEX_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+    @Resource private ThreadPoolTaskExecutor searchReindexExecutor;
+
+    @Autowired private Client client;
+    @Autowired private SearchIndexingService searchIndexingService;
+    @Autowired private SearchCacheService searchCacheService;
+    @Autowired private SearchReindexRepository searchReindexRepository;
+    @Autowired private ArticleRepository articleRepository;
+    @Autowired private ArticleCommentRepository articleCommentRepository;
+    @Autowired private GalleryRepository galleryRepository;
+
+    private volatile SearchReindex running; // 진행 중인 재색인
+
+    // 이번 실행에서 색인한 수와 시작 시각. 처리량 계산용
+    private final LongAdder runCount = new LongAdder();
+    private volatile Long runStartedAt = 0L;
+
+    /**
+     * 재색인을 시작한다.
+     *
+     * @param resume true 이면 마지막 재색인을 checkpoint 부터 이어서 한다.
+     */
+    public synchronized SearchReindex startReindex(Boolean resume) {
+
+        if (Objects.nonNull(running))
+            throw new ServiceException(ServiceError.ELASTICSEARCH_REINDEX_ALREADY_RUNNING);
+
+        SearchReindex searchReindex = resume
+                ? searchReindexRepository.findTopByOrderByIdDesc()
+                        .filter(reindex -> ! Constants.REINDEX_STATUS_TYPE.COMPLETED.equals(reindex.getStatus()))
+                        .orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND))
+                : this.newReindex();
+
+        // 실패한 페이지는 checkpoint 가 넘어가지 않았으므로 처음부터 다시 넣는다
+        searchReindex.getCheckpoints().stream()
+                .filter(checkpoint -> ! checkpoint.getDone())
+                .forEach(checkpoint -> checkpoint.setFailures(0L));
+
+        searchReindex.setStatus(Constants.REINDEX_STATUS_TYPE.RUNNING);
+        searchReindex.setMessage(null);
+        searchReindex.setFinishedAt(null);
+        searchReindexRepository.save(searchReindex);
+
+        running = searchReindex;
+        runCount.reset();
+        runStartedAt = System.nanoTime();
+
+        searchReindexExecutor.execute(() -> this.run(searchReindex));
+
+        return searchReindex;
+    }
+
+    /**
+     * 진행 중인(없으면 마지막) 재색인과 이번 실행의 초당 색인 수
+     */
+    public Map<String, Object> getProgress() {
+        SearchReindex searchReindex = running;
+        Map<String, Object> progress = new HashMap<>();
+
+        if (Objects.nonNull(searchReindex)) {
+            Long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStartedAt);
+
+            progress.put("docsPerSecond", elapsedMillis > 0 ? runCount.sum() * 1000 / elapsedMillis : 0L);
+            progress.put("elapsedSeconds", elapsedMillis / 1000);
+        } else {
+            searchReindex = searchReindexRepository.findTopByOrderByIdDesc().orElse(null);
+        }
+
+        progress.put("reindex", searchReindex);
+
+        return progress;
+    }
+
+    /**
+     * 재색인 중이면 별칭에 해당하는 새 색인 이름
+     */
+    public Optional<String> getReindexingIndex(String alias) {
+        SearchReindex searchReindex = running;
+
+        if (Objects.isNull(searchReindex))
+            return Optional.empty();
+
+        if (alias.equals(elasticsearchProperties.getIndexBoard()))
+            return Optional.of(searchReindex.getBoardIndex());
+
+        if (alias.equals(elasticsearchProperties.getIndexGallery()))
+            return Optional.of(searchReindex.getGalleryIndex());
+
+        return Optional.empty();
+    }
+
+    private SearchReindex newReindex() {
+        String suffix = LocalDateTime.now().format(INDEX_SUFFIX_FORMATTER);
+
+        List<ReindexCheckpoint> checkpoints = Stream.of(Constants.REINDEX_SOURCE_TYPE.values())
+                .map(source -> ReindexCheckpoint.builder()
+                        .source(source)
+                        .count(0L)
+                        .failures(0L)
+                        .done(false)
+                        .build())
+                .collect(Collectors.toList());
+
+        String boardIndex = this.createIndexLike(elasticsearchProperties.getIndexBoard(), suffix);
+        String galleryIndex;
+
+        try {
+            galleryIndex = this.createIndexLike(elasticsearchProperties.getIndexGallery(), suffix);
+        } catch (RuntimeException e) {
+            // 쓰지 않을 색인을 남기지 않는다
+            client.admin().indices().prepareDelete(boardIndex).get();
+            throw e;
+        }
+
+        return SearchReindex.builder()
+                .boardIndex(boardIndex)
+                .galleryIndex(galleryIndex)
+                .checkpoints(checkpoints)
+                .startedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private void run(SearchReindex searchReindex) {
+        try {
+            for (ReindexCheckpoint checkpoint : searchReindex.getCheckpoints()) {
+                if (checkpoint.getDone())
+                    continue;
+
+                switch (checkpoint.getSource()) {
+                    case ARTICLE:
+                        this.reindex(searchReindex, checkpoint, articleRepository::findPostsGreaterThanId, Article::getId,
+                                articles -> this.toArticleRequests(searchReindex.getBoardIndex(), articles));
+                        break;
+                    case ARTICLE_COMMENT:
+                        this.reindex(searchReindex, checkpoint, articleCommentRepository::findCommentsGreaterThanId, ArticleComment::getId,
+                                comments -> this.toCommentRequests(searchReindex.getBoardIndex(), comments));
+                        break;
+                    case GALLERY:
+                        this.reindex(searchReindex, checkpoint, galleryRepository::findGalleriesGreaterThanId, Gallery::getId,
+                                galleries -> this.toGalleryRequests(searchReindex.getGalleryIndex(), galleries));
+                        break;
+                }
+            }
+
+            Long failures = searchReindex.getCheckpoints().stream().mapToLong(ReindexCheckpoint::getFailures).sum();
+
+            if (failures > 0)
+                throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, failures + " documents were not indexed");
+
+            this.swapAliases(searchReindex);
+
+            searchReindex.setStatus(Constants.REINDEX_STATUS_TYPE.COMPLETED);
+
+            log.info("reindex completed. boardIndex={}, galleryIndex={}", searchReindex.getBoardIndex(), searchReindex.getGalleryIndex());
+
+        } catch (Exception e) {
+            searchReindex.setStatus(Constants.REINDEX_STATUS_TYPE.FAILED);
+            searchReindex.setMessage(e.getMessage());
+
+            log.error("reindex failed. it can be resumed from the last checkpoint. id={}", searchReindex.getId(), e);
+
+        } finally {
+            searchReindex.setFinishedAt(LocalDateTime.now());
+            searchReindexRepository.save(searchReindex);
+            running = null;
+        }
+    }
+
+    /**
+     * checkpoint 다음 _id 부터 끝까지 페이지 단위로 읽어 bulk 로 보낸다.
+     * 페이지는 보낸 순서대로 끝나기를 기다리고, 끝난 페이지의 마지막 _id 를 checkpoint 로 저장한다.
+     */
+    private <T> void reindex(SearchReindex searchReindex, ReindexCheckpoint checkpoint, BiFunction<ObjectId, Integer, List<T>> finder,
+                             Function<T, String> idGetter, Function<List<T>, List<IndexRequest>> converter) {
+
+        ObjectId lastId = Objects.isNull(checkpoint.getLastId()) ? null : new ObjectId(checkpoint.getLastId());
+        Deque<Page> pages = new ArrayDeque<>();
+
+        while (true) {
+            // 읽기 전에 버전을 정한다. 읽은 뒤에 고친 문서는 더 큰 버전으로 들어오므로 재색인이 덮어쓰지 않는다.
+            Long version = DocumentVersionUtils.next();
+            List<T> rows = finder.apply(lastId, PAGE_SIZE);
+
+            if (rows.isEmpty())
+                break;
+
+            lastId = new ObjectId(idGetter.apply(rows.get(rows.size() - 1)));
+
+            List<IndexRequest> requests = converter.apply(rows).stream()
+                    .map(request -> request.version(version).versionType(VersionType.EXTERNAL))
+                    .collect(Collectors.toList());
+
+            pages.add(new Page(lastId.toString(), requests, this.send(requests)));
+
+            if (pages.size() >= MAX_IN_FLIGHT_PAGES)
+                this.completePage(searchReindex, checkpoint, pages.poll());
+        }
+
+        while (! pages.isEmpty())
+            this.completePage(searchReindex, checkpoint, pages.poll());
+
+        checkpoint.setDone(true);
+        searchReindexRepository.save(searchReindex);
+    }
+
+    /**
+     * 페이지의 문서가 모두 들어가기를 기다린다. 실패하거나 거절된 문서는 MAX_RETRIES 번까지 다시 보낸다.
+     * 그래도 남으면 checkpoint 를 넘기지 않고 멈추므로, 이어서 할 때 이 페이지부터 다시 넣는다.
+     * 이미 더 새 버전이 들어가 있어서 버린 문서는 실패로 세지 않는다.
+     */
+    private void completePage(SearchReindex searchReindex, ReindexCheckpoint checkpoint, Page page) {
+        List<IndexRequest> requests = page.requests;
+        List<CompletableFuture<BulkItemResponse>> futures = page.futures;
+
+        for (int retries = 0; ; retries++) {
+            List<IndexRequest> failedRequests = new ArrayList<>();
+
+            for (int i = 0; i < requests.size(); i++) {
+                // bulk 요청 자체가 실패한 문서도 다시 보낸다
+                Boolean failed = futures.get(i)
+                        .handle((item, throwable) -> Objects.nonNull(throwable) || SearchIndexingService.toWriteResult(item).getFailed())
+                        .join();
+
+                if (failed)
+                    failedRequests.add(requests.get(i));
+            }
+
+            if (failedRequests.isEmpty())
+                break;
+
+            if (retries >= MAX_RETRIES) {
+                checkpoint.setFailures(checkpoint.getFailures() + failedRequests.size());
+                searchReindexRepository.save(searchReindex);
+
+                throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED,
+                        String.format("%d documents of %s after %s were not indexed", failedRequests.size(), checkpoint.getSource(),
+                                checkpoint.getLastId()));
+            }
+
+            log.warn("retrying failed reindex documents. source={}, documents={}, retries={}", checkpoint.getSource(),
+                    failedRequests.size(), retries + 1);
+
+            try {
+                Thread.sleep(RETRY_BACKOFF_MILLIS * (retries + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e);
+            }
+
+            requests = failedRequests;
+            futures = this.send(failedRequests);
+        }
+
+        checkpoint.setLastId(page.lastId);
+        checkpoint.setCount(checkpoint.getCount() + page.requests.size());
+        runCount.add(page.requests.size());
+
+        searchReindexRepository.save(searchReindex);
+    }
+
+    private List<CompletableFuture<BulkItemResponse>> send(List<IndexRequest> requests) {
+        List<CompletableFuture<BulkItemResponse>> futures = requests.stream()
+                .map(searchIndexingService::add)
+                .collect(Collectors.toList());
+
+        searchIndexingService.flush();
+
+        return futures;
+    }
+
+    private List<IndexRequest> toArticleRequests(String index, List<Article> articles) {
+        List<ObjectId> linkedIds = articles.stream()
+                .filter(article -> BooleanUtils.isTrue(article.getLinkedGallery()))
+                .map(article -> new ObjectId(article.getId()))
+                .collect(Collectors.toList());
+
+        Map<String, List<String>> galleryIds = this.getLinkedGalleryIds(linkedIds, Constants.GALLERY_FROM_TYPE.ARTICLE);
+
+        return articles.stream()
+                .map(article -> EsArticle.builder()
+                        .id(article.getId())
+                        .seq(article.getSeq())
+                        .board(article.getBoard())
+                        .category(article.getCategory())
+                        .writer(article.getWriter())
+                        .subject(JakdukUtils.stripHtmlTag(article.getSubject()))
+                        .content(JakdukUtils.stripHtmlTag(article.getContent()))
+                        .galleries(galleryIds.get(article.getId()))
+                        .build())
+                .map(esArticle -> searchIndexingService.newIndexRequest(index, Constants.ES_TYPE_ARTICLE, esArticle.getId(), null, esArticle))
+                .collect(Collectors.toList());
+    }
+
+    private List<IndexRequest> toCommentRequests(String index, List<ArticleComment> comments) {
+        List<ObjectId> linkedIds = comments.stream()
+                .filter(comment -> BooleanUtils.isTrue(comment.getLinkedGallery()))
+                .map(comment -> new ObjectId(comment.getId()))
+                .collect(Collectors.toList());
+
+        Map<String, List<String>> galleryIds = this.getLinkedGalleryIds(linkedIds, Constants.GALLERY_FROM_TYPE.ARTICLE_COMMENT);
+
+        List<ObjectId> articleIds = comments.stream()
+                .map(comment -> new ObjectId(comment.getArticle().getId()))
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<String, Article> articles = articleRepository.findArticleSummariesByIds(articleIds).stream()
+                .collect(Collectors.toMap(Article::getId, Function.identity()));
+
+        return comments.stream()
+                .map(comment -> EsComment.builder()
+                        .id(comment.getId())
+                        .article(this.toEsParentArticle(comment.getArticle(), articles.get(comment.getArticle().getId())))
+                        .writer(comment.getWriter())
+                        .content(JakdukUtils.stripHtmlTag(comment.getContent()))
+                        .galleries(galleryIds.get(comment.getId()))
+                        .build())
+                .map(esComment -> searchIndexingService.newIndexRequest(index, Constants.ES_TYPE_COMMENT, esComment.getId(), null, esComment))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 댓글 문서에 넣을 부모 글 요약. 글이 없으면 댓글에 있는 글 정보만 넣는다.
+     */
+    private EsParentArticle toEsParentArticle(ArticleItem articleItem, Article article) {
+        EsParentArticle.EsParentArticleBuilder builder = EsParentArticle.builder()
+                .id(articleItem.getId())
+                .seq(articleItem.getSeq())
+                .board(articleItem.getBoard());
+
+        if (Objects.nonNull(article))
+            builder.category(article.getCategory())
+                    .subject(JakdukUtils.stripHtmlTag(article.getSubject()));
+
+        return builder.build();
+    }
+
+    private List<IndexRequest> toGalleryRequests(String index, List<Gallery> galleries) {
+        return galleries.stream()
+                .map(gallery -> EsGallery.builder()
+                        .id(gallery.getId())
+                        .writer(gallery.getWriter())
+                        .name(gallery.getName())
+                        .build())
+                .map(esGallery -> searchIndexingService.newIndexRequest(index, Constants.ES_TYPE_GALLERY, esGallery.getId(), null, esGallery))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 아이템 ID 별 연결된 사진 ID 목록
+     */
+    private Map<String, List<String>> getLinkedGalleryIds(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+        Set<String> ids = itemIds.stream().map(ObjectId::toString).collect(Collectors.toSet());
+        Map<String, List<String>> galleryIds = new HashMap<>();
+
+        galleryRepository.findByItemIdsAndFromType(itemIds, fromType).forEach(gallery ->
+                gallery.getLinkedItems().stream()
+                        .filter(linkedItem -> fromType.equals(linkedItem.getFrom()) && ids.contains(linkedItem.getId()))
+                        .forEach(linkedItem -> galleryIds.computeIfAbsent(linkedItem.getId(), key -> new ArrayList<>()).add(gallery.getId())));
+
+        return galleryIds;
+    }
+
+    /**
+     * 별칭이 가리키는 색인의 analysis settings 와 mappings 로 새 색인을 만든다.
+     *
+     * @return 새 색인 이름
+     */
+    private String createIndexLike(String alias, String suffix) {
+        GetIndexResponse current;
+
+        try {
+            current = client.admin().indices().prepareGetIndex().addIndices(alias).get();
+        } catch (IndexNotFoundException e) {
+            throw new ServiceException(ServiceError.ELASTICSEARCH_NOT_FOUND_INDEX, e);
+        }
+
+        String currentIndex = current.indices()[0];
+        String newIndex = alias + "_" + suffix;
+
+        Settings.Builder settings = Settings.builder();
+
+        current.getSettings().get(currentIndex).getAsMap().forEach((key, value) -> {
+            if (key.startsWith("index.analysis.") || key.equals("index.number_of_shards") || key.equals("index.number_of_replicas"))
+                settings.put(key, value);
+        });
+
+        CreateIndexRequestBuilder createIndexRequestBuilder = client.admin().indices().prepareCreate(newIndex)
+                .setSettings(settings);
+
+        for (ObjectObjectCursor<String, MappingMetaData> mapping : current.getMappings().get(currentIndex))
+            createIndexRequestBuilder.addMapping(mapping.key, this.getMappingSource(mapping.value));
+
+        createIndexRequestBuilder.get();
+
+        log.info("new index was created. alias={}, from={}, to={}", alias, currentIndex, newIndex);
+
+        return newIndex;
+    }
+
+    /**
+     * 댓글은 글 정보를 문서에 담으므로 예전 색인의 _parent, _routing 설정은 옮기지 않는다.
+     */
+    private Map<String, Object> getMappingSource(MappingMetaData mapping) {
+        try {
+            Map<String, Object> source = new HashMap<>(mapping.getSourceAsMap());
+
+            // _parent 가 있으면 _routing.required 가 함께 붙는다
+            if (Objects.nonNull(source.remove("_parent")))
+                source.remove("_routing");
+
+            return source;
+        } catch (Exception e) {
+            throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e);
+        }
+    }
+
+    /**
+     * 글, 사진 별칭을 새 색인으로 한 요청에서 옮긴다. 둘 다 옮겨지거나 둘 다 그대로 남는다.
+     */
+    private void swapAliases(SearchReindex searchReindex) {
+        IndicesAliasesRequestBuilder indicesAliasesRequestBuilder = client.admin().indices().prepareAliases();
+
+        List<String> oldBoardIndices = this.addSwapActions(indicesAliasesRequestBuilder, elasticsearchProperties.getIndexBoard(),
+                searchReindex.getBoardIndex());
+        List<String> oldGalleryIndices = this.addSwapActions(indicesAliasesRequestBuilder, elasticsearchProperties.getIndexGallery(),
+                searchReindex.getGalleryIndex());
+
+        indicesAliasesRequestBuilder.get();
+
+        searchCacheService.increaseGeneration(elasticsearchProperties.getIndexBoard());
+        searchCacheService.increaseGeneration(elasticsearchProperties.getIndexGallery());
+
+        log.info("aliases were swapped. board={} -> {}, gallery={} -> {}", oldBoardIndices, searchReindex.getBoardIndex(),
+                oldGalleryIndices, searchReindex.getGalleryIndex());
+    }
+
+    /**
+     * 별칭을 옛 색인에서 떼고 새 색인에 붙이는 동작을 넣는다.
+     * 별칭 이름을 색인이 직접 쓰고 있으면 (처음 재색인할 때) 그 색인을 지우는 동작을 넣는다. 별칭과 이름이 같은 색인은 둘 수 없다.
+     *
+     * @return 별칭을 떼는 옛 색인들
+     */
+    private List<String> addSwapActions(IndicesAliasesRequestBuilder indicesAliasesRequestBuilder, String alias, String newIndex) {
+        GetAliasesResponse aliases = client.admin().indices().prepareGetAliases(alias).get();
+        List<String> oldIndices = new ArrayList<>();
+
+        for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : aliases.getAliases()) {
+            if (! cursor.value.isEmpty()) {
+                indicesAliasesRequestBuilder.removeAlias(cursor.key, alias);
+                oldIndices.add(cursor.key);
+            }
+        }
+
+        if (oldIndices.isEmpty() && client.admin().indices().prepareExists(alias).get().isExists())
+            indicesAliasesRequestBuilder.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(alias));
+
+        indicesAliasesRequestBuilder.addAlias(newIndex, alias);
+
+        return oldIndices;
+    }
+
+    @AllArgsConstructor
+    private static class Page {
+        private final String lastId; // 페이지의 마지막 ID
+        private final List<IndexRequest> requests; // 다시 보낼 때 쓴다
+        private final List<CompletableFuture<BulkItemResponse>> futures;
+    }
+
+}
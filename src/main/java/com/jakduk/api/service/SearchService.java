@@ -1,5 +1,6 @@
 package com.jakduk.api.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.common.util.UrlGenerationUtils;
@@ -9,29 +10,26 @@ import com.jakduk.api.exception.ServiceException;
 import com.jakduk.api.model.elasticsearch.*;
 import com.jakduk.api.restcontroller.vo.board.BoardGallerySimple;
 import com.jakduk.api.restcontroller.vo.search.*;
+import com.jakduk.api.service.search.SearchEngine;
+import com.jakduk.api.service.search.SearchEngineHits;
+import com.jakduk.api.service.search.SearchWriteResult;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.elasticsearch.action.delete.DeleteResponse;
-import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.search.MultiSearchRequestBuilder;
-import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.text.Text;
-import org.elasticsearch.index.query.InnerHitBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.join.query.JoinQueryBuilders;
-import org.elasticsearch.rest.RestStatus;
-import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
-import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
-import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 
@@ -39,7 +37,9 @@ import javax.annotation.Resource;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
 * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
@@ -53,68 +53,80 @@ public class SearchService {
 
 	@Autowired private UrlGenerationUtils urlGenerationUtils;
 	@Autowired private Client client;
+	@Autowired private SearchIndexingService searchIndexingService;
+	@Autowired private SearchCacheService searchCacheService;
+	@Autowired private SearchSuggestService searchSuggestService;
+	@Autowired private SearchEngine searchEngine;
+
+	@Resource private ThreadPoolTaskScheduler searchTimer; // 통합 검색 제한 시간을 재는 타이머
+
 
 	/**
-	 * 통합 검색
+	 * 통합 검색. 범위별로 따로 찾고, 제한 시간이 지나면 그때까지 끝난 범위만 담아서 돌려준다.
+	 * 같은 검색 결과는 SearchCacheService 에 잠깐 들고 있는다.
 	 *
 	 * @param query	검색어
-	 * @param from	페이지 시작 위치
+	 * @param from	페이지 시작 위치. 커서가 있는 범위에는 쓰지 않는다.
 	 * @param size	페이지 크기
-	 * @return	검색 결과
+	 * @param cursors	범위별 커서. 앞 페이지 결과의 nextCursor 로, 그 다음부터 찾는다.
+	 * @return	검색 결과. 제한 시간 안에 끝나지 않은 범위는 timedOutSections, 실패한 범위는 failedSections 에 담긴다.
 	 */
-	public SearchUnifiedResponse searchUnified(String query, String include, Integer from, Integer size, String preTags,
-											   String postTags) {
+	public CompletableFuture<SearchUnifiedResponse> searchUnified(String query, String include, Integer from, Integer size,
+																  String preTags, String postTags,
+																  Map<Constants.SEARCH_INCLUDE_TYPE, String> cursors) {
+
+		// 검색어는 대소문자, 공백만 다르면 같은 결과. 소문자는 캐시 키에만 쓰고 검색 엔진에는 입력 그대로 보낸다
+		String normalizedQuery = StringUtils.normalizeSpace(query);
+		String queryKey = StringUtils.lowerCase(normalizedQuery);
+
+		String includes = Stream.of(Constants.SEARCH_INCLUDE_TYPE.values())
+				.filter(type -> StringUtils.contains(include, type.name()))
+				.map(Enum::name)
+				.collect(Collectors.joining(";"));
+
+		Map<Constants.SEARCH_INCLUDE_TYPE, Object[]> searchAfters = new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class);
+		cursors.forEach((section, cursor) -> {
+			if (StringUtils.isNotBlank(cursor))
+				searchAfters.put(section, this.decodeCursor(cursor));
+		});
+
+		String key = String.join("|", queryKey, includes, String.valueOf(from), String.valueOf(size), preTags, postTags,
+				String.valueOf(cursors.get(Constants.SEARCH_INCLUDE_TYPE.ARTICLE)),
+				String.valueOf(cursors.get(Constants.SEARCH_INCLUDE_TYPE.COMMENT)),
+				String.valueOf(cursors.get(Constants.SEARCH_INCLUDE_TYPE.GALLERY)),
+				String.valueOf(searchCacheService.getGeneration(elasticsearchProperties.getIndexBoard())),
+				String.valueOf(searchCacheService.getGeneration(elasticsearchProperties.getIndexGallery())));
+
+		return searchCacheService.get(key, () -> this.searchSections(normalizedQuery, includes, from, size, preTags, postTags, searchAfters));
+	}
 
-		SearchUnifiedResponse searchUnifiedResponse = new SearchUnifiedResponse();
-		Queue<Constants.SEARCH_INCLUDE_TYPE> searchOrder = new LinkedList<>();
-		MultiSearchRequestBuilder multiSearchRequestBuilder = client.prepareMultiSearch();
+	private CompletableFuture<SearchUnifiedResponse> searchSections(String query, String include, Integer from, Integer size,
+																	String preTags, String postTags,
+																	Map<Constants.SEARCH_INCLUDE_TYPE, Object[]> searchAfters) {
 
-		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.ARTICLE.name())) {
-			SearchRequestBuilder searchRequestBuilder = getArticleSearchRequestBuilder(query, from, size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.ARTICLE);
-		}
+		Map<Constants.SEARCH_INCLUDE_TYPE, CompletableFuture<SearchEngineHits>> sections = new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class);
 
-		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.COMMENT.name())) {
-			SearchRequestBuilder searchRequestBuilder = getCommentSearchRequestBuilder(query, from, size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.COMMENT);
-		}
-
-		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.GALLERY.name())) {
-			SearchRequestBuilder searchRequestBuilder = getGallerySearchRequestBuilder(query, from, size < 10 ? 4 : size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.GALLERY);
-		}
+		for (Constants.SEARCH_INCLUDE_TYPE section : Constants.SEARCH_INCLUDE_TYPE.values()) {
+			if (! StringUtils.contains(include, section.name()))
+				continue;
 
-		MultiSearchResponse multiSearchResponse = multiSearchRequestBuilder.execute().actionGet();
+			Integer sectionSize = Constants.SEARCH_INCLUDE_TYPE.GALLERY.equals(section) && size < 10 ? 4 : size;
 
-		for (MultiSearchResponse.Item item : multiSearchResponse.getResponses()) {
-			SearchResponse searchResponse = item.getResponse();
-			Constants.SEARCH_INCLUDE_TYPE order = searchOrder.poll();
+			sections.put(section, searchEngine.search(section, query, from, sectionSize, preTags, postTags, searchAfters.get(section)));
+		}
 
-			if (item.isFailure())
-				continue;
+		CompletableFuture<Object> allDone = CompletableFuture.allOf(sections.values().toArray(new CompletableFuture[0]))
+				.handle((result, throwable) -> null);
 
-			if (! ObjectUtils.isEmpty(order)) {
-				switch (order) {
-					case ARTICLE:
-						SearchArticleResult searchArticleResult = getArticleSearchResponse(searchResponse);
-						searchUnifiedResponse.setArticleResult(searchArticleResult);
-						break;
-					case COMMENT:
-						SearchCommentResult searchCommentResult = getCommentSearchResponse(searchResponse);
-						searchUnifiedResponse.setCommentResult(searchCommentResult);
-						break;
-					case GALLERY:
-						SearchGalleryResult searchGalleryResult = getGallerySearchResponse(searchResponse);
-						searchUnifiedResponse.setGalleryResult(searchGalleryResult);
-						break;
-				}
-			}
-		}
+		CompletableFuture<Object> deadline = new CompletableFuture<>();
+		ScheduledFuture<?> timer = searchTimer.schedule(() -> deadline.complete(null),
+				new Date(System.currentTimeMillis() + elasticsearchProperties.getSearchTimeoutMillis()));
 
-		return searchUnifiedResponse;
+		return CompletableFuture.anyOf(allDone, deadline)
+				.thenApply(ignore -> {
+					timer.cancel(false);
+					return this.getSearchUnifiedResponse(sections);
+				});
 	}
 
 	public PopularSearchWordResult aggregateSearchWord(LocalDate gteDate, Integer size) {
@@ -126,183 +138,275 @@ public class SearchService {
 				.setQuery(
 						QueryBuilders.rangeQuery("registerDate").gte(gteDate.toString())
 				)
-				.addAggregation(
-						AggregationBuilders
-								.terms("popular_word_aggs")
-								.field("word")
-								.size(size)
-				);
+				.addAggregation(this.getSearchWordTermsAggregation(size));
 
 		log.debug("aggregateSearchWord Query:\n{}", searchRequestBuilder);
 
 		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
 		Terms popularWordTerms = searchResponse.getAggregations().get("popular_word_aggs");
 
-		List<EsTermsBucket> popularWords = popularWordTerms.getBuckets().stream()
-				.map(entry -> EsTermsBucket.builder()
-						.key(entry.getKey().toString())
-						.count(entry.getDocCount())
-						.build())
-				.collect(Collectors.toList());
-
 		return PopularSearchWordResult.builder()
 				.took(searchResponse.getTookInMillis())
-				.popularSearchWords(popularWords)
+				.popularSearchWords(this.getSearchWordBuckets(popularWordTerms))
 				.build();
 	}
 
-	public void indexDocumentArticle(EsArticle esArticle) {
+	/**
+	 * 날짜별 인기 검색어. 메모리 카운터를 채울 때 쓴다.
+	 */
+	public Map<LocalDate, List<EsTermsBucket>> aggregateDailySearchWords(LocalDate gteDate, Integer size) {
 
-		String id = esArticle.getId();
+		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
+				.setIndices(elasticsearchProperties.getIndexSearchWord())
+				.setTypes(Constants.ES_TYPE_SEARCH_WORD)
+				.setSize(0)
+				.setQuery(
+						QueryBuilders.rangeQuery("registerDate").gte(gteDate.toString())
+				)
+				.addAggregation(
+						AggregationBuilders
+								.dateHistogram("daily_aggs")
+								.field("registerDate")
+								.dateHistogramInterval(DateHistogramInterval.DAY)
+								.format("yyyy-MM-dd")
+								.subAggregation(this.getSearchWordTermsAggregation(size))
+				);
 
-		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexBoard())
-					.setType(Constants.ES_TYPE_ARTICLE)
-					.setId(id)
-					.setSource(ObjectMapperUtils.writeValueAsString(esArticle))
-					.get();
+		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
+		Histogram dailyHistogram = searchResponse.getAggregations().get("daily_aggs");
 
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
-		}
-	}
+		Map<LocalDate, List<EsTermsBucket>> dailyWords = new TreeMap<>();
 
-	public void deleteDocumentBoard(String id) {
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexBoard())
-				.setType(Constants.ES_TYPE_ARTICLE)
-				.setId(id)
-				.get();
+		dailyHistogram.getBuckets().forEach(bucket -> {
+			Terms popularWordTerms = bucket.getAggregations().get("popular_word_aggs");
+			dailyWords.put(LocalDate.parse(bucket.getKeyAsString()), this.getSearchWordBuckets(popularWordTerms));
+		});
 
-		if (! response.status().equals(RestStatus.OK))
-			log.info("board id {} is not found. so can't delete it!", id);
+		return dailyWords;
 	}
 
-	public void indexDocumentBoardComment(EsComment esComment) {
-
-		String id = esComment.getId();
-		String parentBoardId = esComment.getArticle().getId();
+	/**
+	 * 글을 색인한다. 제목이나 말머리가 바뀌었으면 댓글 문서에 들어간 글 제목, 말머리도 함께 고친다.
+	 * 새 글은 댓글이 없으므로 고치지 않는다. 색인에 들어 있던 글을 읽지 못하면 바뀌었다고 본다.
+	 * 버전이 더 새 글이 이미 들어가 있으면 댓글과 추천 검색어도 고치지 않는다.
+	 *
+	 * @param version 문서 버전. 없으면 null
+	 */
+	public CompletableFuture<SearchWriteResult> indexDocumentArticle(EsArticle esArticle, Long version) {
+		String index = elasticsearchProperties.getIndexBoard();
+
+		return searchEngine.get(index, Constants.ES_TYPE_ARTICLE, esArticle.getId())
+				.handle((before, throwable) -> Objects.nonNull(throwable) || this.isParentArticleChanged(before, esArticle))
+				.thenCompose(parentChanged -> this.indexDocument(index, Constants.ES_TYPE_ARTICLE, esArticle.getId(), version, esArticle)
+						.thenApply(result -> {
+							if (this.isApplied(result)) {
+								if (parentChanged)
+									this.updateParentArticleOfComments(esArticle.getId(), version, esArticle.getCategory(), esArticle.getSubject());
+
+								searchSuggestService.putArticle(esArticle.getId(), version, esArticle.getSubject());
+							}
+
+							return result;
+						}));
+	}
 
-		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexBoard())
-					.setType(Constants.ES_TYPE_COMMENT)
-					.setId(id)
-					.setParent(parentBoardId)
-					.setSource(ObjectMapperUtils.writeValueAsString(esComment))
-					.get();
+	/**
+	 * 글을 지운다. 내용만 지운 글에 남은 댓글 문서의 글 제목도 지운다.
+	 */
+	public CompletableFuture<SearchWriteResult> deleteDocumentBoard(String id, Long version) {
+		return this.deleteDocument(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_ARTICLE, id, version)
+				.thenApply(result -> {
+					if (this.isApplied(result)) {
+						this.updateParentArticleOfComments(id, version, null, null);
+						searchSuggestService.removeArticle(id, version);
+					}
 
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
-		}
+					return this.logNotFound(result, "board");
+				});
 	}
 
-	public void deleteDocumentBoardComment(String id) {
-
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexBoard())
-				.setType(Constants.ES_TYPE_COMMENT)
-				.setId(id)
-				.get();
+	public CompletableFuture<SearchWriteResult> indexDocumentBoardComment(EsComment esComment, Long version) {
+		return this.indexDocument(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_COMMENT, esComment.getId(), version, esComment);
+	}
 
-		if (! response.status().equals(RestStatus.OK))
-			log.info("comment id {} is not found. so can't delete it!", id);
+	public CompletableFuture<SearchWriteResult> deleteDocumentBoardComment(String id, Long version) {
+		return this.deleteDocument(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_COMMENT, id, version)
+				.thenApply(result -> this.logNotFound(result, "comment"));
 	}
 
 	// TODO : 구현 해야 함
 	public void createDocumentJakduComment(EsJakduComment EsJakduComment) {}
 
-	public void indexDocumentGallery(EsGallery esGallery) {
+	public CompletableFuture<SearchWriteResult> indexDocumentGallery(EsGallery esGallery, Long version) {
+		return this.indexDocument(elasticsearchProperties.getIndexGallery(), Constants.ES_TYPE_GALLERY, esGallery.getId(), version, esGallery)
+				.thenApply(result -> {
+					if (this.isApplied(result))
+						searchSuggestService.putGallery(esGallery.getId(), version, esGallery.getName());
+
+					return result;
+				});
+	}
+
+	public CompletableFuture<SearchWriteResult> deleteDocumentGallery(String id, Long version) {
+		return this.deleteDocument(elasticsearchProperties.getIndexGallery(), Constants.ES_TYPE_GALLERY, id, version)
+				.thenApply(result -> {
+					if (this.isApplied(result))
+						searchSuggestService.removeGallery(id, version);
+
+					return this.logNotFound(result, "gallery");
+				});
+	}
 
-		String id = esGallery.getId();
+	/**
+	 * 검색어는 검색 엔진과 상관없이 엘라스틱서치에 넣는다. 인기 검색어 집계가 엘라스틱서치에만 있다.
+	 */
+	public CompletableFuture<SearchWriteResult> indexDocumentSearchWord(EsSearchWord esSearchWord) {
 
 		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexGallery())
-					.setType(Constants.ES_TYPE_GALLERY)
-					.setId(id)
-					.setSource(ObjectMapperUtils.writeValueAsString(esGallery))
-					.get();
+			IndexRequest request = new IndexRequest(elasticsearchProperties.getIndexSearchWord(), Constants.ES_TYPE_SEARCH_WORD)
+					.source(ObjectMapperUtils.writeValueAsString(esSearchWord), XContentType.JSON);
+
+			log.debug("indexDocumentSearchWord Source:\n {}", request.getDescription());
+
+			return searchIndexingService.add(request)
+					.thenApply(SearchIndexingService::toWriteResult);
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
 		}
 	}
 
-	public void deleteDocumentGallery(String id) {
+	/**
+	 * 검색어별 검색 수. 모아서 넣은 문서는 count 를, 예전 문서는 1을 더한다.
+	 */
+	private TermsAggregationBuilder getSearchWordTermsAggregation(Integer size) {
+		return AggregationBuilders
+				.terms("popular_word_aggs")
+				.field("word")
+				.size(size)
+				.order(Terms.Order.aggregation("word_count", false))
+				.subAggregation(
+						AggregationBuilders
+								.sum("word_count")
+								.field("count")
+								.missing(1)
+				);
+	}
 
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexGallery())
-				.setType(Constants.ES_TYPE_GALLERY)
-				.setId(id)
-				.get();
+	private List<EsTermsBucket> getSearchWordBuckets(Terms popularWordTerms) {
+		return popularWordTerms.getBuckets().stream()
+				.map(entry -> {
+					Sum wordCount = entry.getAggregations().get("word_count");
 
-		if (! response.status().equals(RestStatus.OK))
-			log.info("gallery id {} is not found. so can't delete it!", id);
+					return EsTermsBucket.builder()
+							.key(entry.getKeyAsString())
+							.count((long) wordCount.getValue())
+							.build();
+				})
+				.collect(Collectors.toList());
 	}
 
-	public void indexDocumentSearchWord(EsSearchWord esSearchWord) {
+	/**
+	 * 끝난 범위만 결과에 담는다. 샤드 일부가 제한 시간을 넘겨 결과가 일부만 온 범위도 timedOutSections 에 담는다.
+	 */
+	private SearchUnifiedResponse getSearchUnifiedResponse(Map<Constants.SEARCH_INCLUDE_TYPE, CompletableFuture<SearchEngineHits>> sections) {
 
-		try {
-			IndexRequestBuilder indexRequestBuilder = client.prepareIndex();
+		SearchUnifiedResponse searchUnifiedResponse = new SearchUnifiedResponse();
+		List<Constants.SEARCH_INCLUDE_TYPE> timedOutSections = new ArrayList<>();
+		List<Constants.SEARCH_INCLUDE_TYPE> failedSections = new ArrayList<>();
+
+		sections.forEach((section, future) -> {
+			if (! future.isDone()) {
+				timedOutSections.add(section);
+				log.warn("unified search section timed out. section={}", section);
+				return;
+			}
 
-			IndexResponse response = indexRequestBuilder
-					.setIndex(elasticsearchProperties.getIndexSearchWord())
-					.setType(Constants.ES_TYPE_SEARCH_WORD)
-					.setSource(ObjectMapperUtils.writeValueAsString(esSearchWord))
-					.get();
+			SearchEngineHits searchEngineHits;
 
-			log.debug("indexDocumentSearchWord Source:\n {}", indexRequestBuilder.request().getDescription());
+			try {
+				searchEngineHits = future.join();
+			} catch (CompletionException e) {
+				failedSections.add(section);
+				log.warn("unified search section failed. section={}", section, e.getCause());
+				return;
+			}
 
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
-		}
+			if (searchEngineHits.getTimedOut())
+				timedOutSections.add(section);
+
+			switch (section) {
+				case ARTICLE:
+					searchUnifiedResponse.setArticleResult(getArticleSearchResponse(searchEngineHits));
+					break;
+				case COMMENT:
+					searchUnifiedResponse.setCommentResult(getCommentSearchResponse(searchEngineHits));
+					break;
+				case GALLERY:
+					searchUnifiedResponse.setGalleryResult(getGallerySearchResponse(searchEngineHits));
+					break;
+			}
+		});
+
+		searchUnifiedResponse.setTimedOutSections(timedOutSections);
+		searchUnifiedResponse.setFailedSections(failedSections);
+
+		return searchUnifiedResponse;
 	}
 
-	private SearchRequestBuilder getArticleSearchRequestBuilder(String query, Integer from, Integer size, String preTags,
-																String postTags) {
+	private CompletableFuture<SearchWriteResult> indexDocument(String index, String type, String id, Long version, Object document) {
+		return searchEngine.index(index, type, id, version, document)
+				.whenComplete((result, throwable) -> searchCacheService.increaseGeneration(index));
+	}
 
-		HighlightBuilder highlightBuilder = new HighlightBuilder()
-				.noMatchSize(Constants.SEARCH_NO_MATCH_SIZE)
-				.fragmentSize(Constants.SEARCH_FRAGMENT_SIZE)
-				.field("subject", Constants.SEARCH_FRAGMENT_SIZE, 0)
-				.field("content", Constants.SEARCH_FRAGMENT_SIZE, 1);
+	private CompletableFuture<SearchWriteResult> deleteDocument(String index, String type, String id, Long version) {
+		return searchEngine.delete(index, type, id, version)
+				.whenComplete((result, throwable) -> searchCacheService.increaseGeneration(index));
+	}
 
-		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
-				.setIndices(elasticsearchProperties.getIndexBoard())
-				.setTypes(Constants.ES_TYPE_ARTICLE)
-				.setFetchSource(null, new String[]{"subject", "content"})
-				.setQuery(
-						QueryBuilders.boolQuery()
-								.should(QueryBuilders.multiMatchQuery(query, "subject^1.5", "content"))
-				)
-				.setFrom(from)
-				.setSize(size);
+	/**
+	 * 색인에 반영된 쓰기인지. 실패했거나 더 새 버전이 있어서 버린 쓰기가 아니다.
+	 */
+	private Boolean isApplied(SearchWriteResult result) {
+		return ! result.getFailed() && ! result.getStale();
+	}
 
-		if (StringUtils.isNotBlank(preTags))
-			highlightBuilder.preTags(preTags);
+	/**
+	 * 색인에 들어 있던 글과 제목이나 말머리가 다른지. 들어 있던 글이 없으면(새 글) 다르지 않다.
+	 */
+	private Boolean isParentArticleChanged(Optional<Map<String, Object>> before, EsArticle esArticle) {
+		return before
+				.map(source -> ! Objects.equals(source.get("category"), esArticle.getCategory())
+						|| ! Objects.equals(source.get("subject"), esArticle.getSubject()))
+				.orElse(false);
+	}
 
-		if (StringUtils.isNotBlank(postTags))
-			highlightBuilder.postTags(postTags);
+	/**
+	 * 글에 달린 댓글 문서들의 글 제목, 말머리를 고친다. 글 버전보다 옛 버전으로는 고치지 않는다.
+	 * 댓글 색인과 달리 기다리지 않고, 실패하면 검색 엔진이 로그만 남긴다. 다음에 글을 고치거나 다시 색인하면 맞춰진다.
+	 */
+	private void updateParentArticleOfComments(String articleId, Long version, String category, String subject) {
+		searchEngine.updateParentArticleOfComments(articleId, version, category, subject)
+				.thenAccept(updated -> {
+					if (updated > 0)
+						searchCacheService.increaseGeneration(elasticsearchProperties.getIndexBoard());
+				});
+	}
 
-		searchRequestBuilder.highlighter(highlightBuilder);
-		log.debug("getArticleSearchRequestBuilder Query:\n{}", searchRequestBuilder);
+	private SearchWriteResult logNotFound(SearchWriteResult result, String type) {
+		if (! result.getFailed() && result.getNotFound())
+			log.info("{} id {} is not found. so can't delete it!", type, result.getId());
 
-		return searchRequestBuilder;
+		return result;
 	}
 
-	private SearchArticleResult getArticleSearchResponse(SearchResponse searchResponse) {
-		SearchHits searchHits = searchResponse.getHits();
+	private SearchArticleResult getArticleSearchResponse(SearchEngineHits searchEngineHits) {
 
-		List<ArticleSource> searchList = Arrays.stream(searchHits.getHits())
+		List<ArticleSource> searchList = searchEngineHits.getHits().stream()
 				.map(searchHit -> {
-					Map<String, Object> sourceMap = searchHit.getSource();
-					EsArticleSource esArticleSource = ObjectMapperUtils.convertValue(sourceMap, EsArticleSource.class);
+					EsArticleSource esArticleSource = ObjectMapperUtils.convertValue(searchHit.getSource(), EsArticleSource.class);
 					esArticleSource.setScore(searchHit.getScore());
-
-					Map<String, List<String>> highlight = this.getHighlight(searchHit.getHighlightFields().entrySet());
-					esArticleSource.setHighlight(highlight);
+					esArticleSource.setHighlight(searchHit.getHighlight());
 
 					return esArticleSource;
 				})
@@ -328,142 +432,81 @@ public class SearchService {
 				.collect(Collectors.toList());
 
 		return SearchArticleResult.builder()
-				.took(searchResponse.getTook().getMillis())
-				.totalCount(searchHits.getTotalHits())
+				.took(searchEngineHits.getTook())
+				.totalCount(searchEngineHits.getTotalCount())
 				.articles(searchList)
+				.nextCursor(this.getNextCursor(searchEngineHits))
 				.build();
 	}
 
-	private SearchRequestBuilder getCommentSearchRequestBuilder(String query, Integer from, Integer size, String preTags,
-																String postTags) {
-
-		HighlightBuilder highlightBuilder = new HighlightBuilder()
-				.noMatchSize(Constants.SEARCH_NO_MATCH_SIZE)
-				.fragmentSize(Constants.SEARCH_FRAGMENT_SIZE)
-				.field("content", Constants.SEARCH_FRAGMENT_SIZE, 1);
+	private SearchCommentResult getCommentSearchResponse(SearchEngineHits searchEngineHits) {
 
-		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
-				.setIndices(elasticsearchProperties.getIndexBoard())
-				.setTypes(Constants.ES_TYPE_COMMENT)
-				.setFetchSource(null, new String[]{"content"})
-				.setQuery(
-						QueryBuilders.boolQuery()
-								.must(QueryBuilders.matchQuery("content", query))
-								.must(
-										JoinQueryBuilders
-												.hasParentQuery(Constants.ES_TYPE_ARTICLE, QueryBuilders.matchAllQuery(), false)
-												.innerHit(new InnerHitBuilder())
-								)
-				)
-				.setFrom(from)
-				.setSize(size);
-
-		if (StringUtils.isNotBlank(preTags))
-			highlightBuilder.preTags(preTags);
-
-		if (StringUtils.isNotBlank(postTags))
-			highlightBuilder.postTags(postTags);
-
-		searchRequestBuilder.highlighter(highlightBuilder);
-		log.debug("getBoardCommentSearchRequestBuilder Query:\n{}", searchRequestBuilder);
-
-		return searchRequestBuilder;
-	}
-
-	private SearchCommentResult getCommentSearchResponse(SearchResponse searchResponse) {
-		SearchHits searchHits = searchResponse.getHits();
-
-		List<EsCommentSource> searchList = Arrays.stream(searchHits.getHits())
+		List<EsCommentSource> searchList = searchEngineHits.getHits().stream()
 				.map(searchHit -> {
-					Map<String, Object> sourceMap = searchHit.getSource();
-					EsCommentSource esCommentSource = ObjectMapperUtils.convertValue(sourceMap, EsCommentSource.class);
+					EsCommentSource esCommentSource = ObjectMapperUtils.convertValue(searchHit.getSource(), EsCommentSource.class);
 					esCommentSource.setScore(searchHit.getScore());
-
-					if (! searchHit.getInnerHits().isEmpty()) {
-						SearchHit[] innerSearchHits = searchHit.getInnerHits().get(Constants.ES_TYPE_ARTICLE).getHits();
-						Map<String, Object> innerSourceMap = innerSearchHits[ innerSearchHits.length - 1 ].getSource();
-						EsParentArticle esParentArticle = ObjectMapperUtils.convertValue(innerSourceMap, EsParentArticle.class);
-
-						esCommentSource.setArticle(esParentArticle);
-					}
-
-					Map<String, List<String>> highlight = this.getHighlight(searchHit.getHighlightFields().entrySet());
-					esCommentSource.setHighlight(highlight);
+					esCommentSource.setHighlight(searchHit.getHighlight());
 
 					return esCommentSource;
 				})
 				.collect(Collectors.toList());
 
 		return SearchCommentResult.builder()
-				.took(searchResponse.getTook().getMillis())
-				.totalCount(searchHits.getTotalHits())
+				.took(searchEngineHits.getTook())
+				.totalCount(searchEngineHits.getTotalCount())
 				.comments(searchList)
+				.nextCursor(this.getNextCursor(searchEngineHits))
 				.build();
 	}
 
-	private SearchRequestBuilder getGallerySearchRequestBuilder(String query, Integer from, Integer size, String preTags,
-																String postTags) {
-
-		HighlightBuilder highlightBuilder = new HighlightBuilder()
-				.noMatchSize(Constants.SEARCH_NO_MATCH_SIZE)
-				.fragmentSize(Constants.SEARCH_FRAGMENT_SIZE)
-				.field("name", Constants.SEARCH_FRAGMENT_SIZE, 0);
-
-		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
-				.setIndices(elasticsearchProperties.getIndexGallery())
-				.setTypes(Constants.ES_TYPE_GALLERY)
-				.setFetchSource(null, new String[]{"name"})
-				.setQuery(QueryBuilders.matchQuery("name", query))
-				.setFrom(from)
-				.setSize(size);
-
-		if (StringUtils.isNotBlank(preTags))
-			highlightBuilder.preTags(preTags);
-
-		if (StringUtils.isNotBlank(postTags))
-			highlightBuilder.postTags(postTags);
-
-		searchRequestBuilder.highlighter(highlightBuilder);
-		log.debug("getGallerySearchRequestBuilder Query:\n{}", searchRequestBuilder);
-
-		return searchRequestBuilder;
-	}
-
-	private SearchGalleryResult getGallerySearchResponse(SearchResponse searchResponse) {
-		SearchHits searchHits = searchResponse.getHits();
+	private SearchGalleryResult getGallerySearchResponse(SearchEngineHits searchEngineHits) {
 
-		List<EsGallerySource> searchList = Arrays.stream(searchHits.getHits())
+		List<EsGallerySource> searchList = searchEngineHits.getHits().stream()
 				.map(searchHit -> {
-					Map<String, Object> sourceMap = searchHit.getSource();
-					EsGallerySource esGallerySource = ObjectMapperUtils.convertValue(sourceMap, EsGallerySource.class);
+					EsGallerySource esGallerySource = ObjectMapperUtils.convertValue(searchHit.getSource(), EsGallerySource.class);
 					esGallerySource.setScore(searchHit.getScore());
-
-					Map<String, List<String>> highlight = this.getHighlight(searchHit.getHighlightFields().entrySet());
-					esGallerySource.setHighlight(highlight);
+					esGallerySource.setHighlight(searchHit.getHighlight());
 
 					return esGallerySource;
 				})
 				.collect(Collectors.toList());
 
 		return SearchGalleryResult.builder()
-				.took(searchResponse.getTook().getMillis())
-				.totalCount(searchHits.getTotalHits())
+				.took(searchEngineHits.getTook())
+				.totalCount(searchEngineHits.getTotalCount())
 				.galleries(searchList)
+				.nextCursor(this.getNextCursor(searchEngineHits))
 				.build();
 	}
 
-	private Map<String, List<String>> getHighlight(Set<Map.Entry<String, HighlightField>> entrySet) {
-		Map<String, List<String>> highlight = new HashMap<>();
+	/**
+	 * 마지막 문서의 정렬 값(점수, _uid)을 커서로 만든다. 찾은 문서가 없으면 null
+	 */
+	private String getNextCursor(SearchEngineHits searchEngineHits) {
+		if (Objects.isNull(searchEngineHits.getLastSortValues()))
+			return null;
 
-		for (Map.Entry<String, HighlightField> highlightField : entrySet) {
-			List<String> fragments = new ArrayList<>();
-			for (Text text : highlightField.getValue().fragments()) {
-				fragments.add(text.string());
-			}
-			highlight.put(highlightField.getKey(), fragments);
+		try {
+			byte[] sortValues = ObjectMapperUtils.getObjectMapper().writeValueAsBytes(searchEngineHits.getLastSortValues());
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(sortValues);
+		} catch (JsonProcessingException e) {
+			log.warn("failed to make search cursor.", e);
+			return null;
 		}
+	}
+
+	private Object[] decodeCursor(String cursor) {
+		try {
+			Object[] searchAfter = ObjectMapperUtils.readValue(Base64.getUrlDecoder().decode(cursor), Object[].class);
+
+			if (searchAfter.length != 2 || ! (searchAfter[0] instanceof Number) || ! (searchAfter[1] instanceof String))
+				throw new ServiceException(ServiceError.INVALID_PARAMETER);
 
-		return highlight;
+			return searchAfter;
+
+		} catch (IllegalArgumentException | IOException e) {
+			throw new ServiceException(ServiceError.INVALID_PARAMETER, e);
+		}
 	}
 
 }
@@ -0,0 +1,471 @@
+package com.jakduk.api.service;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.db.FootballClub;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.jakduk.api.model.simple.ArticleSimple;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.footballclub.FootballClubRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.search.SearchSuggestResponse;
+import com.jakduk.api.restcontroller.vo.search.SearchSuggestion;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 검색어 자동 완성. 엘라스틱서치에 묻지 않고 메모리에 둔 정렬된 키 집합에서 앞부분이 같은 검색어를 찾는다.
+ *
+ * 글 제목, 사진 이름, 축구단 이름, 인기 검색어로 만든다. 글, 사진은 색인할 때마다 그 글, 사진의 키만 넣고 뺀다.
+ * 글, 사진마다 마지막으로 고친 버전을 기억해 두고, 순서가 바뀌어 늦게 온 옛 버전은 버린다.
+ * 인기 검색어는 1분마다 순위를 읽어서 검색 수가 바뀐 검색어만 고치고, MIN_SEARCH_WORD_COUNT 번보다 적게 찾은 검색어는 넣지 않는다.
+ * 다른 서버가 색인한 글, 사진은 10분마다 몽고DB 에서 모두 다시 읽어서 맞춘다.
+ * 읽는 동안 색인된 글, 사진은 모아 두었다가, 새로 만든 키 집합에 다시 고치고 나서 바꿔 넣는다.
+ */
+
+@Slf4j
+@Service
+public class SearchSuggestService {
+
+    // 한번에 읽는 글, 사진 수
+    private static final Integer LOAD_PAGE_SIZE = 1000;
+
+    // 검색어 앞에서부터 몇 단어째까지 찾을 수 있게 할지
+    private static final Integer MAX_WORD_STARTS = 3;
+
+    private static final Integer MAX_TEXT_LENGTH = 50;
+
+    // 한 글자처럼 짧은 입력에서도 빨리 끝나도록, 앞부분이 같은 키를 이만큼만 훑는다
+    private static final Integer MAX_SCAN = 5000;
+
+    private static final Integer MAX_SIZE = 20;
+
+    private static final Long FOOTBALL_CLUB_WEIGHT = 100L;
+
+    // 이보다 적게 찾은 인기 검색어는 추천하지 않는다
+    private static final Long MIN_SEARCH_WORD_COUNT = 3L;
+
+    // 키는 "단어 위치부터 끝까지" + 구분자 + "정규화한 검색어" 다. 정규화할 때 구분자를 지운다
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    @Autowired private ArticleRepository articleRepository;
+    @Autowired private GalleryRepository galleryRepository;
+    @Autowired private FootballClubRepository footballClubRepository;
+    @Autowired private PopularSearchWordService popularSearchWordService;
+
+    // 아래 값과 index 를 고칠 때 잡는다. 찾을 때는 잡지 않는다
+    private final Object lock = new Object();
+
+    // ARTICLE -> (글 ID -> 제목), GALLERY -> (사진 ID -> 이름)
+    private Map<Constants.SEARCH_SUGGEST_TYPE, Map<String, String>> texts = this.newTexts();
+
+    // 검색어 -> 검색 수. MIN_SEARCH_WORD_COUNT 이상인 것만
+    private Map<String, Long> searchWords = Collections.emptyMap();
+
+    // (타입#ID) -> 마지막으로 고친 글, 사진의 버전. 지운 것도 남긴다
+    private final Map<String, Long> versions = new HashMap<>();
+
+    // 다시 읽는 동안 색인된 글, 사진. ID -> 새 제목(지웠으면 null). 다시 읽는 중이 아니면 null
+    private Map<Constants.SEARCH_SUGGEST_TYPE, Map<String, String>> pendings;
+
+    private volatile Index index = new Index();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0L);
+
+    // 걸린 시간 분포. i 번째 칸은 2^i 마이크로초 미만
+    private final LongAdder[] latencies = new LongAdder[24];
+
+    private volatile Long buildMillis = 0L;
+
+    public SearchSuggestService() {
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new LongAdder();
+    }
+
+    /**
+     * 입력한 앞부분으로 시작하는 단어가 있는 검색어를 점수 순으로 찾는다.
+     */
+    public SearchSuggestResponse suggest(String q, Integer size) {
+        long start = System.nanoTime();
+
+        String prefix = this.normalize(q);
+        Integer limit = Math.min(Math.max(size, 0), MAX_SIZE);
+        List<SearchSuggestion> suggestions = new ArrayList<>();
+
+        if (StringUtils.isNotEmpty(prefix) && limit > 0) {
+            Index current = index;
+
+            // 여러 단어 위치에서 같은 검색어가 나오므로 한번만 센다
+            Map<String, Candidate> found = new HashMap<>();
+            int scanned = 0;
+
+            for (String key : current.keys.tailSet(prefix)) {
+                if (scanned++ >= MAX_SCAN || ! key.startsWith(prefix))
+                    break;
+
+                String normalized = key.substring(key.indexOf(KEY_SEPARATOR) + 1);
+                Candidate candidate = current.candidates.get(normalized);
+
+                if (Objects.nonNull(candidate))
+                    found.putIfAbsent(normalized, candidate);
+            }
+
+            found.values().stream()
+                    .sorted(Comparator.comparing(Candidate::getWeight).reversed()
+                            .thenComparing(candidate -> candidate.text.length()))
+                    .limit(limit)
+                    .forEach(candidate -> suggestions.add(new SearchSuggestion(candidate.text, candidate.getType())));
+        }
+
+        this.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+        return SearchSuggestResponse.builder()
+                .suggestions(suggestions)
+                .build();
+    }
+
+    /**
+     * @param version 글 버전. 없으면 null 이고, 버전을 보지 않고 고친다.
+     */
+    public void putArticle(String id, Long version, String subject) {
+        this.put(Constants.SEARCH_SUGGEST_TYPE.ARTICLE, id, version, subject);
+    }
+
+    public void removeArticle(String id, Long version) {
+        this.put(Constants.SEARCH_SUGGEST_TYPE.ARTICLE, id, version, null);
+    }
+
+    public void putGallery(String id, Long version, String name) {
+        this.put(Constants.SEARCH_SUGGEST_TYPE.GALLERY, id, version, name);
+    }
+
+    public void removeGallery(String id, Long version) {
+        this.put(Constants.SEARCH_SUGGEST_TYPE.GALLERY, id, version, null);
+    }
+
+    /**
+     * 자동 완성 통계. lookups, avgMicros, maxMicros, p99Micros(2의 거듭제곱 단위로 어림), keys, candidates,
+     * buildMillis(마지막으로 다시 읽었을 때 키 집합을 만드는 데 걸린 시간)
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = lookups.sum();
+
+        stats.put("lookups", count);
+        stats.put("avgMicros", count > 0 ? totalMicros.sum() / count : 0L);
+        stats.put("maxMicros", maxMicros.get());
+        stats.put("p99Micros", this.getPercentileMicros(count, 0.99));
+
+        Index current = index;
+        stats.put("keys", current.keyCount);
+        stats.put("candidates", current.candidates.size());
+        stats.put("buildMillis", buildMillis);
+
+        return stats;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        this.reload();
+    }
+
+    /**
+     * 글, 사진, 축구단 이름을 몽고DB 에서 모두 다시 읽어서 키 집합을 새로 만든다.
+     * 읽는 동안 색인된 글, 사진은 지금 키 집합에 고치면서 pendings 에도 모아 두고, 새 키 집합에 다시 고친 뒤에 바꿔 넣는다.
+     */
+    @Scheduled(initialDelay = 600000, fixedDelay = 600000)
+    public synchronized void reload() {
+        synchronized (lock) {
+            pendings = this.newTexts();
+        }
+
+        try {
+            Map<Constants.SEARCH_SUGGEST_TYPE, Map<String, String>> newTexts = this.newTexts();
+            this.load(articleRepository::findSubjectsGreaterThanId, ArticleSimple::getId, ArticleSimple::getSubject,
+                    newTexts.get(Constants.SEARCH_SUGGEST_TYPE.ARTICLE));
+            this.load(galleryRepository::findGalleriesGreaterThanId, Gallery::getId, Gallery::getName,
+                    newTexts.get(Constants.SEARCH_SUGGEST_TYPE.GALLERY));
+
+            List<String> footballClubs = footballClubRepository.findAll().stream()
+                    .filter(footballClub -> ! CollectionUtils.isEmpty(footballClub.getNames()))
+                    .map(FootballClub::getNames)
+                    .flatMap(Collection::stream)
+                    .flatMap(localName -> Arrays.asList(localName.getFullName(), localName.getShortName()).stream())
+                    .filter(StringUtils::isNotBlank)
+                    .distinct()
+                    .collect(Collectors.toList());
+
+            Map<String, Long> newSearchWords = this.getSearchWords();
+
+            long start = System.currentTimeMillis();
+            Index newIndex = new Index();
+
+            newSearchWords.forEach((word, count) -> newIndex.add(word, Constants.SEARCH_SUGGEST_TYPE.SEARCH_WORD, count));
+            footballClubs.forEach(name -> newIndex.add(name, Constants.SEARCH_SUGGEST_TYPE.FOOTBALL_CLUB, FOOTBALL_CLUB_WEIGHT));
+            newTexts.forEach((type, values) -> values.values().forEach(text -> newIndex.add(text, type, 1L)));
+
+            buildMillis = System.currentTimeMillis() - start;
+
+            synchronized (lock) {
+                pendings.forEach((type, changes) ->
+                        changes.forEach((id, text) -> this.put(newIndex, newTexts.get(type), type, id, text)));
+
+                texts = newTexts;
+                searchWords = newSearchWords;
+                index = newIndex;
+            }
+
+            log.debug("search suggestions were reloaded. keys={}, candidates={}, elapsed={}ms",
+                    newIndex.keyCount, newIndex.candidates.size(), buildMillis);
+
+        } catch (Exception e) {
+            log.warn("failed to load search suggestions.", e);
+        } finally {
+            synchronized (lock) {
+                pendings = null;
+            }
+        }
+    }
+
+    /**
+     * 인기 검색어 순위를 다시 읽어서, 검색 수가 바뀐 검색어만 고친다.
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void refreshSearchWords() {
+        Map<String, Long> newSearchWords = this.getSearchWords();
+
+        synchronized (lock) {
+            Set<String> words = new HashSet<>(searchWords.keySet());
+            words.addAll(newSearchWords.keySet());
+
+            for (String word : words) {
+                long delta = newSearchWords.getOrDefault(word, 0L) - searchWords.getOrDefault(word, 0L);
+
+                if (delta != 0)
+                    index.add(word, Constants.SEARCH_SUGGEST_TYPE.SEARCH_WORD, delta);
+            }
+
+            searchWords = newSearchWords;
+        }
+    }
+
+    private void put(Constants.SEARCH_SUGGEST_TYPE type, String id, Long version, String text) {
+        String value = StringUtils.isBlank(text) ? null : text;
+
+        synchronized (lock) {
+            if (Objects.nonNull(version)) {
+                Long last = versions.get(type + "#" + id);
+
+                if (Objects.nonNull(last) && last >= version)
+                    return;
+
+                versions.put(type + "#" + id, version);
+            }
+
+            this.put(index, texts.get(type), type, id, value);
+
+            if (Objects.nonNull(pendings))
+                pendings.get(type).put(id, value);
+        }
+    }
+
+    /**
+     * 글, 사진 하나의 제목을 바꾼다. 예전 제목의 점수를 빼고 새 제목의 점수를 더한다.
+     *
+     * @param text 새 제목. 지웠으면 null
+     */
+    private void put(Index target, Map<String, String> values, Constants.SEARCH_SUGGEST_TYPE type, String id, String text) {
+        String before = Objects.isNull(text) ? values.remove(id) : values.put(id, text);
+
+        if (Objects.equals(before, text))
+            return;
+
+        if (Objects.nonNull(before))
+            target.add(before, type, -1L);
+
+        if (Objects.nonNull(text))
+            target.add(text, type, 1L);
+    }
+
+    /**
+     * 인기 검색어 -> 검색 수. MIN_SEARCH_WORD_COUNT 번보다 적게 찾은 검색어는 뺀다.
+     */
+    private Map<String, Long> getSearchWords() {
+        List<EsTermsBucket> words = popularSearchWordService.getPopularWords(Integer.MAX_VALUE).getPopularSearchWords();
+
+        return words.stream()
+                .filter(word -> StringUtils.isNotBlank(word.getKey()) && word.getCount() >= MIN_SEARCH_WORD_COUNT)
+                .collect(Collectors.toMap(EsTermsBucket::getKey, EsTermsBucket::getCount, Long::sum));
+    }
+
+    private Map<Constants.SEARCH_SUGGEST_TYPE, Map<String, String>> newTexts() {
+        Map<Constants.SEARCH_SUGGEST_TYPE, Map<String, String>> newTexts = new EnumMap<>(Constants.SEARCH_SUGGEST_TYPE.class);
+        newTexts.put(Constants.SEARCH_SUGGEST_TYPE.ARTICLE, new LinkedHashMap<>());
+        newTexts.put(Constants.SEARCH_SUGGEST_TYPE.GALLERY, new LinkedHashMap<>());
+
+        return newTexts;
+    }
+
+    private <T> void load(BiFunction<ObjectId, Integer, List<T>> finder, Function<T, String> getId, Function<T, String> getText,
+                          Map<String, String> texts) {
+        ObjectId lastId = null;
+        List<T> items;
+
+        do {
+            items = finder.apply(lastId, LOAD_PAGE_SIZE);
+
+            items.stream()
+                    .filter(item -> StringUtils.isNotBlank(getText.apply(item)))
+                    .forEach(item -> texts.put(getId.apply(item), getText.apply(item)));
+
+            if (! items.isEmpty())
+                lastId = new ObjectId(getId.apply(items.get(items.size() - 1)));
+
+        } while (items.size() == LOAD_PAGE_SIZE);
+    }
+
+    private String normalize(String text) {
+        return StringUtils.normalizeSpace(StringUtils.lowerCase(StringUtils.remove(text, KEY_SEPARATOR)));
+    }
+
+    private void record(Long micros) {
+        lookups.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), latencies.length - 1);
+        latencies[bucket].increment();
+    }
+
+    private Long getPercentileMicros(Long count, Double percentile) {
+        if (count == 0)
+            return 0L;
+
+        long threshold = (long) Math.ceil(count * percentile);
+        long accumulated = 0L;
+
+        for (int i = 0; i < latencies.length; i++) {
+            accumulated += latencies[i].sum();
+
+            if (accumulated >= threshold)
+                return 1L << i;
+        }
+
+        return 1L << (latencies.length - 1);
+    }
+
+    /**
+     * 정규화한 검색어가 같은 것은 후보 하나로 묶는다. 점수는 가져온 곳별로 더해 두고, 모두 0 이 되면 후보를 뺀다.
+     * 후보는 바꾸지 않고 새로 만들어 넣으므로, 찾는 쪽은 잠그지 않고 읽는다.
+     */
+    private static class Candidate {
+        private final String text;
+        private final EnumMap<Constants.SEARCH_SUGGEST_TYPE, Long> weights;
+        private final Long weight;
+
+        private Candidate(String text, EnumMap<Constants.SEARCH_SUGGEST_TYPE, Long> weights) {
+            this.text = text;
+            this.weights = weights;
+            this.weight = weights.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        /**
+         * 가져온 곳 하나의 점수를 더한 후보. 남은 점수가 없으면 null
+         */
+        private Candidate plus(Constants.SEARCH_SUGGEST_TYPE type, Long delta) {
+            EnumMap<Constants.SEARCH_SUGGEST_TYPE, Long> newWeights = new EnumMap<>(weights);
+            newWeights.merge(type, delta, Long::sum);
+            newWeights.values().removeIf(value -> value <= 0);
+
+            return newWeights.isEmpty() ? null : new Candidate(text, newWeights);
+        }
+
+        private Long getWeight() {
+            return weight;
+        }
+
+        // 인기 검색어, 축구단, 글, 사진 순으로 앞선 곳
+        private Constants.SEARCH_SUGGEST_TYPE getType() {
+            return weights.keySet().iterator().next();
+        }
+    }
+
+    /**
+     * 키 집합과 후보. lock 을 잡고 고친다.
+     */
+    private class Index {
+        private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+        private final ConcurrentHashMap<String, Candidate> candidates = new ConcurrentHashMap<>();
+        private volatile int keyCount = 0;
+
+        /**
+         * 검색어의 점수를 더하거나(delta > 0) 뺀다. 새 후보면 키를 넣고, 점수가 남지 않은 후보는 키와 함께 뺀다.
+         */
+        private void add(String text, Constants.SEARCH_SUGGEST_TYPE type, Long delta) {
+            String display = StringUtils.truncate(StringUtils.normalizeSpace(StringUtils.remove(text, KEY_SEPARATOR)), MAX_TEXT_LENGTH);
+            String normalized = normalize(display);
+
+            if (StringUtils.isEmpty(normalized))
+                return;
+
+            Candidate before = candidates.get(normalized);
+            Candidate after;
+
+            if (Objects.nonNull(before)) {
+                after = before.plus(type, delta);
+            } else if (delta > 0) {
+                EnumMap<Constants.SEARCH_SUGGEST_TYPE, Long> weights = new EnumMap<>(Constants.SEARCH_SUGGEST_TYPE.class);
+                weights.put(type, delta);
+                after = new Candidate(display, weights);
+            } else {
+                return;
+            }
+
+            if (Objects.isNull(after)) {
+                candidates.remove(normalized);
+                this.getKeys(normalized).forEach(keys::remove);
+                keyCount -= this.getKeys(normalized).size();
+                return;
+            }
+
+            candidates.put(normalized, after);
+
+            if (Objects.isNull(before)) {
+                List<String> newKeys = this.getKeys(normalized);
+                keys.addAll(newKeys);
+                keyCount += newKeys.size();
+            }
+        }
+
+        private List<String> getKeys(String normalized) {
+            List<String> newKeys = new ArrayList<>();
+
+            for (int i = 0; i < normalized.length() && newKeys.size() < MAX_WORD_STARTS; i++) {
+                if (i == 0 || normalized.charAt(i - 1) == ' ')
+                    newKeys.add(normalized.substring(i) + KEY_SEPARATOR + normalized);
+            }
+
+            return newKeys;
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package com.jakduk.api.service;
 
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.event.ContentChangedEvent;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.AuthUtils;
 import com.jakduk.api.common.util.FileUtils;
@@ -30,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -51,6 +53,7 @@ public class UserService {
 	@Resource private AuthUtils authUtils;
 
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
+	@Autowired private ApplicationEventPublisher applicationEventPublisher;
 	@Autowired private PasswordEncoder passwordEncoder;
 	@Autowired private UserRepository userRepository;
 	@Autowired private FootballClubRepository footballClubRepository;
@@ -130,6 +133,8 @@ public class UserService {
 			userPictureRepository.save(userPicture);
 		}
 
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.USER));
+
 		log.info("JakduK user created. {}", user);
 
 		return user;
@@ -199,6 +204,8 @@ public class UserService {
 			userPictureRepository.save(userPicture);
 		}
 
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.USER));
+
 		log.info("social user created. {}", user);
 
 		return user;
@@ -255,6 +262,8 @@ public class UserService {
 			userPictureRepository.save(userPicture);
 		}
 
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.USER));
+
 		log.debug("User edited. user={}", user);
 
 		return user;
@@ -431,6 +440,8 @@ public class UserService {
 
 	public void deleteUser(String id) {
 		userRepository.deleteById(id);
+
+		applicationEventPublisher.publishEvent(new ContentChangedEvent(ContentChangedEvent.CONTENT_TYPE.USER));
 	}
 
 }
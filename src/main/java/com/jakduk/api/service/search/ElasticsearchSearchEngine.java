@@ -0,0 +1,375 @@
+package com.jakduk.api.service.search;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
+import com.jakduk.api.service.SearchIndexingService;
+import com.jakduk.api.service.SearchReindexService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryAction;
+import org.elasticsearch.index.reindex.UpdateByQueryRequestBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 엘라스틱서치 검색 엔진. 색인, 삭제는 SearchIndexingService 의 bulk 로 보낸다.
+ * 재색인 중이면 새 색인에도 보내고, 새 색인의 결과는 기다리지 않는다.
+ *
+ * 댓글은 글 정보를 문서에 담아서 _parent 가 필요 없지만, 재색인 전의 색인은 댓글 타입에 _parent 가 있어서 routing 없이는 넣지 못한다.
+ * 그런 색인에는 글 ID 를 부모로 넣는다. 재색인으로 별칭이 옮겨지면 첫 쓰기가 routing, parent 오류로 실패하면서 설정을 다시 읽고,
+ * 그 쓰기는 다시 보낼 수 있게 돌려준다.
+ */
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jakduk.elasticsearch", name = "engine", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticsearchSearchEngine implements SearchEngine {
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+    @Autowired private Client client;
+    @Autowired private SearchIndexingService searchIndexingService;
+    @Autowired private SearchReindexService searchReindexService;
+
+    // 색인(별칭) 이름 -> 댓글 타입에 routing 이 필요한지(_parent 가 있는지)
+    private final ConcurrentHashMap<String, Boolean> commentRoutingRequired = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<SearchEngineHits> search(Constants.SEARCH_INCLUDE_TYPE section, String query, Integer from, Integer size,
+                                                      String preTags, String postTags, Object[] searchAfter) {
+
+        SearchRequestBuilder searchRequestBuilder;
+
+        switch (section) {
+            case ARTICLE:
+                searchRequestBuilder = this.getArticleSearchRequestBuilder(query, preTags, postTags);
+                break;
+            case COMMENT:
+                searchRequestBuilder = this.getCommentSearchRequestBuilder(query, preTags, postTags);
+                break;
+            case GALLERY:
+                searchRequestBuilder = this.getGallerySearchRequestBuilder(query, preTags, postTags);
+                break;
+            default:
+                throw new IllegalArgumentException(section.name());
+        }
+
+        searchRequestBuilder
+                .setSize(size)
+                .setTimeout(TimeValue.timeValueMillis(elasticsearchProperties.getSearchTimeoutMillis()));
+
+        this.setPage(searchRequestBuilder, from, searchAfter);
+
+        log.debug("search Query:\n{}", searchRequestBuilder);
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        searchRequestBuilder.execute(ActionListener.wrap(future::complete, future::completeExceptionally));
+
+        return future.thenApply(this::getSearchEngineHits);
+    }
+
+    /**
+     * realtime 으로 읽으므로 refresh 전의 문서도 읽는다.
+     */
+    @Override
+    public CompletableFuture<Optional<Map<String, Object>>> get(String index, String type, String id) {
+        CompletableFuture<GetResponse> future = new CompletableFuture<>();
+        client.prepareGet(index, type, id)
+                .setRealtime(true)
+                .execute(ActionListener.wrap(future::complete, future::completeExceptionally));
+
+        return future.thenApply(response -> response.isExists() ? Optional.of(response.getSource()) : Optional.empty());
+    }
+
+    /**
+     * 버전이 있으면 external 버전으로 넣는다. 엘라스틱서치가 같거나 낮은 버전의 쓰기를 충돌(409)로 거절한다.
+     */
+    @Override
+    public CompletableFuture<SearchWriteResult> index(String index, String type, String id, Long version, Object document) {
+        searchReindexService.getReindexingIndex(index).ifPresent(reindexingIndex ->
+                searchIndexingService.add(this.setVersion(searchIndexingService.newIndexRequest(reindexingIndex, type, id,
+                        this.getParent(reindexingIndex, type, document), document), version)));
+
+        String parent = this.getParent(index, type, document);
+
+        return searchIndexingService.add(this.setVersion(searchIndexingService.newIndexRequest(index, type, id, parent, document), version))
+                .thenApply(SearchIndexingService::toWriteResult)
+                .thenApply(result -> {
+                    if (! result.getFailed() || ! Constants.ES_TYPE_COMMENT.equals(type))
+                        return result;
+
+                    // 별칭이 옮겨져 _parent 설정이 바뀌었을 수 있으므로 다음 쓰기 때 다시 읽는다. bulk 응답 스레드라 여기서 읽지 않는다
+                    commentRoutingRequired.remove(index);
+
+                    Boolean mappingChanged = StringUtils.containsIgnoreCase(result.getMessage(), "routing")
+                            || StringUtils.containsIgnoreCase(result.getMessage(), "parent");
+
+                    return mappingChanged ? SearchWriteResult.builder()
+                            .id(result.getId())
+                            .failed(true)
+                            .retryable(true)
+                            .notFound(false)
+                            .stale(false)
+                            .message(result.getMessage())
+                            .build()
+                            : result;
+                });
+    }
+
+    /**
+     * 버전이 있는 삭제는 그 버전을 남기므로, 지운 뒤 늦게 온 옛 색인도 거절된다.
+     * 지운 문서의 버전은 index.gc_deletes(기본 60초) 동안만 남는다.
+     */
+    @Override
+    public CompletableFuture<SearchWriteResult> delete(String index, String type, String id, Long version) {
+        searchReindexService.getReindexingIndex(index).ifPresent(reindexingIndex ->
+                searchIndexingService.add(this.setVersion(new DeleteRequest(reindexingIndex, type, id), version)));
+
+        return searchIndexingService.add(this.setVersion(new DeleteRequest(index, type, id), version))
+                .thenApply(SearchIndexingService::toWriteResult);
+    }
+
+    /**
+     * update by query 로 고친다. 버전이 없으면 값이 같은 문서를, 있으면 같거나 새 버전이 남은 문서를 건너뛴다.
+     * article.version 은 매핑에 없어서 처음 쓸 때 동적 매핑으로 들어간다.
+     * 재색인 중인 새 색인도 고치지만, 돌려주는 수는 지금 색인의 것이다.
+     */
+    @Override
+    public CompletableFuture<Long> updateParentArticleOfComments(String articleId, Long version, String category, String subject) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("version", version);
+        params.put("category", category);
+        params.put("subject", subject);
+
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG,
+                "def article = ctx._source.article; " +
+                "if (article == null " +
+                "|| (params.version == null && article.category == params.category && article.subject == params.subject) " +
+                "|| (params.version != null && article.version != null && article.version >= params.version)) { ctx.op = 'noop' } " +
+                "else { article.category = params.category; article.subject = params.subject; " +
+                "if (params.version != null) { article.version = params.version } }",
+                params);
+
+        String index = elasticsearchProperties.getIndexBoard();
+
+        searchReindexService.getReindexingIndex(index).ifPresent(reindexingIndex ->
+                this.updateByQuery(reindexingIndex, articleId, script));
+
+        return this.updateByQuery(index, articleId, script);
+    }
+
+    private CompletableFuture<Long> updateByQuery(String index, String articleId, Script script) {
+        UpdateByQueryRequestBuilder updateByQueryRequestBuilder = UpdateByQueryAction.INSTANCE.newRequestBuilder(client)
+                .source(index)
+                .filter(QueryBuilders.termQuery("article.id", articleId))
+                .script(script)
+                .abortOnVersionConflict(false);
+
+        updateByQueryRequestBuilder.source().setTypes(Constants.ES_TYPE_COMMENT);
+
+        CompletableFuture<BulkByScrollResponse> future = new CompletableFuture<>();
+        updateByQueryRequestBuilder.execute(ActionListener.wrap(future::complete, future::completeExceptionally));
+
+        return future.thenApply(response -> {
+            if (! response.getBulkFailures().isEmpty() || ! response.getSearchFailures().isEmpty())
+                log.warn("some comments of article were not updated. index={}, articleId={}, bulkFailures={}, searchFailures={}",
+                        index, articleId, response.getBulkFailures().size(), response.getSearchFailures().size());
+
+            log.debug("comments of article were updated. index={}, articleId={}, updated={}, noops={}",
+                    index, articleId, response.getUpdated(), response.getNoops());
+
+            return response.getUpdated();
+        }).whenComplete((updated, throwable) -> {
+            if (Objects.nonNull(throwable))
+                log.warn("failed to update comments of article. index={}, articleId={}", index, articleId, throwable);
+        });
+    }
+
+    /**
+     * _parent 가 있는 예전 색인에 넣는 댓글이면 글 ID
+     */
+    private String getParent(String index, String type, Object document) {
+        if (! Constants.ES_TYPE_COMMENT.equals(type) || ! (document instanceof EsComment))
+            return null;
+
+        EsParentArticle article = ((EsComment) document).getArticle();
+
+        if (Objects.isNull(article) || ! this.isCommentRoutingRequired(index))
+            return null;
+
+        return article.getId();
+    }
+
+    private Boolean isCommentRoutingRequired(String index) {
+        Boolean required = commentRoutingRequired.get(index);
+
+        if (Objects.nonNull(required))
+            return required;
+
+        try {
+            GetMappingsResponse response = client.admin().indices().prepareGetMappings(index).setTypes(Constants.ES_TYPE_COMMENT).get();
+            required = false;
+
+            for (ObjectObjectCursor<String, ImmutableOpenMap<String, MappingMetaData>> cursor : response.getMappings()) {
+                MappingMetaData mapping = cursor.value.get(Constants.ES_TYPE_COMMENT);
+
+                if (Objects.nonNull(mapping) && mapping.routing().required())
+                    required = true;
+            }
+
+        } catch (RuntimeException e) {
+            // 다음 쓰기 때 다시 읽는다
+            log.warn("failed to read comment mapping. index={}", index, e);
+            return false;
+        }
+
+        commentRoutingRequired.put(index, required);
+
+        return required;
+    }
+
+    private <T extends DocWriteRequest<T>> T setVersion(T request, Long version) {
+        if (Objects.nonNull(version))
+            request.version(version).versionType(VersionType.EXTERNAL);
+
+        return request;
+    }
+
+    private SearchRequestBuilder getArticleSearchRequestBuilder(String query, String preTags, String postTags) {
+
+        HighlightBuilder highlightBuilder = this.newHighlightBuilder(preTags, postTags)
+                .field("subject", Constants.SEARCH_FRAGMENT_SIZE, 0)
+                .field("content", Constants.SEARCH_FRAGMENT_SIZE, 1);
+
+        return client.prepareSearch()
+                .setIndices(elasticsearchProperties.getIndexBoard())
+                .setTypes(Constants.ES_TYPE_ARTICLE)
+                .setFetchSource(null, new String[]{"subject", "content"})
+                .setQuery(
+                        QueryBuilders.boolQuery()
+                                .should(QueryBuilders.multiMatchQuery(query, "subject^1.5", "content"))
+                )
+                .highlighter(highlightBuilder);
+    }
+
+    private SearchRequestBuilder getCommentSearchRequestBuilder(String query, String preTags, String postTags) {
+
+        HighlightBuilder highlightBuilder = this.newHighlightBuilder(preTags, postTags)
+                .field("content", Constants.SEARCH_FRAGMENT_SIZE, 1);
+
+        return client.prepareSearch()
+                .setIndices(elasticsearchProperties.getIndexBoard())
+                .setTypes(Constants.ES_TYPE_COMMENT)
+                .setFetchSource(null, new String[]{"content"})
+                .setQuery(QueryBuilders.matchQuery("content", query))
+                .highlighter(highlightBuilder);
+    }
+
+    private SearchRequestBuilder getGallerySearchRequestBuilder(String query, String preTags, String postTags) {
+
+        HighlightBuilder highlightBuilder = this.newHighlightBuilder(preTags, postTags)
+                .field("name", Constants.SEARCH_FRAGMENT_SIZE, 0);
+
+        return client.prepareSearch()
+                .setIndices(elasticsearchProperties.getIndexGallery())
+                .setTypes(Constants.ES_TYPE_GALLERY)
+                .setFetchSource(null, new String[]{"name"})
+                .setQuery(QueryBuilders.matchQuery("name", query))
+                .highlighter(highlightBuilder);
+    }
+
+    private HighlightBuilder newHighlightBuilder(String preTags, String postTags) {
+        HighlightBuilder highlightBuilder = new HighlightBuilder()
+                .noMatchSize(Constants.SEARCH_NO_MATCH_SIZE)
+                .fragmentSize(Constants.SEARCH_FRAGMENT_SIZE);
+
+        if (StringUtils.isNotBlank(preTags))
+            highlightBuilder.preTags(preTags);
+
+        if (StringUtils.isNotBlank(postTags))
+            highlightBuilder.postTags(postTags);
+
+        return highlightBuilder;
+    }
+
+    /**
+     * 점수, _uid 순으로 정렬한다. 커서가 있으면 from 대신 search_after 로 그 다음부터 찾는다.
+     * search_after 는 앞 페이지 문서를 다시 모으지 않으므로, 몇번째 페이지든 한 페이지를 찾는 비용이 같다.
+     */
+    private void setPage(SearchRequestBuilder searchRequestBuilder, Integer from, Object[] searchAfter) {
+        searchRequestBuilder
+                .setTrackScores(true)
+                .addSort(SortBuilders.scoreSort())
+                .addSort(SortBuilders.fieldSort("_uid").order(SortOrder.ASC));
+
+        if (Objects.nonNull(searchAfter)) {
+            searchRequestBuilder.searchAfter(searchAfter);
+        } else {
+            searchRequestBuilder.setFrom(from);
+        }
+    }
+
+    private SearchEngineHits getSearchEngineHits(SearchResponse searchResponse) {
+        SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+        List<SearchEngineHit> hits = Arrays.stream(searchHits)
+                .map(searchHit -> new SearchEngineHit(searchHit.getSource(), searchHit.getScore(),
+                        this.getHighlight(searchHit.getHighlightFields().entrySet())))
+                .collect(Collectors.toList());
+
+        return SearchEngineHits.builder()
+                .took(searchResponse.getTook().getMillis())
+                .totalCount(searchResponse.getHits().getTotalHits())
+                .timedOut(searchResponse.isTimedOut())
+                .hits(hits)
+                .lastSortValues(searchHits.length == 0 ? null : searchHits[searchHits.length - 1].getSortValues())
+                .build();
+    }
+
+    private Map<String, List<String>> getHighlight(Set<Map.Entry<String, HighlightField>> entrySet) {
+        Map<String, List<String>> highlight = new HashMap<>();
+
+        for (Map.Entry<String, HighlightField> highlightField : entrySet) {
+            List<String> fragments = new ArrayList<>();
+            for (Text text : highlightField.getValue().fragments()) {
+                fragments.add(text.string());
+            }
+            highlight.put(highlightField.getKey(), fragments);
+        }
+
+        return highlight;
+    }
+
+}
@@ -0,0 +1,596 @@
+package com.jakduk.api.service.search;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.highlight.Formatter;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.NullFragmenter;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 서버 안의 루씬 색인으로 찾는 검색 엔진. jakduk.elasticsearch.engine 이 lucene 일 때 쓴다.
+ *
+ * jakduk.elasticsearch.lucene-path 에 MMapDirectory 로 색인 하나를 두고, 엘라스틱서치 색인 이름은 쓰지 않는다.
+ * 문서는 _uid(타입#ID)로 구분하고, 원본 JSON 을 _source 에 넣어 둔다.
+ * 버전이 있는 쓰기는 문서별로 마지막 버전을 확인하고, 그보다 옛 버전의 쓰기는 버린다. 넣은 문서의 버전은 _version 에 남고,
+ * 검색기에 보이기 전까지만 메모리에 들고 있는다. 지운 문서의 버전은 엘라스틱서치의 gc_deletes 처럼 DELETE_VERSION_TTL_MILLIS 동안만 남긴다.
+ * 넣거나 지운 문서는 1초마다 NRT 로 다시 연 검색기부터 보이고, 디스크에는 1분마다 커밋한다.
+ * 한국어 형태소 분석기가 없으므로 CJKAnalyzer(바이그램)로 나눈다.
+ */
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jakduk.elasticsearch", name = "engine", havingValue = "lucene")
+public class LuceneSearchEngine implements SearchEngine {
+
+    private static final String FIELD_UID = "_uid";
+    private static final String FIELD_TYPE = "_type";
+    private static final String FIELD_SOURCE = "_source";
+    private static final String FIELD_VERSION = "_version";
+    private static final String FIELD_ARTICLE_ID = "article.id";
+
+    // 지운 문서의 버전을 들고 있는 시간. 이보다 늦게 온 옛 색인은 막지 못한다
+    private static final Long DELETE_VERSION_TTL_MILLIS = 60000L;
+
+    // 타입별로 찾는 필드와 가중치
+    private static final Map<String, Map<String, Float>> TEXT_FIELDS = new HashMap<>();
+
+    // 조각내지 않고 통째로 하이라이트하는 필드
+    private static final Set<String> WHOLE_FIELDS = new HashSet<>(Arrays.asList("subject", "name"));
+
+    static {
+        Map<String, Float> articleFields = new LinkedHashMap<>();
+        articleFields.put("subject", 1.5F);
+        articleFields.put("content", 1F);
+
+        TEXT_FIELDS.put(Constants.ES_TYPE_ARTICLE, articleFields);
+        TEXT_FIELDS.put(Constants.ES_TYPE_COMMENT, Collections.singletonMap("content", 1F));
+        TEXT_FIELDS.put(Constants.ES_TYPE_GALLERY, Collections.singletonMap("name", 1F));
+    }
+
+    @Resource private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+    @Resource private ThreadPoolTaskExecutor searchExecutor;
+
+    private final Analyzer analyzer = new CJKAnalyzer();
+
+    // _uid -> 마지막으로 쓴 버전. 넣은 문서는 검색기에 보이면 빼고 _version 을 읽는다. 지운 문서는 DELETE_VERSION_TTL_MILLIS 동안 남긴다.
+    private final ConcurrentHashMap<String, VersionValue> versions = new ConcurrentHashMap<>();
+
+    // versions 에 넣은 순번. 검색기를 다시 열기 전의 순번까지는 검색기에 보인다
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    // 같은 문서의 버전 확인과 쓰기를 묶는 잠금
+    private final Object[] locks = new Object[64];
+
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    public LuceneSearchEngine() {
+        for (int i = 0; i < locks.length; i++)
+            locks[i] = new Object();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path path = Paths.get(elasticsearchProperties.getLucenePath());
+        Files.createDirectories(path);
+
+        directory = new MMapDirectory(path);
+        indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(indexWriter, new SearcherFactory());
+
+        log.info("lucene search engine was opened. path={}, docs={}", path, indexWriter.numDocs());
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * 넣거나 지운 문서가 검색에 보이도록 검색기를 다시 연다.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * 디스크에 커밋하고, 더는 들고 있을 필요가 없는 버전을 뺀다.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void commit() throws IOException {
+        if (indexWriter.hasUncommittedChanges())
+            indexWriter.commit();
+
+        this.pruneVersions();
+    }
+
+    @Override
+    public CompletableFuture<SearchEngineHits> search(Constants.SEARCH_INCLUDE_TYPE section, String query, Integer from, Integer size,
+                                                      String preTags, String postTags, Object[] searchAfter) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.searchSection(this.getType(section), query, from, size, preTags, postTags, searchAfter);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, searchExecutor);
+    }
+
+    /**
+     * 방금 넣은 문서도 읽도록 검색기를 다시 열고 읽으므로 searchExecutor 에서 돌린다.
+     */
+    @Override
+    public CompletableFuture<Optional<Map<String, Object>>> get(String index, String type, String id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.getSource(type, id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, searchExecutor);
+    }
+
+    @Override
+    public CompletableFuture<SearchWriteResult> index(String index, String type, String id, Long version, Object document) {
+        try {
+            Term uid = this.getUid(type, id);
+            String source = ObjectMapperUtils.writeValueAsString(document);
+
+            synchronized (this.getLock(uid)) {
+                if (this.isStale(uid, version))
+                    return CompletableFuture.completedFuture(this.getWriteResult(id, false, true));
+
+                indexWriter.updateDocument(uid, this.toDocument(type, id, version, source));
+                this.putVersion(uid, version, false);
+            }
+
+            return CompletableFuture.completedFuture(this.getWriteResult(id, false, false));
+
+        } catch (IOException e) {
+            log.warn("failed to index lucene document. type={}, id={}", type, id, e);
+            return CompletableFuture.completedFuture(this.getFailedWriteResult(id, e));
+        }
+    }
+
+    /**
+     * 문서를 지운다. 지울 문서가 있었는지는 지금 열린 검색기로 보므로, 방금 넣은 문서는 없다고 볼 수 있다.
+     * 지운 문서의 버전은 메모리에 DELETE_VERSION_TTL_MILLIS 동안만 남기므로, 그 뒤나 다시 시작한 뒤에 늦게 온 옛 색인은 막지 못한다.
+     */
+    @Override
+    public CompletableFuture<SearchWriteResult> delete(String index, String type, String id, Long version) {
+        try {
+            Term uid = this.getUid(type, id);
+            Boolean notFound;
+
+            synchronized (this.getLock(uid)) {
+                if (this.isStale(uid, version))
+                    return CompletableFuture.completedFuture(this.getWriteResult(id, false, true));
+
+                IndexSearcher searcher = searcherManager.acquire();
+
+                try {
+                    notFound = searcher.count(new TermQuery(uid)) == 0;
+                } finally {
+                    searcherManager.release(searcher);
+                }
+
+                indexWriter.deleteDocuments(uid);
+                this.putVersion(uid, version, true);
+            }
+
+            return CompletableFuture.completedFuture(this.getWriteResult(id, notFound, false));
+
+        } catch (IOException e) {
+            log.warn("failed to delete lucene document. type={}, id={}", type, id, e);
+            return CompletableFuture.completedFuture(this.getFailedWriteResult(id, e));
+        }
+    }
+
+    /**
+     * 댓글 문서의 _source 를 고쳐서 다시 넣는다. 버전이 없으면 값이 같은 문서를, 있으면 같거나 새 버전이 남은 문서를 건너뛴다.
+     * 방금 넣은 댓글도 찾도록 검색기를 다시 열고 찾으므로 searchExecutor 에서 돌린다.
+     */
+    @Override
+    public CompletableFuture<Long> updateParentArticleOfComments(String articleId, Long version, String category, String subject) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.updateComments(articleId, version, category, subject);
+            } catch (IOException e) {
+                log.warn("failed to update comments of article. articleId={}", articleId, e);
+                throw new UncheckedIOException(e);
+            }
+        }, searchExecutor);
+    }
+
+    private SearchEngineHits searchSection(String type, String query, Integer from, Integer size, String preTags, String postTags,
+                                           Object[] searchAfter) throws IOException {
+
+        long start = System.nanoTime();
+        Map<String, Float> fields = TEXT_FIELDS.get(type);
+        Query match = this.getMatchQuery(fields, query);
+
+        Query filtered = new BooleanQuery.Builder()
+                .add(match, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(FIELD_TYPE, type)), BooleanClause.Occur.FILTER)
+                .build();
+
+        // 엘라스틱서치 엔진과 같이 점수, _uid 순으로 정렬한다
+        Sort sort = new Sort(SortField.FIELD_SCORE, new SortField(FIELD_UID, SortField.Type.STRING));
+
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            TopDocs topDocs;
+            List<ScoreDoc> scoreDocs;
+
+            if (Objects.nonNull(searchAfter)) {
+                // _uid 로 순서가 정해지므로 doc 은 마지막 문서로 두어, 점수와 _uid 가 같은 문서는 다시 나오지 않게 한다
+                float score = ((Number) searchAfter[0]).floatValue();
+                int lastDoc = Math.max(searcher.getIndexReader().maxDoc() - 1, 0);
+                FieldDoc after = new FieldDoc(lastDoc, score, new Object[]{score, new BytesRef((String) searchAfter[1])});
+
+                topDocs = searcher.searchAfter(after, filtered, size, sort, true, false);
+                scoreDocs = Arrays.asList(topDocs.scoreDocs);
+            } else {
+                topDocs = searcher.search(filtered, Math.max(from + size, 1), sort, true, false);
+                scoreDocs = from < topDocs.scoreDocs.length
+                        ? Arrays.asList(topDocs.scoreDocs).subList(from, topDocs.scoreDocs.length)
+                        : Collections.emptyList();
+            }
+
+            List<SearchEngineHit> hits = new ArrayList<>();
+
+            for (ScoreDoc scoreDoc : scoreDocs) {
+                String source = searcher.doc(scoreDoc.doc).get(FIELD_SOURCE);
+                Map<String, Object> sourceMap = ObjectMapperUtils.readValue(source, Map.class);
+
+                hits.add(new SearchEngineHit(sourceMap, scoreDoc.score, this.getHighlight(sourceMap, fields.keySet(), match, preTags, postTags)));
+            }
+
+            Object[] lastSortValues = null;
+
+            if (! scoreDocs.isEmpty()) {
+                Object[] sortValues = ((FieldDoc) scoreDocs.get(scoreDocs.size() - 1)).fields;
+                lastSortValues = new Object[]{sortValues[0], ((BytesRef) sortValues[1]).utf8ToString()};
+            }
+
+            return SearchEngineHits.builder()
+                    .took(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                    .totalCount((long) topDocs.totalHits)
+                    .timedOut(false)
+                    .hits(hits)
+                    .lastSortValues(lastSortValues)
+                    .build();
+
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 필드별로 분석한 검색어 중 하나라도 맞으면 찾는다. 점수는 가장 잘 맞은 필드의 점수다. (multi_match best_fields)
+     */
+    private Query getMatchQuery(Map<String, Float> fields, String query) {
+        QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+        List<Query> queries = new ArrayList<>();
+
+        fields.forEach((field, boost) -> {
+            Query fieldQuery = queryBuilder.createBooleanQuery(field, query);
+
+            if (Objects.nonNull(fieldQuery))
+                queries.add(boost == 1F ? fieldQuery : new BoostQuery(fieldQuery, boost));
+        });
+
+        if (queries.isEmpty())
+            return new MatchNoDocsQuery();
+
+        return new DisjunctionMaxQuery(queries, 0F);
+    }
+
+    /**
+     * 하이라이트한 필드는 source 에서 뺀다. 맞은 곳이 없는 필드는 앞부분을 자른다. (no_match_size)
+     */
+    private Map<String, List<String>> getHighlight(Map<String, Object> source, Set<String> fields, Query match,
+                                                   String preTags, String postTags) throws IOException {
+
+        Map<String, List<String>> highlight = new HashMap<>();
+        Formatter formatter = new SimpleHTMLFormatter(StringUtils.defaultIfBlank(preTags, "<em>"), StringUtils.defaultIfBlank(postTags, "</em>"));
+
+        for (String field : fields) {
+            Object value = source.remove(field);
+
+            if (Objects.isNull(value) || StringUtils.isEmpty(value.toString()))
+                continue;
+
+            String text = value.toString();
+            QueryScorer scorer = new QueryScorer(match, field);
+            Highlighter highlighter = new Highlighter(formatter, scorer);
+            highlighter.setMaxDocCharsToAnalyze(Integer.MAX_VALUE);
+            highlighter.setTextFragmenter(WHOLE_FIELDS.contains(field)
+                    ? new NullFragmenter()
+                    : new SimpleSpanFragmenter(scorer, Constants.SEARCH_FRAGMENT_SIZE));
+
+            String fragment;
+
+            try {
+                fragment = highlighter.getBestFragment(analyzer, field, text);
+            } catch (InvalidTokenOffsetsException e) {
+                fragment = null;
+            }
+
+            highlight.put(field, Collections.singletonList(Objects.nonNull(fragment)
+                    ? fragment
+                    : StringUtils.left(text, Constants.SEARCH_NO_MATCH_SIZE)));
+        }
+
+        return highlight;
+    }
+
+    private Optional<Map<String, Object>> getSource(String type, String id) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(this.getUid(type, id)), 1);
+
+            if (topDocs.scoreDocs.length == 0)
+                return Optional.empty();
+
+            return Optional.of(ObjectMapperUtils.readValue(searcher.doc(topDocs.scoreDocs[0].doc).get(FIELD_SOURCE), Map.class));
+
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private Long updateComments(String articleId, Long version, String category, String subject) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_ARTICLE_ID, articleId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(FIELD_TYPE, Constants.ES_TYPE_COMMENT)), BooleanClause.Occur.FILTER)
+                .build();
+
+        IndexSearcher searcher = searcherManager.acquire();
+        Long updated = 0L;
+
+        try {
+            TopDocs topDocs = searcher.search(query, Math.max(searcher.count(query), 1));
+
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                Document document = searcher.doc(scoreDoc.doc);
+                Map<String, Object> source = ObjectMapperUtils.readValue(document.get(FIELD_SOURCE), Map.class);
+                Map<String, Object> article = (Map<String, Object>) source.get("article");
+
+                if (Objects.isNull(article) || this.isParentArticleUpToDate(article, version, category, subject))
+                    continue;
+
+                article.put("category", category);
+                article.put("subject", subject);
+
+                if (Objects.nonNull(version))
+                    article.put("version", version);
+
+                String id = (String) source.get("id");
+                Term uid = this.getUid(Constants.ES_TYPE_COMMENT, id);
+                Long commentVersion = this.getVersion(document);
+
+                synchronized (this.getLock(uid)) {
+                    // 읽은 뒤에 댓글이 다시 들어왔거나 지워졌으면 건너뛴다. 새 댓글 문서에는 그때의 글 정보가 들어 있다.
+                    if (! Objects.equals(this.getCurrentVersion(uid), commentVersion))
+                        continue;
+
+                    indexWriter.updateDocument(uid, this.toDocument(Constants.ES_TYPE_COMMENT, id, commentVersion,
+                            ObjectMapperUtils.writeValueAsString(source)));
+                }
+
+                updated++;
+            }
+
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        log.debug("comments of article were updated. articleId={}, updated={}", articleId, updated);
+
+        return updated;
+    }
+
+    /**
+     * 버전이 없으면 값이 같은지, 있으면 댓글 문서에 같거나 새 글 버전이 남아 있는지
+     */
+    private Boolean isParentArticleUpToDate(Map<String, Object> article, Long version, String category, String subject) {
+        if (Objects.isNull(version))
+            return Objects.equals(article.get("category"), category) && Objects.equals(article.get("subject"), subject);
+
+        Object stored = article.get("version");
+
+        return stored instanceof Number && ((Number) stored).longValue() >= version;
+    }
+
+    private Document toDocument(String type, String id, Long version, String source) throws IOException {
+        Map<String, Object> sourceMap = ObjectMapperUtils.readValue(source, Map.class);
+        String uid = this.getUid(type, id).text();
+
+        Document document = new Document();
+        document.add(new StringField(FIELD_UID, uid, Field.Store.NO));
+        document.add(new SortedDocValuesField(FIELD_UID, new BytesRef(uid)));
+        document.add(new StringField(FIELD_TYPE, type, Field.Store.NO));
+        document.add(new StoredField(FIELD_SOURCE, source));
+
+        if (Objects.nonNull(version))
+            document.add(new StoredField(FIELD_VERSION, version));
+
+        TEXT_FIELDS.getOrDefault(type, Collections.emptyMap()).keySet().forEach(field -> {
+            Object value = sourceMap.get(field);
+
+            if (Objects.nonNull(value))
+                document.add(new TextField(field, value.toString(), Field.Store.NO));
+        });
+
+        if (Constants.ES_TYPE_COMMENT.equals(type) && sourceMap.get("article") instanceof Map) {
+            Object articleId = ((Map<String, Object>) sourceMap.get("article")).get("id");
+
+            if (Objects.nonNull(articleId))
+                document.add(new StringField(FIELD_ARTICLE_ID, articleId.toString(), Field.Store.NO));
+        }
+
+        return document;
+    }
+
+    private Object getLock(Term uid) {
+        return locks[Math.floorMod(uid.text().hashCode(), locks.length)];
+    }
+
+    /**
+     * 이미 들어간 버전이 version 보다 같거나 크면 옛 쓰기다. 버전이 없는 쓰기는 늘 넣는다.
+     */
+    private Boolean isStale(Term uid, Long version) throws IOException {
+        if (Objects.isNull(version))
+            return false;
+
+        Long current = this.getCurrentVersion(uid);
+
+        return Objects.nonNull(current) && current >= version;
+    }
+
+    /**
+     * 문서의 마지막 버전. 메모리에 없으면 검색기에 보이는 문서의 _version 을 읽는다.
+     */
+    private Long getCurrentVersion(Term uid) throws IOException {
+        VersionValue value = versions.get(uid.text());
+
+        if (Objects.nonNull(value))
+            return value.version;
+
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(uid), 1);
+
+            return topDocs.scoreDocs.length > 0 ? this.getVersion(searcher.doc(topDocs.scoreDocs[0].doc)) : null;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private void putVersion(Term uid, Long version, Boolean deleted) {
+        if (Objects.nonNull(version))
+            versions.put(uid.text(), new VersionValue(version, deleted, writeSequence.incrementAndGet(), System.currentTimeMillis()));
+    }
+
+    /**
+     * 검색기를 다시 열어서, 그 전에 넣은 문서의 버전은 _version 으로 읽을 수 있게 하고 메모리에서 뺀다.
+     * 지운 문서의 버전은 DELETE_VERSION_TTL_MILLIS 가 지나면 뺀다. 그 사이 다시 쓴 문서는 새 값이므로 건드리지 않는다.
+     */
+    private void pruneVersions() throws IOException {
+        long visibleSequence = writeSequence.get();
+        searcherManager.maybeRefreshBlocking();
+
+        long expiredAt = System.currentTimeMillis() - DELETE_VERSION_TTL_MILLIS;
+
+        versions.forEach((uid, value) -> {
+            if (value.deleted ? value.writtenAt < expiredAt : value.sequence <= visibleSequence)
+                versions.remove(uid, value);
+        });
+    }
+
+    private Long getVersion(Document document) {
+        IndexableField field = document.getField(FIELD_VERSION);
+
+        return Objects.isNull(field) ? null : field.numericValue().longValue();
+    }
+
+    private Term getUid(String type, String id) {
+        return new Term(FIELD_UID, type + "#" + id);
+    }
+
+    private String getType(Constants.SEARCH_INCLUDE_TYPE section) {
+        switch (section) {
+            case ARTICLE:
+                return Constants.ES_TYPE_ARTICLE;
+            case COMMENT:
+                return Constants.ES_TYPE_COMMENT;
+            case GALLERY:
+                return Constants.ES_TYPE_GALLERY;
+            default:
+                throw new IllegalArgumentException(section.name());
+        }
+    }
+
+    private SearchWriteResult getWriteResult(String id, Boolean notFound, Boolean stale) {
+        return SearchWriteResult.builder()
+                .id(id)
+                .failed(false)
+                .retryable(false)
+                .notFound(notFound)
+                .stale(stale)
+                .build();
+    }
+
+    private SearchWriteResult getFailedWriteResult(String id, IOException e) {
+        return SearchWriteResult.builder()
+                .id(id)
+                .failed(true)
+                .retryable(false)
+                .notFound(false)
+                .stale(false)
+                .message(e.getMessage())
+                .build();
+    }
+
+    @AllArgsConstructor
+    private static class VersionValue {
+        private final Long version;
+        private final Boolean deleted;
+        private final Long sequence;
+        private final Long writtenAt;
+    }
+
+}
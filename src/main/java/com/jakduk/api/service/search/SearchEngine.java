@@ -0,0 +1,57 @@
+package com.jakduk.api.service.search;
+
+import com.jakduk.api.common.Constants;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 검색 엔진. 글, 댓글, 사진 문서를 넣고, 지우고, 찾는다.
+ *
+ * jakduk.elasticsearch.engine 으로 고른다. elasticsearch(기본)는 엘라스틱서치 클러스터를 쓰고,
+ * lucene 은 서버 안의 루씬 색인을 쓴다. 서버 한대로 돌리거나 CI 에서 클러스터 없이 찾을 때 쓴다.
+ */
+public interface SearchEngine {
+
+    /**
+     * 범위 하나를 찾는다. 점수, _uid 순으로 정렬한다.
+     *
+     * @param searchAfter 앞 페이지 마지막 문서의 정렬 값. 있으면 from 은 쓰지 않는다.
+     */
+    CompletableFuture<SearchEngineHits> search(Constants.SEARCH_INCLUDE_TYPE section, String query, Integer from, Integer size,
+                                               String preTags, String postTags, Object[] searchAfter);
+
+    /**
+     * 문서 하나를 읽는다. 방금 넣은 문서도 읽는다.
+     *
+     * @return 문서의 _source. 문서가 없으면 비어 있다.
+     */
+    CompletableFuture<Optional<Map<String, Object>>> get(String index, String type, String id);
+
+    /**
+     * 문서를 넣는다. 같은 ID 의 문서가 있으면 바꾼다.
+     * 버전이 있으면 이미 들어간 버전보다 클 때만 넣고, 아니면 SearchWriteResult.stale 로 돌려준다.
+     *
+     * @param index 엘라스틱서치 색인(별칭) 이름
+     * @param type 문서 타입. Constants.ES_TYPE_*
+     * @param version 문서 버전. 없으면 null 이고, 버전을 보지 않고 넣는다.
+     */
+    CompletableFuture<SearchWriteResult> index(String index, String type, String id, Long version, Object document);
+
+    /**
+     * 문서를 지운다. 버전은 index 와 같이 본다.
+     */
+    CompletableFuture<SearchWriteResult> delete(String index, String type, String id, Long version);
+
+    /**
+     * 글에 달린 댓글 문서들의 글 말머리, 제목을 고친다.
+     * 버전이 있으면 댓글 문서의 article.version 에 글 버전을 남기고, 그 버전보다 같거나 옛 버전으로는 고치지 않는다.
+     * 같은 글을 고치는 요청이 순서가 바뀌어 끝나도 옛 제목으로 되돌아가지 않는다.
+     *
+     * @param version 글 버전. 없으면 null 이고, 값이 다른 댓글은 모두 고친다.
+     * @return 고친 댓글 수
+     */
+    CompletableFuture<Long> updateParentArticleOfComments(String articleId, Long version, String category, String subject);
+
+}
@@ -0,0 +1,19 @@
+package com.jakduk.api.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 검색 엔진이 찾은 문서 하나. 하이라이트한 필드는 source 에서 뺀다.
+ */
+
+@AllArgsConstructor
+@Getter
+public class SearchEngineHit {
+    private Map<String, Object> source;
+    private Float score;
+    private Map<String, List<String>> highlight;
+}
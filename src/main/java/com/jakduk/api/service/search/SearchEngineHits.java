@@ -0,0 +1,20 @@
+package com.jakduk.api.service.search;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 검색 엔진이 찾은 범위 하나의 결과
+ */
+
+@Builder
+@Getter
+public class SearchEngineHits {
+    private Long took; // 찾기에 걸린 시간(ms)
+    private Long totalCount; // 매칭되는 문서 수
+    private Boolean timedOut; // 제한 시간이 지나서 일부만 찾았는지
+    private List<SearchEngineHit> hits;
+    private Object[] lastSortValues; // 마지막 문서의 정렬 값(점수, _uid). 찾은 문서가 없으면 null
+}
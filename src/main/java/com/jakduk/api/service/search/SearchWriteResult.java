@@ -0,0 +1,19 @@
+package com.jakduk.api.service.search;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 문서를 넣거나 지운 결과
+ */
+
+@Builder
+@Getter
+public class SearchWriteResult {
+    private String id;
+    private Boolean failed;
+    private Boolean retryable; // 검색 엔진이 바빠서 거절한 실패. 다시 보내면 될 수 있다.
+    private Boolean notFound; // 지울 문서가 없었음
+    private Boolean stale; // 더 새 버전이 이미 들어가 있어서 버린 쓰기. 실패가 아니다.
+    private String message; // 실패 이유
+}
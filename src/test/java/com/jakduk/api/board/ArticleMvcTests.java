@@ -44,6 +44,7 @@ import org.springframework.util.CollectionUtils;
 import javax.servlet.http.Cookie;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -182,6 +183,7 @@ public class ArticleMvcTests {
                 .number(0)
                 .numberOfElements(20)
                 .totalElements(1011L)
+                .nextBefore(getArticle.getId())
                 .build();
 
         when(articleService.getArticles(any(Constants.BOARD_TYPE.class), anyString(), anyInt(), anyInt()))
@@ -201,7 +203,8 @@ public class ArticleMvcTests {
                         requestParameters(
                                 parameterWithName("page").description("(optional, default 1) 페이지 번호. 1부터 시작.").optional(),
                                 parameterWithName("size").description("(optional, default 20) 페이지 크기.").optional(),
-                                parameterWithName("categoryCode").description("(optional, default ALL) 말머리. board가 FREE 일때에는 무시된다. FOOTBALL, DEVELOPER 일 때에는 필수다.").optional()
+                                parameterWithName("categoryCode").description("(optional, default ALL) 말머리. board가 FREE 일때에는 무시된다. FOOTBALL, DEVELOPER 일 때에는 필수다.").optional(),
+                                parameterWithName("before").description("(optional) 이 글 ID 이전의 글 목록을 가져온다. 있으면 page는 무시되고 totalPages, totalElements, number는 없다.").optional()
                         ),
                         responseFields(
                                 subsectionWithPath("categories").type(JsonFieldType.OBJECT).description("말머리 맵. key는 말머리코드, value는 표시되는 이름(Locale 지원)"),
@@ -226,11 +229,46 @@ public class ArticleMvcTests {
                                 fieldWithPath("size").type(JsonFieldType.NUMBER).description("페이지당 글 수"),
                                 fieldWithPath("number").type(JsonFieldType.NUMBER).description("현재 페이지(0부터 시작)"),
                                 fieldWithPath("numberOfElements").type(JsonFieldType.NUMBER).description("현제 페이지에서 글 수"),
-                                fieldWithPath("totalElements").type(JsonFieldType.NUMBER).description("전체 글 수")
+                                fieldWithPath("totalElements").type(JsonFieldType.NUMBER).description("전체 글 수"),
+                                fieldWithPath("nextBefore").type(JsonFieldType.STRING).description("다음 목록을 가져올 before 값. 마지막 목록이면 없음").optional()
                         )
                 ));
     }
 
+    @Test
+    @WithMockUser
+    public void getArticlesBeforeTest() throws Exception {
+
+        GetArticle getArticle = new GetArticle();
+        BeanUtils.copyProperties(article, getArticle);
+        getArticle.setGalleries(simpleGalleries);
+        getArticle.setCommentCount(5);
+        getArticle.setLikingCount(article.getUsersLiking().size());
+        getArticle.setDislikingCount(article.getUsersDisliking().size());
+
+        GetArticlesResponse expectResponse = GetArticlesResponse.builder()
+                .categories(categoriesMap)
+                .articles(Arrays.asList(getArticle))
+                .notices(Collections.emptyList())
+                .last(false)
+                .first(false)
+                .size(20)
+                .numberOfElements(20)
+                .nextBefore(getArticle.getId())
+                .build();
+
+        when(articleService.getArticlesBefore(any(Constants.BOARD_TYPE.class), anyString(), any(ObjectId.class), anyInt()))
+                .thenReturn(expectResponse);
+
+        mvc.perform(
+                get("/api/board/{board}/articles", Constants.BOARD_TYPE.FOOTBALL.name().toLowerCase())
+                        .param("before", "58b9050b807d714eaf50a111")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(ObjectMapperUtils.writeValueAsString(expectResponse)));
+    }
+
     @Test
     @WithMockUser
     public void getTopsTest() throws Exception {
@@ -3,6 +3,7 @@ package com.jakduk.api.gallery;
 import com.jakduk.api.ApiApplicationTests;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.LinkedGallery;
 import com.jakduk.api.model.db.Gallery;
 import com.jakduk.api.repository.gallery.GalleryRepository;
 import org.bson.types.ObjectId;
@@ -10,6 +11,7 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -34,5 +36,14 @@ public class GalleryRepositoryTest extends ApiApplicationTests {
 
         Assert.assertTrue(Objects.nonNull(galleries));
     }
+
+    @Test
+    public void findFirstByItemIdsAndFromType() {
+        List<LinkedGallery> linkedGalleries = sut.findFirstByItemIdsAndFromType(
+                Arrays.asList(new ObjectId("58ee422be846b60526cd3382")), Constants.GALLERY_FROM_TYPE.ARTICLE_COMMENT);
+
+        Assert.assertTrue(Objects.nonNull(linkedGalleries));
+        Assert.assertTrue(linkedGalleries.stream().map(LinkedGallery::getId).distinct().count() == linkedGalleries.size());
+    }
     
 }
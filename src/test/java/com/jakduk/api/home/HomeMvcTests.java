@@ -18,11 +18,8 @@ import com.jakduk.api.restcontroller.vo.home.HomeArticle;
 import com.jakduk.api.restcontroller.vo.home.HomeArticleComment;
 import com.jakduk.api.restcontroller.vo.home.HomeGallery;
 import com.jakduk.api.restcontroller.vo.home.HomeLatestItemsResponse;
-import com.jakduk.api.service.ArticleService;
-import com.jakduk.api.service.GalleryService;
+import com.jakduk.api.service.HomeLatestItemsService;
 import com.jakduk.api.service.HomeService;
-import com.jakduk.api.service.UserService;
-import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -62,9 +59,7 @@ public class HomeMvcTests {
     @MockBean private RestTemplateBuilder restTemplateBuilder;
 
     @MockBean private HomeService homeService;
-    @MockBean private UserService userService;
-    @MockBean private ArticleService articleService;
-    @MockBean private GalleryService galleryService;
+    @MockBean private HomeLatestItemsService homeLatestItemsService;
 
     private BoardCategory boardCategory;
     private CommonWriter commonWriter;
@@ -175,21 +170,6 @@ public class HomeMvcTests {
                         .build()
         );
 
-        when(homeService.getHomeDescription())
-                .thenReturn(homeDescription);
-
-        when(userService.findSimpleUsers())
-                .thenReturn(users);
-
-        when(articleService.getLatestComments())
-                .thenReturn(comments);
-
-        when(articleService.getLatestArticles())
-                .thenReturn(articles);
-
-        when(galleryService.findSimpleById(nullable(ObjectId.class), anyInt()))
-                .thenReturn(galleries);
-
         HomeLatestItemsResponse response = HomeLatestItemsResponse.builder()
                 .homeDescription(homeDescription)
                 .users(users)
@@ -198,6 +178,9 @@ public class HomeMvcTests {
                 .galleries(galleries)
                 .build();
 
+        when(homeLatestItemsService.getLatestItems(anyString()))
+                .thenReturn(ObjectMapperUtils.getObjectMapper().writeValueAsBytes(response));
+
         mvc.perform(
                 get("/api/home/latest")
                         .accept(MediaType.APPLICATION_JSON))
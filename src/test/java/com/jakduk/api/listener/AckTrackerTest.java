@@ -0,0 +1,57 @@
+package com.jakduk.api.listener;
+
+import com.rabbitmq.client.Channel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+public class AckTrackerTest {
+
+    private Channel channel;
+    private AckTracker sut;
+
+    @Before
+    public void setUp() {
+        channel = Mockito.mock(Channel.class);
+        sut = new AckTracker(channel, 2);
+    }
+
+    @Test
+    public void ackSucceededMessagesAtOnce() throws IOException {
+        sut.received(1);
+        sut.received(2);
+        sut.received(3);
+
+        // 앞선 1 이 끝나지 않았으므로 2, 3 은 기다린다
+        sut.succeeded(2);
+        sut.succeeded(3);
+        Mockito.verify(channel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.anyBoolean());
+
+        sut.succeeded(1);
+        Mockito.verify(channel).basicAck(3, true);
+    }
+
+    @Test
+    public void nackFailedMessageOnly() throws IOException {
+        sut.received(1);
+        sut.received(2);
+        sut.received(3);
+        sut.received(4);
+
+        sut.failed(1, false);
+        Mockito.verify(channel).basicNack(1, false, false);
+
+        // 처리 중인 메시지가 남아 있으면 ack-batch-size 만큼 모일 때까지 기다린다
+        sut.succeeded(2);
+        Mockito.verify(channel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.anyBoolean());
+
+        sut.succeeded(3);
+        Mockito.verify(channel).basicAck(3, true);
+
+        sut.succeeded(4);
+        Mockito.verify(channel).basicAck(4, true);
+    }
+
+}
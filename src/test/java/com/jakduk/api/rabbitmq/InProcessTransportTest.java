@@ -0,0 +1,163 @@
+package com.jakduk.api.rabbitmq;
+
+import com.jakduk.api.common.rabbitmq.InProcessTransport;
+import com.jakduk.api.common.rabbitmq.TransportMessage;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class InProcessTransportTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JakdukProperties.Rabbitmq rabbitmqProperties;
+    private InProcessTransport sut;
+
+    @Before
+    public void setUp() throws IOException {
+        rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.setInProcessCapacity(10);
+        rabbitmqProperties.setInProcessWorkers(1);
+        rabbitmqProperties.setInProcessJournalPath(temporaryFolder.getRoot().toPath().resolve("journal.log").toString());
+        rabbitmqProperties.setSendBufferOfferTimeoutMillis(100L);
+        rabbitmqProperties.setPublisherConfirmTimeoutMillis(1000L);
+        rabbitmqProperties.getQueues().put("email", this.newQueue("test.email", "test.email.*"));
+        rabbitmqProperties.getQueues().put("elasticsearch", this.newQueue("test.elasticsearch", "test.elasticsearch.#"));
+
+        sut = this.newTransport();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut.destroy();
+    }
+
+    @Test
+    public void routeByBindingKey() throws InterruptedException {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+
+        sut.subscribe("email", message -> {
+            received.add("email:" + message.getRoutingKey());
+            latch.countDown();
+            return CompletableFuture.completedFuture(false);
+        });
+        sut.subscribe("elasticsearch", message -> {
+            received.add("elasticsearch:" + message.getRoutingKey());
+            latch.countDown();
+            return CompletableFuture.completedFuture(false);
+        });
+        sut.start();
+
+        sut.send("test.email.welcome", "body").join();
+        sut.send("test.elasticsearch.index.article", "body").join();
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(received.contains("email:test.email.welcome"));
+        Assert.assertTrue(received.contains("elasticsearch:test.elasticsearch.index.article"));
+
+        // 맞는 큐가 없으면 보내지 못한다
+        Assert.assertTrue(sut.send("test.unknown", "body").isCompletedExceptionally());
+    }
+
+    @Test
+    public void requeueOnce() throws InterruptedException {
+        List<Boolean> redelivered = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+
+        sut.subscribe("email", message -> {
+            redelivered.add(message.getRedelivered());
+            latch.countDown();
+            return CompletableFuture.completedFuture(true);
+        });
+        sut.start();
+
+        sut.send("test.email.welcome", "body").join();
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+
+        // 한번만 되돌린다
+        Assert.assertEquals(2, redelivered.size());
+        Assert.assertFalse(redelivered.get(0));
+        Assert.assertTrue(redelivered.get(1));
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("requeued"));
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("dropped"));
+    }
+
+    @Test
+    public void replayJournal() throws Exception {
+        // 처리기가 돌기 전에 멈추면 저널에 남는다
+        sut.send("test.email.welcome", "body").join();
+        sut.destroy();
+
+        sut = this.newTransport();
+
+        CompletableFuture<TransportMessage> received = new CompletableFuture<>();
+
+        sut.subscribe("email", message -> {
+            received.complete(message);
+            return CompletableFuture.completedFuture(false);
+        });
+        sut.start();
+
+        TransportMessage message = received.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("test.email.welcome", message.getRoutingKey());
+        Assert.assertEquals("\"body\"", new String(message.getBody()));
+        Assert.assertTrue(message.getRedelivered());
+    }
+
+    @Test
+    public void completeAfterHandlingWithoutJournal() throws Exception {
+        sut.destroy();
+        rabbitmqProperties.setInProcessJournalPath(null);
+        sut = this.newTransport();
+
+        CompletableFuture<Boolean> handled = new CompletableFuture<>();
+
+        sut.subscribe("email", message -> handled);
+        sut.start();
+
+        CompletableFuture<Void> sent = sut.send("test.email.welcome", "body");
+
+        // 저널이 없으면 버퍼에 넣은 것만으로는 완료하지 않는다
+        Thread.sleep(300);
+        Assert.assertFalse(sent.isDone());
+
+        handled.complete(false);
+        sent.get(5, TimeUnit.SECONDS);
+    }
+
+    private InProcessTransport newTransport() throws IOException {
+        InProcessTransport transport = new InProcessTransport();
+        ReflectionTestUtils.setField(transport, "rabbitmqProperties", rabbitmqProperties);
+        transport.init();
+
+        return transport;
+    }
+
+    private RabbitMQ newQueue(String bindingQueueName, String bindingRoutingKey) {
+        RabbitMQ rabbitMQ = new RabbitMQ();
+        rabbitMQ.setBindingQueueName(bindingQueueName);
+        rabbitMQ.setBindingRoutingKey(bindingRoutingKey);
+        rabbitMQ.setEnabled(true);
+
+        return rabbitMQ;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.jakduk.api.rabbitmq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jakduk.api.common.rabbitmq.ElasticsearchRoutingKey;
+import com.jakduk.api.common.rabbitmq.EmailRoutingKey;
+import com.jakduk.api.common.rabbitmq.OutboxBatch;
+import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.model.db.OutboxEvent;
+import com.jakduk.api.model.rabbitmq.EsDocumentEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+public class OutboxBatchTest {
+
+    @Test
+    public void coalesceDocuments() throws JsonProcessingException {
+        OutboxBatch sut = new OutboxBatch(Arrays.asList(
+                this.newDocumentEvent("article#a1", ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE, 1L),
+                this.newDocumentEvent("article#a1", ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE, 2L),
+                this.newEmailEvent(),
+                this.newDocumentEvent("comment#c1", ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT, 3L),
+                this.newDocumentEvent("article#a1", ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE, 4L)
+        ));
+
+        // 같은 글의 이벤트 3개 중 마지막 삭제만 남는다
+        Assert.assertEquals(2, sut.getDocumentEvents().size());
+        Assert.assertEquals(Integer.valueOf(2), sut.getCoalesced());
+        Assert.assertEquals(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE, sut.getDocumentEvents().get("article#a1").getRoutingKey());
+        Assert.assertEquals(Long.valueOf(4), sut.getDocumentEvents().get("article#a1").getVersion());
+
+        // 메일은 합치지 않는다
+        Assert.assertEquals(1, sut.getMessages().size());
+    }
+
+    @Test
+    public void keepHighestVersion() throws JsonProcessingException {
+        // outbox 순서와 버전이 어긋나도 버전이 큰 것이 남는다
+        OutboxBatch sut = new OutboxBatch(Arrays.asList(
+                this.newDocumentEvent("gallery#g1", ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_GALLERY, 5L),
+                this.newDocumentEvent("gallery#g1", ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_GALLERY, 4L)
+        ));
+
+        Assert.assertEquals(Long.valueOf(5), sut.getDocumentEvents().get("gallery#g1").getVersion());
+        Assert.assertEquals(Integer.valueOf(1), sut.getCoalesced());
+    }
+
+    @Test
+    public void collectUnreadableEvents() throws JsonProcessingException {
+        OutboxEvent unreadable = OutboxEvent.builder()
+                .queue(RabbitMQPublisher.QUEUE_ELASTICSEARCH)
+                .routingKey(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENTS.getRoutingKey())
+                .documentKey("article#a2")
+                .payload("{broken")
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        OutboxBatch sut = new OutboxBatch(Arrays.asList(
+                this.newDocumentEvent("article#a1", ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE, 1L),
+                unreadable,
+                this.newEmailEvent()
+        ));
+
+        // 읽을 수 없는 이벤트만 빼고 나머지는 보낸다
+        Assert.assertEquals(1, sut.getFailures().size());
+        Assert.assertTrue(sut.getFailures().containsKey(unreadable));
+        Assert.assertEquals(1, sut.getDocumentEvents().size());
+        Assert.assertEquals(1, sut.getMessages().size());
+    }
+
+    private OutboxEvent newDocumentEvent(String documentKey, ElasticsearchRoutingKey routingKey, Long version) throws JsonProcessingException {
+        EsDocumentEvent event = EsDocumentEvent.builder()
+                .routingKey(routingKey)
+                .version(version)
+                .payload(ObjectMapperUtils.getObjectMapper().valueToTree(documentKey))
+                .build();
+
+        return OutboxEvent.builder()
+                .queue(RabbitMQPublisher.QUEUE_ELASTICSEARCH)
+                .routingKey(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENTS.getRoutingKey())
+                .documentKey(documentKey)
+                .payload(ObjectMapperUtils.writeValueAsString(event))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private OutboxEvent newEmailEvent() {
+        return OutboxEvent.builder()
+                .queue(RabbitMQPublisher.QUEUE_EMAIL)
+                .routingKey(EmailRoutingKey.EMAIL_WELCOME.getRoutingKey())
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+}
@@ -2,15 +2,18 @@ package com.jakduk.api.rabbitmq;
 
 import com.jakduk.api.ApiApplicationTests;
 import com.jakduk.api.common.rabbitmq.ElasticsearchRoutingKey;
+import com.jakduk.api.common.rabbitmq.OutboxRelay;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.model.elasticsearch.EsArticle;
 import com.jakduk.api.model.embedded.CommonWriter;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.Resource;
+import java.util.Map;
 
 /**
  * Created by pyohwanjang on 2017. 7. 5..
@@ -23,6 +26,9 @@ public class RabbitMQPublisherTest extends ApiApplicationTests {
     @Autowired
     private RabbitMQPublisher sut;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @Test
     public void publishElasticsearchTest() throws InterruptedException {
 
@@ -38,7 +44,29 @@ public class RabbitMQPublisherTest extends ApiApplicationTests {
 
         String routingKey = jakdukProperties.getRabbitmq().getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE.getRoutingKey());
 
-        sut.publishElasticsearch(routingKey, esArticle);
+        // 브로커가 confirm 해야 완료된다
+        sut.publishElasticsearch(routingKey, esArticle).join();
+    }
+
+    @Test
+    public void relayOutboxTest() {
+        String id = "595bb024290ad3035636f2bb";
+        CommonWriter writer = CommonWriter.builder().userId("userId").username("testUser").build();
+
+        outboxRelay.relay();
+        Map<String, Long> before = outboxRelay.getStats();
+
+        sut.indexDocumentArticle(id, 263, "FREE", "FREE", writer, "subject01", "content01", null);
+        sut.indexDocumentArticle(id, 263, "FREE", "FREE", writer, "subject02", "content02", null);
+        sut.deleteDocumentArticle(id);
+
+        outboxRelay.relay();
+        Map<String, Long> after = outboxRelay.getStats();
+
+        // 같은 글의 이벤트 3개가 모두 보내지고 outbox 가 빈다
+        Assert.assertEquals(3L, after.get("events") - before.get("events"));
+        Assert.assertEquals(Long.valueOf(0), after.get("pendings"));
+        Assert.assertEquals(Long.valueOf(0), after.get("lagMillis"));
     }
 
     @After
@@ -0,0 +1,157 @@
+package com.jakduk.api.rabbitmq;
+
+import com.jakduk.api.common.rabbitmq.RabbitMQSender;
+import com.jakduk.api.configuration.JakdukProperties;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+public class RabbitMQSenderTest {
+
+    private JakdukProperties.Rabbitmq rabbitmqProperties;
+    private RabbitTemplate rabbitTemplate;
+    private ThreadPoolTaskExecutor rabbitSendExecutor;
+    private RabbitMQSender sut;
+
+    // 채널로 보낸 메시지
+    private final List<Message> sentMessages = new CopyOnWriteArrayList<>();
+
+    private RabbitTemplate.ConfirmCallback confirmCallback;
+    private RabbitTemplate.ReturnCallback returnCallback;
+
+    @Before
+    public void setUp() {
+        rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.setExchangeName("test.exchange");
+        rabbitmqProperties.setSendBufferCapacity(2);
+        rabbitmqProperties.setSendBufferOfferTimeoutMillis(50L);
+        rabbitmqProperties.setPublishBatchSize(10);
+        rabbitmqProperties.setPublisherConfirmTimeoutMillis(100L);
+
+        RabbitOperations operations = Mockito.mock(RabbitOperations.class);
+        Mockito.doAnswer(invocation -> sentMessages.add(invocation.getArgument(2)))
+                .when(operations).send(Mockito.anyString(), Mockito.anyString(), Mockito.any(Message.class), Mockito.any(CorrelationData.class));
+
+        rabbitTemplate = Mockito.mock(RabbitTemplate.class);
+        Mockito.when(rabbitTemplate.getMessageConverter()).thenReturn(new SimpleMessageConverter());
+        Mockito.when(rabbitTemplate.invoke(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations));
+
+        rabbitSendExecutor = new ThreadPoolTaskExecutor();
+        rabbitSendExecutor.setCorePoolSize(1);
+        rabbitSendExecutor.initialize();
+
+        sut = new RabbitMQSender();
+        ReflectionTestUtils.setField(sut, "rabbitmqProperties", rabbitmqProperties);
+        ReflectionTestUtils.setField(sut, "rabbitSendExecutor", rabbitSendExecutor);
+        ReflectionTestUtils.setField(sut, "rabbitTemplate", rabbitTemplate);
+        sut.init();
+
+        ArgumentCaptor<RabbitTemplate.ConfirmCallback> confirmCaptor = ArgumentCaptor.forClass(RabbitTemplate.ConfirmCallback.class);
+        ArgumentCaptor<RabbitTemplate.ReturnCallback> returnCaptor = ArgumentCaptor.forClass(RabbitTemplate.ReturnCallback.class);
+        Mockito.verify(rabbitTemplate).setConfirmCallback(confirmCaptor.capture());
+        Mockito.verify(rabbitTemplate).setReturnCallback(returnCaptor.capture());
+        confirmCallback = confirmCaptor.getValue();
+        returnCallback = returnCaptor.getValue();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sut.destroy();
+        rabbitSendExecutor.shutdown();
+    }
+
+    @Test
+    public void rejectWhenBufferIsFull() throws InterruptedException {
+        CompletableFuture<Void> first = sut.send("test.key", "first");
+        sut.send("test.key", "second");
+
+        // confirm 을 기다리는 메시지까지 합쳐 자리가 없으면 받지 않는다
+        CompletableFuture<Void> third = sut.send("test.key", "third");
+        Assert.assertTrue(third.isCompletedExceptionally());
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("rejected"));
+
+        // confirm 되면 자리가 난다
+        this.waitForSent(2);
+        confirmCallback.confirm(this.getCorrelationData(0), true, null);
+        Assert.assertTrue(first.isDone());
+        Assert.assertFalse(first.isCompletedExceptionally());
+
+        CompletableFuture<Void> fourth = sut.send("test.key", "fourth");
+        Assert.assertFalse(fourth.isCompletedExceptionally());
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("rejected"));
+    }
+
+    @Test
+    public void expireUnconfirmed() throws InterruptedException {
+        CompletableFuture<Void> future = sut.send("test.key", "body");
+
+        this.waitForSent(1);
+        Thread.sleep(rabbitmqProperties.getPublisherConfirmTimeoutMillis() + 50);
+        sut.expireUnconfirmed();
+
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("timeouts"));
+
+        // 늦게 온 confirm 은 버린다
+        confirmCallback.confirm(this.getCorrelationData(0), true, null);
+        Assert.assertEquals(Long.valueOf(0), sut.getStats().get("confirmed"));
+        Assert.assertEquals(Long.valueOf(0), sut.getStats().get("unconfirmed"));
+    }
+
+    @Test
+    public void failReturnedMessage() throws InterruptedException {
+        Mockito.verify(rabbitTemplate).setMandatory(true);
+
+        CompletableFuture<Void> future = sut.send("test.unrouted", "body");
+
+        this.waitForSent(1);
+
+        // 받을 큐가 없으면 반송되고, 그 뒤에 ack 가 온다
+        returnCallback.returnedMessage(sentMessages.get(0), 312, "NO_ROUTE", "test.exchange", "test.unrouted");
+        confirmCallback.confirm(this.getCorrelationData(0), true, null);
+
+        try {
+            future.get();
+            Assert.fail("returned message must not be completed normally");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmqpException);
+        }
+
+        Assert.assertEquals(Long.valueOf(1), sut.getStats().get("returned"));
+        Assert.assertEquals(Long.valueOf(0), sut.getStats().get("confirmed"));
+    }
+
+    private void waitForSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (sentMessages.size() < count && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        Assert.assertEquals(count, sentMessages.size());
+    }
+
+    private CorrelationData getCorrelationData(int index) {
+        Object id = sentMessages.get(index).getMessageProperties().getHeaders().get(PublisherCallbackChannel.RETURN_CORRELATION_KEY);
+
+        return new CorrelationData(id.toString());
+    }
+
+}
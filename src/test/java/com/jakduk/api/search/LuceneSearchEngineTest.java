@@ -0,0 +1,196 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.elasticsearch.EsArticle;
+import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
+import com.jakduk.api.service.search.LuceneSearchEngine;
+import com.jakduk.api.service.search.SearchEngineHit;
+import com.jakduk.api.service.search.SearchEngineHits;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class LuceneSearchEngineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneSearchEngine sut;
+    private ThreadPoolTaskExecutor searchExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setLucenePath(temporaryFolder.newFolder("lucene").getPath());
+
+        searchExecutor = new ThreadPoolTaskExecutor();
+        searchExecutor.initialize();
+
+        sut = new LuceneSearchEngine();
+        ReflectionTestUtils.setField(sut, "elasticsearchProperties", elasticsearchProperties);
+        ReflectionTestUtils.setField(sut, "searchExecutor", searchExecutor);
+        sut.init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.destroy();
+        searchExecutor.shutdown();
+    }
+
+    @Test
+    public void searchWithHighlight() throws IOException {
+        this.indexArticle("a1", "수원 삼성 블루윙즈 경기 후기", "오늘 경기는 재미있었다.");
+        this.indexArticle("a2", "전북 현대 경기 일정", "수원 원정 경기가 있다.");
+        sut.refresh();
+
+        SearchEngineHits hits = sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "수원", 0, 10, null, null, null).join();
+
+        Assert.assertEquals(Long.valueOf(2), hits.getTotalCount());
+        Assert.assertEquals(2, hits.getHits().size());
+
+        SearchEngineHit hit = hits.getHits().stream()
+                .filter(searchEngineHit -> "a1".equals(searchEngineHit.getSource().get("id")))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertFalse(hit.getSource().containsKey("subject"));
+        Assert.assertEquals("<em>수원</em> 삼성 블루윙즈 경기 후기", hit.getHighlight().get("subject").get(0));
+        Assert.assertEquals("오늘 경기는 재미있었다.", hit.getHighlight().get("content").get(0));
+    }
+
+    @Test
+    public void searchAfterCursor() throws IOException {
+        for (int i = 0; i < 5; i++)
+            this.indexArticle("a" + i, "경기 후기 " + i, "내용");
+
+        sut.refresh();
+
+        SearchEngineHits firstPage = sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "경기", 0, 3, "<b>", "</b>", null).join();
+        SearchEngineHits secondPage = sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "경기", 0, 3, "<b>", "</b>",
+                firstPage.getLastSortValues()).join();
+
+        Assert.assertEquals(3, firstPage.getHits().size());
+        Assert.assertEquals(2, secondPage.getHits().size());
+        Assert.assertEquals(Long.valueOf(5), secondPage.getTotalCount());
+        Assert.assertTrue(secondPage.getHits().get(0).getHighlight().get("subject").get(0).contains("<b>경기</b>"));
+
+        SearchEngineHits fromPage = sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "경기", 3, 3, null, null, null).join();
+
+        Assert.assertEquals(secondPage.getHits().get(0).getSource().get("id"), fromPage.getHits().get(0).getSource().get("id"));
+    }
+
+    @Test
+    public void updateParentArticleOfComments() throws IOException {
+        EsParentArticle parentArticle = EsParentArticle.builder().id("a1").board("FREE").category("FREE").subject("옛 제목").build();
+
+        sut.index("board", Constants.ES_TYPE_COMMENT, "c1", 1L,
+                EsComment.builder().id("c1").article(parentArticle).content("좋은 댓글").build()).join();
+
+        Long updated = sut.updateParentArticleOfComments("a1", null, "FREE", "새 제목").join();
+        sut.refresh();
+
+        SearchEngineHits hits = sut.search(Constants.SEARCH_INCLUDE_TYPE.COMMENT, "댓글", 0, 10, null, null, null).join();
+        Map<String, Object> article = (Map<String, Object>) hits.getHits().get(0).getSource().get("article");
+
+        Assert.assertEquals(Long.valueOf(1), updated);
+        Assert.assertEquals("새 제목", article.get("subject"));
+        Assert.assertEquals(Long.valueOf(0), sut.updateParentArticleOfComments("a1", null, "FREE", "새 제목").join());
+    }
+
+    @Test
+    public void discardStaleParentArticleUpdates() throws IOException {
+        EsParentArticle parentArticle = EsParentArticle.builder().id("a1").board("FREE").category("FREE").subject("옛 제목").build();
+
+        sut.index("board", Constants.ES_TYPE_COMMENT, "c1", 1L,
+                EsComment.builder().id("c1").article(parentArticle).content("좋은 댓글").build()).join();
+
+        Assert.assertEquals(Long.valueOf(1), sut.updateParentArticleOfComments("a1", 3L, "FREE", "새 제목").join());
+
+        // 늦게 끝난 옛 버전의 고침은 건너뛴다
+        Assert.assertEquals(Long.valueOf(0), sut.updateParentArticleOfComments("a1", 2L, "FREE", "중간 제목").join());
+        sut.refresh();
+
+        SearchEngineHits hits = sut.search(Constants.SEARCH_INCLUDE_TYPE.COMMENT, "댓글", 0, 10, null, null, null).join();
+        Map<String, Object> article = (Map<String, Object>) hits.getHits().get(0).getSource().get("article");
+
+        Assert.assertEquals("새 제목", article.get("subject"));
+        Assert.assertEquals(3, ((Number) article.get("version")).intValue());
+    }
+
+    @Test
+    public void delete() throws IOException {
+        this.indexArticle("a1", "수원 경기", "내용");
+        sut.refresh();
+
+        Assert.assertFalse(sut.delete("board", Constants.ES_TYPE_ARTICLE, "a1", null).join().getNotFound());
+        sut.refresh();
+
+        Assert.assertEquals(Long.valueOf(0),
+                sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "수원", 0, 10, null, null, null).join().getTotalCount());
+        Assert.assertTrue(sut.delete("board", Constants.ES_TYPE_ARTICLE, "a1", null).join().getNotFound());
+    }
+
+    @Test
+    public void discardStaleWrites() throws IOException {
+        EsArticle newer = EsArticle.builder().id("a1").board("FREE").subject("새 제목").build();
+        EsArticle older = EsArticle.builder().id("a1").board("FREE").subject("옛 제목").build();
+
+        Assert.assertFalse(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 2L, newer).join().getStale());
+        Assert.assertTrue(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 1L, older).join().getStale());
+        sut.refresh();
+
+        Assert.assertEquals(Long.valueOf(0),
+                sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "옛", 0, 10, null, null, null).join().getTotalCount());
+
+        // 지운 뒤에 늦게 온 옛 색인도 버린다
+        Assert.assertFalse(sut.delete("board", Constants.ES_TYPE_ARTICLE, "a1", 3L).join().getStale());
+        Assert.assertTrue(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 2L, newer).join().getStale());
+        sut.refresh();
+
+        Assert.assertEquals(Long.valueOf(0),
+                sut.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, "제목", 0, 10, null, null, null).join().getTotalCount());
+    }
+
+    @Test
+    public void pruneVersionsAfterCommit() throws IOException {
+        EsArticle newer = EsArticle.builder().id("a1").board("FREE").subject("새 제목").build();
+        EsArticle older = EsArticle.builder().id("a1").board("FREE").subject("옛 제목").build();
+
+        Assert.assertFalse(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 2L, newer).join().getStale());
+        sut.commit();
+
+        // 넣은 문서의 버전은 커밋 뒤에 메모리에서 빼고, 색인의 _version 으로 옛 색인을 막는다
+        Assert.assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(sut, "versions")).isEmpty());
+        Assert.assertTrue(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 1L, older).join().getStale());
+
+        // 지운 문서의 버전은 커밋 뒤에도 남긴다
+        Assert.assertFalse(sut.delete("board", Constants.ES_TYPE_ARTICLE, "a1", 3L).join().getStale());
+        sut.commit();
+
+        Assert.assertEquals(1, ((Map<?, ?>) ReflectionTestUtils.getField(sut, "versions")).size());
+        Assert.assertTrue(sut.index("board", Constants.ES_TYPE_ARTICLE, "a1", 2L, newer).join().getStale());
+    }
+
+    private void indexArticle(String id, String subject, String content) {
+        EsArticle esArticle = EsArticle.builder()
+                .id(id)
+                .board("FREE")
+                .subject(subject)
+                .content(content)
+                .build();
+
+        Assert.assertFalse(sut.index("board", Constants.ES_TYPE_ARTICLE, id, null, esArticle).join().getFailed());
+    }
+
+}
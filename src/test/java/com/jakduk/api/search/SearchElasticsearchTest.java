@@ -0,0 +1,108 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.ApiApplicationTests;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.service.SearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.InnerHitBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.join.query.JoinQueryBuilders;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 검색 엔진과 상관없이 엘라스틱서치에 직접 묻는 기능. 인기 검색어 집계는 엘라스틱서치에만 있다.
+ * jakduk.elasticsearch.engine 이 elasticsearch 일 때만 돈다.
+ */
+@Slf4j
+public class SearchElasticsearchTest extends ApiApplicationTests {
+
+	private static final Integer WARM_UP_TIMES = 3;
+	private static final Integer MEASURE_TIMES = 20;
+
+	@Autowired
+	private SearchService sut;
+
+	@Autowired
+	private Client client;
+
+	@Resource
+	private JakdukProperties.Elasticsearch elasticsearchProperties;
+
+	@Before
+	public void setUp() {
+		Assume.assumeTrue("elasticsearch".equals(elasticsearchProperties.getEngine()));
+	}
+
+	@Test
+	public void aggregateSearchWord() {
+		// 한달전
+		LocalDate oneMonthAgo = LocalDate.now().minusMonths(1L);
+		sut.aggregateSearchWord(oneMonthAgo, 5);
+	}
+
+	/**
+	 * 댓글 검색. 예전 has_parent 조인 질의와 지금의 match 질의 걸린 시간을 비교한다.
+	 * match 질의는 제한 시간 안에 끝나야 하고, 조인 질의가 찾는 것이 있는 예전 색인에서는 조인 질의보다 느리지 않아야 한다(20% 까지는 흔들림으로 본다).
+	 * _parent 가 없는 색인에서는 조인 질의가 아무것도 찾지 않으므로 시간만 남긴다.
+	 */
+	@Test
+	public void compareCommentSearchLatency() {
+		SearchRequestBuilder joinSearch = client.prepareSearch()
+				.setIndices(elasticsearchProperties.getIndexBoard())
+				.setTypes(Constants.ES_TYPE_COMMENT)
+				.setQuery(
+						QueryBuilders.boolQuery()
+								.must(QueryBuilders.matchQuery("content", "string"))
+								.must(
+										JoinQueryBuilders
+												.hasParentQuery(Constants.ES_TYPE_ARTICLE, QueryBuilders.matchAllQuery(), false)
+												.innerHit(new InnerHitBuilder())
+												.ignoreUnmapped(true)
+								)
+				)
+				.setSize(10);
+
+		SearchRequestBuilder matchSearch = client.prepareSearch()
+				.setIndices(elasticsearchProperties.getIndexBoard())
+				.setTypes(Constants.ES_TYPE_COMMENT)
+				.setQuery(QueryBuilders.matchQuery("content", "string"))
+				.setSize(10);
+
+		// 처음 몇번은 캐시를 데우느라 느리므로 빼고 잰다
+		this.measure(joinSearch, WARM_UP_TIMES);
+		this.measure(matchSearch, WARM_UP_TIMES);
+
+		Long joinMillis = this.measure(joinSearch, MEASURE_TIMES);
+		Long matchMillis = this.measure(matchSearch, MEASURE_TIMES);
+
+		log.info("comment search latency(avg of {}). has_parent={}ms, match={}ms",
+				MEASURE_TIMES, (double) joinMillis / MEASURE_TIMES, (double) matchMillis / MEASURE_TIMES);
+
+		Assert.assertTrue(matchMillis / MEASURE_TIMES < elasticsearchProperties.getSearchTimeoutMillis());
+
+		if (joinSearch.get().getHits().getTotalHits() > 0)
+			Assert.assertTrue("match must not be slower than has_parent. has_parent=" + joinMillis + "ms, match=" + matchMillis + "ms",
+					matchMillis <= joinMillis * 6 / 5);
+	}
+
+	private Long measure(SearchRequestBuilder searchRequestBuilder, Integer times) {
+		long start = System.nanoTime();
+
+		for (int i = 0; i < times; i++)
+			Assert.assertEquals(0, searchRequestBuilder.get().getFailedShards());
+
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+}
@@ -4,7 +4,6 @@ import com.jakduk.api.WithMockJakdukUser;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.common.board.category.BoardCategory;
 import com.jakduk.api.common.board.category.BoardCategoryGenerator;
-import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.JakdukUtils;
 import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.model.elasticsearch.EsCommentSource;
@@ -15,7 +14,9 @@ import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.restcontroller.SearchRestController;
 import com.jakduk.api.restcontroller.vo.board.BoardGallerySimple;
 import com.jakduk.api.restcontroller.vo.search.*;
+import com.jakduk.api.service.PopularSearchWordService;
 import com.jakduk.api.service.SearchService;
+import com.jakduk.api.service.SearchSuggestService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,11 +30,13 @@ import org.springframework.restdocs.payload.JsonFieldType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.when;
@@ -46,7 +49,9 @@ import static org.springframework.restdocs.payload.PayloadDocumentation.response
 import static org.springframework.restdocs.payload.PayloadDocumentation.subsectionWithPath;
 import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
 import static org.springframework.restdocs.request.RequestDocumentation.requestParameters;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -58,8 +63,9 @@ public class SearchMvcTests {
     private MockMvc mvc;
 
     @MockBean private RestTemplateBuilder restTemplateBuilder;
-    @MockBean private RabbitMQPublisher rabbitMQPublisher;
     @MockBean private SearchService searchService;
+    @MockBean private PopularSearchWordService popularSearchWordService;
+    @MockBean private SearchSuggestService searchSuggestService;
 
     private CommonWriter commonWriter;
     private List<BoardCategory> categories;
@@ -106,6 +112,7 @@ public class SearchMvcTests {
                                                 }})
                                         .build()
                         ))
+                .nextCursor("WzQuOTIxOTczNywiYXJ0aWNsZSM1OGI3YjlkZDcxNmRjZTA2YjEwZTQ0OWEiXQ")
                 .build();
 
         SearchCommentResult searchCommentResult = SearchCommentResult.builder()
@@ -132,6 +139,7 @@ public class SearchMvcTests {
                                                 }})
                                 .build()
                         ))
+                .nextCursor("WzIuMjExODAwOCwiY29tbWVudCM1NzhjZDEzZTgwN2Q3MTEzZjI0NmZhMmUiXQ")
                 .build();
 
         SearchGalleryResult searchGalleryResult = SearchGalleryResult.builder()
@@ -150,18 +158,21 @@ public class SearchMvcTests {
                                 .build()
                         )
                 )
+                .nextCursor("WzQuNDAxMTk3NCwiZ2FsbGVyeSM1NWQ5NGMyM2U0YjA4YmI1OTEyMDdmMDgiXQ")
                 .build();
 
         SearchUnifiedResponse expectResponse = SearchUnifiedResponse.builder()
                 .articleResult(searchArticleResult)
                 .commentResult(searchCommentResult)
                 .galleryResult(searchGalleryResult)
+                .timedOutSections(Collections.emptyList())
+                .failedSections(Collections.emptyList())
                 .build();
 
-        when(searchService.searchUnified(anyString(), anyString(), anyInt(), anyInt(), anyString(), anyString()))
-                .thenReturn(expectResponse);
+        when(searchService.searchUnified(anyString(), anyString(), anyInt(), anyInt(), anyString(), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(expectResponse));
 
-        mvc.perform(
+        MvcResult mvcResult = mvc.perform(
                 get("/api/search")
                         .param("q", "test")
                         .param("w", "ARTICLE;COMMENT;GALLERY")
@@ -171,6 +182,10 @@ public class SearchMvcTests {
                         .param("styleClass", "description")
                         .header("Cookie", "JSESSIONID=3F0E029648484BEAEF6B5C3578164E99")
                         .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(content().json(ObjectMapperUtils.writeValueAsString(expectResponse)))
@@ -185,7 +200,10 @@ public class SearchMvcTests {
                                         parameterWithName("from").description("(default 0) 페이지 시작 위치"),
                                         parameterWithName("size").description("(default 10) 페이지 크기"),
                                         parameterWithName("tag").description("(default em) 하이라이트의 HTML 태그"),
-                                        parameterWithName("styleClass").description("(default 없음) 하이라이트의 HTML 태그 클래스")
+                                        parameterWithName("styleClass").description("(default 없음) 하이라이트의 HTML 태그 클래스"),
+                                        parameterWithName("articleCursor").optional().description("(optional) 글 다음 페이지 커서. 앞 페이지의 articleResult.nextCursor. 있으면 from 은 쓰지 않는다."),
+                                        parameterWithName("commentCursor").optional().description("(optional) 댓글 다음 페이지 커서. 앞 페이지의 commentResult.nextCursor. 있으면 from 은 쓰지 않는다."),
+                                        parameterWithName("galleryCursor").optional().description("(optional) 그림 다음 페이지 커서. 앞 페이지의 galleryResult.nextCursor. 있으면 from 은 쓰지 않는다.")
                                 ),
                                 responseFields(
                                         fieldWithPath("articleResult").type(JsonFieldType.OBJECT).description("매칭된 글 객체"),
@@ -200,6 +218,7 @@ public class SearchMvcTests {
                                         subsectionWithPath("articleResult.articles.[].galleries").type(JsonFieldType.ARRAY).description("그림 목록"),
                                         fieldWithPath("articleResult.articles.[].score").type(JsonFieldType.NUMBER).description("매칭 점수"),
                                         subsectionWithPath("articleResult.articles.[].highlight").type(JsonFieldType.OBJECT).description("매칭 단어 하이라이트"),
+                                        fieldWithPath("articleResult.nextCursor").type(JsonFieldType.STRING).description("다음 페이지 커서. 찾은 글이 없으면 없음"),
                                         fieldWithPath("commentResult").type(JsonFieldType.OBJECT).description("매칭된 댓글 객체"),
                                         fieldWithPath("commentResult.took").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(ms)"),
                                         fieldWithPath("commentResult.totalCount").type(JsonFieldType.NUMBER).description("매칭되는 아이템 수"),
@@ -209,6 +228,7 @@ public class SearchMvcTests {
                                         subsectionWithPath("commentResult.comments.[].writer").type(JsonFieldType.OBJECT).description("글쓴이"),
                                         fieldWithPath("commentResult.comments.[].score").type(JsonFieldType.NUMBER).description("매칭 점수"),
                                         subsectionWithPath("commentResult.comments.[].highlight").type(JsonFieldType.OBJECT).description("매칭 단어 하이라이트"),
+                                        fieldWithPath("commentResult.nextCursor").type(JsonFieldType.STRING).description("다음 페이지 커서. 찾은 댓글이 없으면 없음"),
                                         fieldWithPath("galleryResult").type(JsonFieldType.OBJECT).description("매칭된 그림 객체"),
                                         fieldWithPath("galleryResult.took").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(ms)"),
                                         fieldWithPath("galleryResult.totalCount").type(JsonFieldType.NUMBER).description("매칭되는 아이템 수"),
@@ -216,7 +236,10 @@ public class SearchMvcTests {
                                         fieldWithPath("galleryResult.galleries.[].id").type(JsonFieldType.STRING).description("그림 ID"),
                                         fieldWithPath("galleryResult.galleries.[].writer").type(JsonFieldType.OBJECT).description("글쓴이"),
                                         fieldWithPath("galleryResult.galleries.[].score").type(JsonFieldType.NUMBER).description("매칭 점수"),
-                                        subsectionWithPath("galleryResult.galleries.[].highlight").type(JsonFieldType.OBJECT).description("매칭 단어 하이라이트")
+                                        subsectionWithPath("galleryResult.galleries.[].highlight").type(JsonFieldType.OBJECT).description("매칭 단어 하이라이트"),
+                                        fieldWithPath("galleryResult.nextCursor").type(JsonFieldType.STRING).description("다음 페이지 커서. 찾은 그림이 없으면 없음"),
+                                        fieldWithPath("timedOutSections").type(JsonFieldType.ARRAY).description("제한 시간 안에 다 찾지 못한 범위. ARTICLE, COMMENT, GALLERY"),
+                                        fieldWithPath("failedSections").type(JsonFieldType.ARRAY).description("찾기에 실패한 범위. ARTICLE, COMMENT, GALLERY")
                                 )
                         ));
     }
@@ -235,7 +258,7 @@ public class SearchMvcTests {
                         ))
                 .build();
 
-        when(searchService.aggregateSearchWord(any(LocalDate.class), anyInt()))
+        when(popularSearchWordService.getPopularWords(anyInt()))
                 .thenReturn(expectResponse);
 
         mvc.perform(
@@ -259,4 +282,42 @@ public class SearchMvcTests {
                         ));
     }
 
+    @Test
+    @WithMockUser
+    public void searchSuggestTest() throws Exception {
+
+        SearchSuggestResponse expectResponse = SearchSuggestResponse.builder()
+                .suggestions(
+                        Arrays.asList(
+                                new SearchSuggestion("수원 삼성", Constants.SEARCH_SUGGEST_TYPE.FOOTBALL_CLUB),
+                                new SearchSuggestion("수원 원정 후기", Constants.SEARCH_SUGGEST_TYPE.SEARCH_WORD),
+                                new SearchSuggestion("수원 월드컵 경기장 가는 길", Constants.SEARCH_SUGGEST_TYPE.ARTICLE)
+                        ))
+                .build();
+
+        when(searchSuggestService.suggest(anyString(), anyInt()))
+                .thenReturn(expectResponse);
+
+        mvc.perform(
+                get("/api/search/suggest")
+                        .param("q", "수원")
+                        .param("size", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(ObjectMapperUtils.writeValueAsString(expectResponse)))
+                .andDo(
+                        document("search-suggest",
+                                requestParameters(
+                                        parameterWithName("q").description("입력 중인 검색어"),
+                                        parameterWithName("size").description("(default 5, 최대 20) 반환 개수")
+                                ),
+                                responseFields(
+                                        fieldWithPath("suggestions").type(JsonFieldType.ARRAY).description("추천 검색어 목록. 점수 순"),
+                                        fieldWithPath("suggestions.[].text").type(JsonFieldType.STRING).description("추천 검색어"),
+                                        fieldWithPath("suggestions.[].type").type(JsonFieldType.STRING).description("가져온 곳. SEARCH_WORD, FOOTBALL_CLUB, ARTICLE, GALLERY")
+                                )
+                        ));
+    }
+
 }
@@ -1,13 +1,27 @@
 package com.jakduk.api.search;
 
 import com.jakduk.api.ApiApplicationTests;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.elasticsearch.EsArticle;
+import com.jakduk.api.restcontroller.vo.search.ArticleSource;
+import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
 import com.jakduk.api.service.SearchService;
+import com.jakduk.api.service.search.SearchWriteResult;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
+ * 검색 엔진(SearchEngine)을 거치는 검색. test 프로필에서는 lucene 엔진으로 돈다.
+ *
  * @author Jang, Pyohwan
  * @since 2016. 12. 2.
  */
@@ -18,14 +32,68 @@ public class SearchServiceTest extends ApiApplicationTests {
 
 	@Test
 	public void searchUnified() {
-		sut.searchUnified("string", "ARTICLE;COMMENT;GALLERY", 0, 10, null, null);
+		sut.searchUnified("string", "ARTICLE;COMMENT;GALLERY", 0, 10, null, null, new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class));
 	}
 
 	@Test
-	public void aggregateSearchWord() {
-		// 한달전
-		LocalDate oneMonthAgo = LocalDate.now().minusMonths(1L);
-		sut.aggregateSearchWord(oneMonthAgo, 5);
+	public void searchUnifiedWithCursor() {
+		Map<Constants.SEARCH_INCLUDE_TYPE, String> cursors = new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class);
+
+		SearchUnifiedResponse firstPage = sut.searchUnified("string", "ARTICLE", 0, 5, null, null, cursors).join();
+		String nextCursor = firstPage.getArticleResult().getNextCursor();
+
+		if (Objects.isNull(nextCursor))
+			return;
+
+		cursors.put(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, nextCursor);
+
+		SearchUnifiedResponse secondPage = sut.searchUnified("string", "ARTICLE", 0, 5, null, null, cursors).join();
+
+		// 커서 다음부터 찾으므로 앞 페이지 글이 다시 나오지 않는다
+		List<String> firstIds = firstPage.getArticleResult().getArticles().stream()
+				.map(ArticleSource::getId)
+				.collect(Collectors.toList());
+
+		secondPage.getArticleResult().getArticles()
+				.forEach(article -> Assert.assertFalse(firstIds.contains(article.getId())));
+	}
+
+	@Test
+	public void indexAndSearchArticle() throws InterruptedException {
+		String id = new ObjectId().toString();
+		String word = "enginetest" + id;
+
+		EsArticle esArticle = EsArticle.builder()
+				.id(id)
+				.seq(0)
+				.board(Constants.BOARD_TYPE.FREE.name())
+				.subject(word + " 제목")
+				.content("본문")
+				.build();
+
+		SearchWriteResult result = sut.indexDocumentArticle(esArticle, 1L).join();
+		Assert.assertFalse(result.getFailed());
+
+		try {
+			// 넣은 문서는 refresh 뒤에 보인다
+			List<String> ids = null;
+
+			for (int i = 0; i < 30 && (Objects.isNull(ids) || ids.isEmpty()); i++) {
+				Thread.sleep(100);
+				ids = sut.searchUnified(word, "ARTICLE", 0, 10, null, null, new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class)).join()
+						.getArticleResult().getArticles().stream()
+						.map(ArticleSource::getId)
+						.collect(Collectors.toList());
+			}
+
+			Assert.assertEquals(Collections.singletonList(id), ids);
+
+			// 옛 버전은 버린다
+			Assert.assertTrue(sut.indexDocumentArticle(esArticle, 1L).join().getStale());
+
+		} finally {
+			sut.deleteDocumentBoard(id, 2L).join();
+		}
 	}
 
 }
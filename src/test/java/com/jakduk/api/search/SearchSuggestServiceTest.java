@@ -0,0 +1,164 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.jakduk.api.model.simple.ArticleSimple;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.footballclub.FootballClubRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.search.PopularSearchWordResult;
+import com.jakduk.api.restcontroller.vo.search.SearchSuggestion;
+import com.jakduk.api.service.PopularSearchWordService;
+import com.jakduk.api.service.SearchSuggestService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SearchSuggestServiceTest {
+
+    private ArticleRepository articleRepository;
+    private PopularSearchWordService popularSearchWordService;
+    private SearchSuggestService sut;
+
+    @Before
+    public void setUp() {
+        articleRepository = Mockito.mock(ArticleRepository.class);
+        GalleryRepository galleryRepository = Mockito.mock(GalleryRepository.class);
+        FootballClubRepository footballClubRepository = Mockito.mock(FootballClubRepository.class);
+        popularSearchWordService = Mockito.mock(PopularSearchWordService.class);
+
+        Mockito.when(articleRepository.findSubjectsGreaterThanId(Mockito.any(), Mockito.anyInt())).thenReturn(Collections.emptyList());
+        Mockito.when(galleryRepository.findGalleriesGreaterThanId(Mockito.any(), Mockito.anyInt())).thenReturn(Collections.emptyList());
+        Mockito.when(footballClubRepository.findAll()).thenReturn(Collections.emptyList());
+        this.givenSearchWords();
+
+        sut = new SearchSuggestService();
+        ReflectionTestUtils.setField(sut, "articleRepository", articleRepository);
+        ReflectionTestUtils.setField(sut, "galleryRepository", galleryRepository);
+        ReflectionTestUtils.setField(sut, "footballClubRepository", footballClubRepository);
+        ReflectionTestUtils.setField(sut, "popularSearchWordService", popularSearchWordService);
+    }
+
+    @Test
+    public void suggestByWordPrefix() {
+        sut.putArticle("a1", null, "수원 삼성 경기 후기");
+        sut.putArticle("a2", null, "전북 현대 경기 일정");
+        sut.putGallery("g1", null, "수원 월드컵 경기장");
+
+        // 점수가 같으면 짧은 것부터
+        Assert.assertEquals(Arrays.asList("수원 월드컵 경기장", "수원 삼성 경기 후기"), this.suggest("수원"));
+
+        // 두번째 단어부터도 찾는다
+        Assert.assertEquals(Collections.singletonList("전북 현대 경기 일정"), this.suggest("현대"));
+
+        // 대소문자, 공백은 가리지 않는다
+        sut.putArticle("a3", null, "K League  Classic");
+        Assert.assertEquals(Collections.singletonList("K League Classic"), this.suggest("k leag"));
+
+        Assert.assertTrue(this.suggest("대구").isEmpty());
+    }
+
+    @Test
+    public void orderByWeight() {
+        this.givenSearchWords(new EsTermsBucket("수원 삼성", 10L), new EsTermsBucket("수원 fc", 2L));
+        sut.refreshSearchWords();
+
+        sut.putArticle("a1", null, "수원 삼성 경기 후기");
+        sut.putArticle("a2", null, "수원 더비");
+        sut.putArticle("a3", null, "수원 더비");
+
+        List<SearchSuggestion> suggestions = sut.suggest("수원", 10).getSuggestions();
+
+        Assert.assertEquals(Arrays.asList("수원 삼성", "수원 더비", "수원 삼성 경기 후기"),
+                suggestions.stream().map(SearchSuggestion::getText).collect(Collectors.toList()));
+        Assert.assertEquals(Constants.SEARCH_SUGGEST_TYPE.SEARCH_WORD, suggestions.get(0).getType());
+        Assert.assertEquals(Constants.SEARCH_SUGGEST_TYPE.ARTICLE, suggestions.get(1).getType());
+
+        // 검색 수가 모자라게 바뀐 검색어는 뺀다
+        this.givenSearchWords(new EsTermsBucket("수원 삼성", 1L));
+        sut.refreshSearchWords();
+
+        Assert.assertEquals(Arrays.asList("수원 더비", "수원 삼성 경기 후기"), this.suggest("수원"));
+    }
+
+    @Test
+    public void removeAndRename() {
+        sut.putArticle("a1", null, "수원 삼성 경기 후기");
+        sut.putArticle("a2", null, "수원 더비");
+
+        sut.removeArticle("a1", null);
+        Assert.assertEquals(Collections.singletonList("수원 더비"), this.suggest("수원"));
+
+        // 제목을 바꾸면 예전 제목은 빠진다
+        sut.putArticle("a2", null, "전북 더비");
+        Assert.assertTrue(this.suggest("수원").isEmpty());
+        Assert.assertEquals(Collections.singletonList("전북 더비"), this.suggest("더비"));
+
+        // 같은 제목의 글이 남아 있으면 빠지지 않는다
+        sut.putArticle("a3", null, "전북 더비");
+        sut.removeArticle("a2", null);
+        Assert.assertEquals(Collections.singletonList("전북 더비"), this.suggest("전북"));
+
+        // 제목이 비면 지운다
+        sut.putArticle("a3", null, " ");
+        Assert.assertTrue(this.suggest("전북").isEmpty());
+    }
+
+    @Test
+    public void discardStaleVersions() {
+        sut.putArticle("a1", 2L, "수원 더비");
+
+        // 늦게 온 옛 버전은 버린다
+        sut.putArticle("a1", 1L, "수원 삼성 경기 후기");
+        Assert.assertEquals(Collections.singletonList("수원 더비"), this.suggest("수원"));
+
+        sut.removeArticle("a1", 3L);
+        sut.putArticle("a1", 2L, "수원 더비");
+        Assert.assertTrue(this.suggest("수원").isEmpty());
+    }
+
+    @Test
+    public void keepChangesDuringReload() {
+        sut.putArticle("a1", null, "수원 삼성 경기 후기");
+
+        // 몽고DB 에서 읽는 동안 a1 을 지우고 a2 를 넣는다
+        Mockito.when(articleRepository.findSubjectsGreaterThanId(Mockito.any(), Mockito.anyInt())).thenAnswer(invocation -> {
+            sut.removeArticle("a1", null);
+            sut.putArticle("a2", null, "수원 더비");
+
+            return Collections.singletonList(this.newArticle("a1", "수원 삼성 경기 후기"));
+        });
+
+        sut.reload();
+
+        Assert.assertEquals(Collections.singletonList("수원 더비"), this.suggest("수원"));
+    }
+
+    private List<String> suggest(String q) {
+        return sut.suggest(q, 10).getSuggestions().stream()
+                .map(SearchSuggestion::getText)
+                .collect(Collectors.toList());
+    }
+
+    private void givenSearchWords(EsTermsBucket... words) {
+        Mockito.when(popularSearchWordService.getPopularWords(Mockito.anyInt())).thenReturn(PopularSearchWordResult.builder()
+                .took(0L)
+                .popularSearchWords(Arrays.asList(words))
+                .build());
+    }
+
+    private ArticleSimple newArticle(String id, String subject) {
+        return ArticleSimple.builder()
+                .id(id)
+                .subject(subject)
+                .build();
+    }
+
+}
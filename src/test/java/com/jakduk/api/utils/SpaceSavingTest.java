@@ -0,0 +1,39 @@
+package com.jakduk.api.utils;
+
+import com.jakduk.api.common.util.SpaceSaving;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void replaceLeastCountedWord() {
+        SpaceSaving sut = new SpaceSaving(2);
+
+        sut.offer("수원", 3L);
+        sut.offer("전북", 1L);
+        sut.offer("수원", 2L);
+
+        // 꽉 찼으므로 가장 적게 센 전북을 내보내고 그 수에 이어서 센다
+        sut.offer("대구", 1L);
+
+        Map<String, Long> counts = sut.getCounts();
+
+        Assert.assertEquals(2, counts.size());
+        Assert.assertEquals(Long.valueOf(5), counts.get("수원"));
+        Assert.assertEquals(Long.valueOf(2), counts.get("대구"));
+
+        // 센 수가 바뀐 단어도 순서를 다시 맞춘다
+        sut.offer("대구", 10L);
+        sut.offer("울산", 1L);
+
+        counts = sut.getCounts();
+
+        Assert.assertEquals(Long.valueOf(12), counts.get("대구"));
+        Assert.assertEquals(Long.valueOf(6), counts.get("울산"));
+        Assert.assertFalse(counts.containsKey("수원"));
+    }
+
+}